@@ -0,0 +1,408 @@
+package img_hole_fill;
+
+import img_hole_fill.algos.AlgoRegistry;
+import img_hole_fill.algos.CountingWeight;
+import img_hole_fill.algos.FillHoleAlgo;
+import img_hole_fill.algos.WeightFunction;
+import img_hole_fill.utils.*;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Filling the holes of many images in a single process, as a pipeline of four stages: decoding the image
+ * and the mask, extracting the hole and its boundary, filling and encoding the result. Every stage runs on
+ * threads of its own and hands its pairs to the next one through a bounded queue, so the decoding of the
+ * next pairs overlaps the filling of the current ones, and a slow stage holds the stages before it back
+ * instead of piling up decoded images. A pair that fails is reported and dropped without stopping the
+ * batch. Every algorithm runs in its sequential configuration, the fill stage running a pair per thread.
+ * @param decodeThreads The amount of pairs decoded at once
+ * @param extractThreads The amount of pairs whose holes and boundaries are extracted at once
+ * @param fillThreads The amount of pairs filled at once
+ * @param encodeThreads The amount of results encoded at once
+ * @param queueCapacity The largest amount of pairs waiting between two stages
+ */
+public record BatchRunner(int decodeThreads, int extractThreads, int fillThreads, int encodeThreads,
+                          int queueCapacity) {
+    private static final String MASK_SUFFIX = "_mask";
+    private static final String FILLED_SUFFIX = "_filled";
+    private static final String DEFAULT_OUT_EXTENSION = ".png";
+    private static final String COMMENT_PREFIX = "#";
+    private static final int DEFAULT_DECODE_THREADS = 2;
+    private static final int DEFAULT_EXTRACT_THREADS = 1;
+    private static final int DEFAULT_ENCODE_THREADS = 2;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double PIXELS_PER_MEGA = 1e6;
+    private static final double PERCENT = 100;
+
+    /**
+     * The stages of the pipeline, in order
+     */
+    public enum Stage {DECODE, EXTRACT, FILL, ENCODE}
+
+    /**
+     * A pair of an image and its mask
+     * @param imgPath The path of the image
+     * @param maskPath The path of the mask, of the same size as the image
+     * @param outPath The path to write the result to, a raw gray scale matrix if it has the raw extension and
+     *                a PNG otherwise
+     */
+    public record BatchItem(Path imgPath, Path maskPath, Path outPath) {}
+
+    /**
+     * The measurements of a single stage of a batch
+     * @param stage The stage
+     * @param threads The amount of threads of the stage
+     * @param items The amount of pairs the stage was done with, failed ones included
+     * @param busyNanos The time the threads of the stage spent working, summed over the threads
+     */
+    public record StageStats(Stage stage, int threads, long items, long busyNanos) {}
+
+    /**
+     * The measurements of a batch
+     * @param pairs The amount of pairs filled and written
+     * @param failed The amount of pairs that failed
+     * @param pixels The amount of pixels in the images filled and written
+     * @param wallNanos The wall time of the batch
+     * @param stageStats The measurements of the stages, in order
+     */
+    public record BatchResult(long pairs, long failed, long pixels, long wallNanos,
+                              List<StageStats> stageStats) {}
+
+    /**
+     * Create a new instance of this runner
+     * @param decodeThreads The amount of pairs decoded at once
+     * @param extractThreads The amount of pairs whose holes and boundaries are extracted at once
+     * @param fillThreads The amount of pairs filled at once
+     * @param encodeThreads The amount of results encoded at once
+     * @param queueCapacity The largest amount of pairs waiting between two stages
+     */
+    public BatchRunner {
+        if (decodeThreads < 1 || extractThreads < 1 || fillThreads < 1 || encodeThreads < 1 ||
+                queueCapacity < 1)
+            throw new IllegalArgumentException("The thread counts and the queue capacity must be positive");
+    }
+
+    /**
+     * Create a new instance of this runner, filling a pair per available processor
+     */
+    public BatchRunner(){
+        this(DEFAULT_DECODE_THREADS, DEFAULT_EXTRACT_THREADS, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_ENCODE_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Reads the pairs of a manifest file, a pair per line: the path of the image, the path of the mask and
+     * optionally the path of the result, separated by whitespace. Relative paths are relative to the
+     * directory of the manifest. Blank lines and lines starting with # are skipped. The default result of an
+     * image is a PNG next to it, its name ending with _filled.
+     * @param manifestPath The path of the manifest
+     * @return The pairs, in the order of the manifest
+     * @throws IOException In case there's a problem reading the manifest or a line of it is invalid
+     */
+    public static List<BatchItem> readManifest(Path manifestPath) throws IOException {
+        Path dir = manifestPath.toAbsolutePath().getParent();
+        ArrayList<BatchItem> items = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifestPath);
+        for (int i = 0; i < lines.size(); i++){
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) continue;
+            String[] paths = line.split("\\s+");
+            if (paths.length < 2 || paths.length > 3)
+                throw new IOException("Line " + (i + 1) + " of " + manifestPath + " isn't an image, a mask " +
+                        "and an optional result");
+            Path imgPath = dir.resolve(paths[0]);
+            items.add(new BatchItem(imgPath, dir.resolve(paths[1]),
+                    paths.length == 3 ? dir.resolve(paths[2]) : getDefaultOutPath(imgPath)));
+        } return items;
+    }
+
+    /**
+     * Finds the pairs of the images matching a glob, such as images/*.png. The mask of an image is the file
+     * next to it of the same name ending with _mask, and its result a PNG next to it ending with _filled, so
+     * masks and results matching the glob aren't taken as images. Images without masks are skipped.
+     * @param glob The glob of the images, its directory part taken literally
+     * @return The pairs, in the order of the names of the images
+     * @throws IOException In case there's a problem listing the directory
+     */
+    public static List<BatchItem> findPairs(String glob) throws IOException {
+        Path globPath = Paths.get(glob);
+        Path dir = globPath.getParent() == null ? Paths.get("") : globPath.getParent();
+        PathMatcher matcher = dir.getFileSystem().getPathMatcher("glob:" + globPath.getFileName());
+        ArrayList<BatchItem> items = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(dir.toAbsolutePath())) {
+            for (Path imgPath : paths.sorted().toList()){
+                String baseName = getBaseName(imgPath);
+                if (!matcher.matches(imgPath.getFileName()) || baseName.endsWith(MASK_SUFFIX) ||
+                        baseName.endsWith(FILLED_SUFFIX)) continue;
+                Path maskPath = imgPath.resolveSibling(baseName + MASK_SUFFIX + getExtension(imgPath));
+                if (!Files.isRegularFile(maskPath)){
+                    System.err.println("Skipping " + imgPath + ", it has no mask " + maskPath.getFileName());
+                    continue;
+                }
+                items.add(new BatchItem(imgPath, maskPath, getDefaultOutPath(imgPath)));
+            }
+        } return items;
+    }
+
+    /**
+     * Gets the default path of the result of an image
+     * @param imgPath The path of the image
+     * @return The path of the result
+     */
+    private static Path getDefaultOutPath(Path imgPath){
+        return imgPath.resolveSibling(getBaseName(imgPath) + FILLED_SUFFIX + DEFAULT_OUT_EXTENSION);
+    }
+
+    /**
+     * Gets the name of a file without its extension
+     * @param path The path of the file
+     * @return The name without the extension
+     */
+    private static String getBaseName(Path path){
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Gets the extension of a file
+     * @param path The path of the file
+     * @return The extension with its dot, empty if there's none
+     */
+    private static String getExtension(Path path){
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    /**
+     * A pair on its way through the pipeline, gaining its decoded images, its hole and its boundary. It's
+     * handed from stage to stage through the queues, which publish its fields to the next stage.
+     */
+    private static final class Job {
+
+        /**
+         * The job marking the end of the pairs in a queue
+         */
+        static final Job END = new Job(null);
+
+        final BatchItem item;
+        GrayImage imgMat;
+        GrayImage maskMat;
+        PixSet holeSet;
+        PixSet boundarySet;
+
+        /**
+         * Create a job of a pair
+         * @param item The pair
+         */
+        Job(BatchItem item){
+            this.item = item;
+        }
+    }
+
+    /**
+     * The work of a stage on a single job
+     */
+    @FunctionalInterface
+    private interface StageWork {
+
+        /**
+         * Works on a job
+         * @param job The job
+         * @throws IOException In case there's a problem reading or writing a file
+         */
+        void apply(Job job) throws IOException;
+    }
+
+    /**
+     * Fills the holes of a batch of pairs
+     * @param items The pairs
+     * @param algoName The name of the filling algorithm, as registered in AlgoRegistry
+     * @param func The weight function
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is 4)
+     * @return The measurements of the batch
+     * @throws IllegalStateException In case a stage fails on anything but a pair that can't be read, filled
+     *                               or written (an error, say), which cancels the rest of the batch
+     */
+    public BatchResult run(List<BatchItem> items, String algoName, WeightFunction func,
+                           boolean isEightConnected) {
+        // Failing at once on an unknown algorithm rather than on every pair
+        AlgoRegistry.getAlgo(algoName);
+        int[] threads = {decodeThreads, extractThreads, fillThreads, encodeThreads};
+        ArrayList<BlockingQueue<Job>> queues = new ArrayList<>();
+        for (int i = 0; i < threads.length; i++) queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        LongAdder[] busyNanos = new LongAdder[threads.length];
+        LongAdder[] stageItems = new LongAdder[threads.length];
+        LongAdder failed = new LongAdder();
+        LongAdder pixels = new LongAdder();
+        StageWork[] works = {
+                job -> {
+                    job.imgMat = MatImgUtils.getGrayMatFromBytes(Files.readAllBytes(job.item.imgPath()),
+                            job.item.imgPath().toString());
+                    job.maskMat = MatImgUtils.getGrayMatFromBytes(Files.readAllBytes(job.item.maskPath()),
+                            job.item.maskPath().toString());
+                },
+                job -> {
+                    if (job.maskMat.getWidth() != job.imgMat.getWidth() ||
+                            job.maskMat.getHeight() != job.imgMat.getHeight())
+                        throw new IllegalArgumentException("The image and the mask are of different sizes");
+                    job.holeSet = HoleUtils.getHoleSetFromMat(job.maskMat,
+                            ThresholdHoleCondition.getInstance());
+                    job.maskMat = null;
+                    job.boundarySet = BoundaryUtils.getBoundaryInImg(job.holeSet, job.imgMat,
+                            isEightConnected);
+                },
+                job -> {
+                    FillHoleAlgo algo = AlgoRegistry.getAlgo(algoName);
+                    PhaseTrace.FillEvent event = new PhaseTrace.FillEvent(algo.toString(), func.toString(),
+                            job.holeSet, job.boundarySet, isEightConnected);
+                    algo.apply(job.imgMat, job.holeSet, job.boundarySet,
+                            CountingWeight.wrap(func, event.getEvaluations()), isEightConnected);
+                    event.finish();
+                    job.holeSet = null;
+                    job.boundarySet = null;
+                },
+                job -> {
+                    String outName = job.item.outPath().toString();
+                    try (OutputStream out = new BufferedOutputStream(
+                            Files.newOutputStream(job.item.outPath()))) {
+                        if (RawMatUtils.isRawFile(outName)){
+                            BuffImgUtils.writeRawMat(job.imgMat, out, RawMatUtils.SampleType.FLOAT32,
+                                    outName);
+                        } else {
+                            BuffImgUtils.writeGrayImg(BuffImgUtils.getGrayImgFromMat(job.imgMat), out,
+                                    outName);
+                        }
+                    }
+                    pixels.add((long) job.imgMat.getWidth() * job.imgMat.getHeight());
+                }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(decodeThreads + extractThreads +
+                fillThreads + encodeThreads + 1);
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        int tasks = 0;
+        long wallStart = System.nanoTime();
+        try {
+            for (int stage = 0; stage < threads.length; stage++){
+                busyNanos[stage] = new LongAdder();
+                stageItems[stage] = new LongAdder();
+                BlockingQueue<Job> in = queues.get(stage);
+                BlockingQueue<Job> out = stage + 1 < threads.length ? queues.get(stage + 1) : null;
+                int nextThreads = stage + 1 < threads.length ? threads[stage + 1] : 0;
+                AtomicInteger running = new AtomicInteger(threads[stage]);
+                StageWork work = works[stage];
+                LongAdder stageBusyNanos = busyNanos[stage];
+                LongAdder stageItemsDone = stageItems[stage];
+                for (int thread = 0; thread < threads[stage]; thread++){
+                    completion.submit(() -> {
+                        try {
+                            runStage(in, out, work, stageBusyNanos, stageItemsDone, failed);
+                        } finally {
+                            if (running.decrementAndGet() == 0 && out != null){
+                                for (int i = 0; i < nextThreads; i++) out.put(Job.END);
+                            }
+                        } return null;
+                    });
+                    tasks++;
+                }
+            }
+            BlockingQueue<Job> first = queues.get(0);
+            completion.submit(() -> {
+                for (BatchItem item : items) first.put(new Job(item));
+                for (int i = 0; i < decodeThreads; i++) first.put(Job.END);
+                return null;
+            });
+            tasks++;
+            // Waiting in the order of completion, so the first failure cancels the stages still waiting
+            for (int i = 0; i < tasks; i++) completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the batch", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A stage of the batch failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+
+        ArrayList<StageStats> stageStats = new ArrayList<>(threads.length);
+        for (Stage stage : Stage.values()){
+            stageStats.add(new StageStats(stage, threads[stage.ordinal()], stageItems[stage.ordinal()].sum(),
+                    busyNanos[stage.ordinal()].sum()));
+        }
+        return new BatchResult(items.size() - failed.sum(), failed.sum(), pixels.sum(), wallNanos,
+                stageStats);
+    }
+
+    /**
+     * Runs a thread of a stage until it takes the end of the pairs from its queue. A pair that fails is
+     * reported and not handed to the next stage, while any other failure ends the thread.
+     * @param in The queue of the stage
+     * @param out The queue of the next stage, null for the last stage
+     * @param work The work of the stage
+     * @param busyNanos Sums the time spent working
+     * @param items Counts the pairs the stage is done with
+     * @param failed Counts the pairs that failed
+     * @throws InterruptedException In case the thread is interrupted while waiting on a queue
+     */
+    private static void runStage(BlockingQueue<Job> in, BlockingQueue<Job> out, StageWork work,
+                                 LongAdder busyNanos, LongAdder items, LongAdder failed)
+            throws InterruptedException {
+        Job job;
+        while ((job = in.take()) != Job.END){
+            long start = System.nanoTime();
+            boolean isDone;
+            try {
+                work.apply(job);
+                isDone = true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed " + job.item.imgPath() + ": " + e);
+                failed.increment();
+                isDone = false;
+            }
+            busyNanos.add(System.nanoTime() - start);
+            items.increment();
+            if (isDone && out != null) out.put(job);
+        }
+    }
+
+    /**
+     * Prints the throughput of a batch and the utilization of every stage, the time its threads spent
+     * working out of the wall time of the batch
+     * @param result The measurements of the batch
+     */
+    public static void printSummary(BatchResult result) {
+        double seconds = result.wallNanos() / NANOS_PER_SECOND;
+        System.out.printf("%d pairs filled, %d failed, in %.2f s: %.2f pairs/s, %.2f MP/s\n",
+                result.pairs(), result.failed(), seconds, result.pairs() / seconds,
+                result.pixels() / PIXELS_PER_MEGA / seconds);
+        String format = "%-8s %8s %8s %12s %12s\n";
+        System.out.printf(format, "Stage", "Threads", "Pairs", "Busy (s)", "Utilization");
+        for (StageStats stats : result.stageStats()){
+            System.out.printf(format, stats.stage(), stats.threads(), stats.items(),
+                    String.format("%.2f", stats.busyNanos() / NANOS_PER_SECOND),
+                    String.format("%.1f%%", PERCENT * stats.busyNanos() /
+                            (result.wallNanos() * stats.threads())));
+        }
+    }
+}
@@ -1,19 +1,46 @@
 package img_hole_fill;
 
+import img_hole_fill.algos.DefaultWeight;
+import img_hole_fill.algos.QuadTreeAlgo;
+import img_hole_fill.server.FillServer;
+import img_hole_fill.utils.InputCache;
+import img_hole_fill.utils.PhaseTrace;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * The running class
  */
 public class Main {
+    private static final int PYRAMID_LEVELS = 3;
+    private static final int PYRAMID_BAND_WIDTH = 4;
+    private static final int COMPONENT_NEIGHBOUR_RADIUS = -1;
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_TILES_IN_FLIGHT = 8;
+    private static final String SERVE_FLAG = "--serve";
+    private static final String BATCH_FLAG = "--batch";
+    private static final String DEFAULT_BATCH_ALGO = "BaseAlgo";
+    private static final int DEFAULT_PORT = 8080;
 
     /**
      * Running the program
      * @param args The arguments
      * @throws IOException In case there's a problem reading either one of the files provided by file names
      * in the arguments, or if there's a problem writing the result
+     * @throws IllegalStateException In case the approx versions fail the check of their layers
      */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals(SERVE_FLAG)){
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
+        if (args.length > 1 && args[0].equals(BATCH_FLAG)){
+            runBatch(args[1], args.length > 2 ? args[2] : DEFAULT_BATCH_ALGO, args.length > 3);
+            return;
+        }
         String subjectImgFileName;
         String maskFileName;
         try{
@@ -28,11 +55,23 @@ public class Main {
         Runner.runApproxAlgo(subjectImgFileName, maskFileName);
         Runner.runBoundaryLineSpaceAlgo(subjectImgFileName, maskFileName);
         Runner.runHoleLineSpaceAlgo(subjectImgFileName, maskFileName);
+        Runner.runConvolutionFillAlgo(subjectImgFileName, maskFileName);
+        Runner.runQuadTreeAlgo(subjectImgFileName, maskFileName, QuadTreeAlgo.getInstance().openingAngle());
+        Runner.runPyramidAlgo(subjectImgFileName, maskFileName, PYRAMID_LEVELS, PYRAMID_BAND_WIDTH);
+        Runner.runComponentAlgo(subjectImgFileName, maskFileName, COMPONENT_NEIGHBOUR_RADIUS);
+        Runner.runTiledBaseAlgo(subjectImgFileName, maskFileName, TILE_SIZE, MAX_TILES_IN_FLIGHT);
+        Runner.runColorAlgo(subjectImgFileName, maskFileName);
 
         Tests.runBoundaryLineSpaceAlgoWithRotation(subjectImgFileName, maskFileName);
         Tests.runRandHoleAlgo(subjectImgFileName, maskFileName);
         Tests.runRandBoundaryAlgo(subjectImgFileName, maskFileName);
         Tests.runVarious(subjectImgFileName, maskFileName);
+        Tests.runSweep(subjectImgFileName, maskFileName);
+        boolean isApproxLayersOk = Tests.checkApproxLayers();
+        System.out.println(InputCache.getInstance());
+        PhaseTrace.printSummary();
+        if (!isApproxLayersOk)
+            throw new IllegalStateException("The approx versions filled differently from the layers by sets");
 
         } catch(ArrayIndexOutOfBoundsException e){
             System.out.println("""
@@ -47,7 +86,42 @@ public class Main {
                     8-connectivity.
                     A third argument will count as 8-connectivity regardless of its content.
                     For further results, uncomment the commented lines in the main method.
+                    Alternatively, provide --serve and optionally a port (the default is 8080) in order to
+                    fill images posted to a local HTTP service instead.
+                    Or provide --batch followed by either a manifest file of lines of an image, a mask and
+                    optionally a result, or a glob of images such as images/*.png whose masks end with
+                    _mask, optionally followed by the name of the algorithm (the default is BaseAlgo) and by
+                    a fourth argument requesting 8-connectivity, in order to fill them all in a pipeline.
                     """);
         }
     }
+
+    /**
+     * Running the fill service until the process is stopped
+     * @param port The port to listen on
+     * @throws IOException In case the port can't be bound
+     */
+    private static void serve(int port) throws IOException {
+        FillServer server = new FillServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.println("Filling images posted to http://localhost:" + server.getPort() + "/fill");
+    }
+
+    /**
+     * Running a batch of pairs of images and masks through the batch pipeline and printing its throughput
+     * @param source Either a manifest file or a glob of the images
+     * @param algoName The name of the filling algorithm
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is 4)
+     * @throws IOException In case there's a problem reading the manifest or listing the images
+     */
+    private static void runBatch(String source, String algoName, boolean isEightConnected)
+            throws IOException {
+        Path sourcePath = Paths.get(source);
+        List<BatchRunner.BatchItem> items = Files.isRegularFile(sourcePath) ?
+                BatchRunner.readManifest(sourcePath) : BatchRunner.findPairs(source);
+        BatchRunner.BatchResult result = new BatchRunner().run(items, algoName, DefaultWeight.getInstance(),
+                isEightConnected);
+        BatchRunner.printSummary(result);
+    }
 }
@@ -0,0 +1,179 @@
+package img_hole_fill;
+
+import img_hole_fill.algos.BaseAlgo;
+import img_hole_fill.algos.WeightFunction;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import img_hole_fill.utils.RawMatUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the results of the base algorithm, the exact references the accuracy of the other algorithms
+ * is measured against. A reference is identified by a digest of everything it depends on: the image, the
+ * hole, the boundary, the connected approach and the weight function. It's computed once, kept in memory,
+ * and persisted as a raw gray scale matrix file in the cache directory, so later runs over the same input
+ * load it instead of running the base algorithm again. Weight functions that aren't records can't be
+ * described in a stable way, so their references are only kept in memory.
+ */
+public class ReferenceCache {
+    private static final String DEFAULT_CACHE_DIR = "reference_cache";
+    private static final int DEFAULT_MAX_ENTRIES = 4;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final ReferenceCache instance = new ReferenceCache(
+            new File(System.getProperty("user.dir"), DEFAULT_CACHE_DIR), DEFAULT_MAX_ENTRIES);
+
+    /**
+     * The directory the references are persisted in
+     */
+    private final File cacheDir;
+
+    /**
+     * The references kept in memory by their digests, the least recently used evicted first
+     */
+    private final LinkedHashMap<String, GrayImage> references;
+
+    /**
+     * Gets the instance shared by all the runs, persisting into a directory under the current working
+     * directory
+     * @return The instance of this class
+     */
+    public static ReferenceCache getInstance(){
+        return instance;
+    }
+
+    /**
+     * Create a cache
+     * @param cacheDir The directory to persist the references in
+     * @param maxEntries The largest amount of references to keep in memory
+     */
+    public ReferenceCache(File cacheDir, int maxEntries){
+        this.cacheDir = cacheDir;
+        references = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GrayImage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the result of the base algorithm for an input, computing it only if it's neither in memory nor
+     * persisted. The result is shared and must not be changed.
+     * @param grayMat The image, before filling
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function
+     * @param isEightConnected Whether or not the 8-connected approach is applied (the default is 4)
+     * @return The image filled by the base algorithm
+     */
+    public GrayImage getReference(GrayImage grayMat, PixSet holeSet, PixSet boundarySet, WeightFunction func,
+                                  boolean isEightConnected){
+        String funcDescription = getDescription(func);
+        String digest = getDigest(grayMat, holeSet, boundarySet, isEightConnected,
+                funcDescription != null ? funcDescription : func.getClass().getName() + "@" +
+                        System.identityHashCode(func));
+        synchronized (references) {
+            GrayImage reference = references.get(digest);
+            if (reference != null) return reference;
+        }
+        File file = new File(cacheDir, digest + RawMatUtils.RAW_EXTENSION);
+        GrayImage reference = null;
+        try {
+            if (funcDescription != null && file.isFile()) reference = RawMatUtils.readRawMat(file);
+        } catch (IOException e) {
+            reference = null;
+        }
+        if (reference == null){
+            reference = grayMat.copy();
+            BaseAlgo.getParallelInstance().apply(reference, new PixSet(holeSet), new PixSet(boundarySet), func,
+                    isEightConnected);
+            if (funcDescription != null) persist(reference, file);
+        }
+        synchronized (references) {
+            references.put(digest, reference);
+        } return reference;
+    }
+
+    /**
+     * Persists a reference, writing it to a temporary file first so that a partial file is never read
+     * @param reference The reference
+     * @param file The file of the reference
+     */
+    private void persist(GrayImage reference, File file){
+        try {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) return;
+            File tmpFile = File.createTempFile(file.getName(), null, cacheDir);
+            RawMatUtils.writeRawMat(reference, tmpFile, RawMatUtils.SampleType.FLOAT32);
+            if (!tmpFile.renameTo(file)) tmpFile.delete();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't persist a reference into " + cacheDir, e);
+        }
+    }
+
+    /**
+     * Describes a weight function by its class and its parameters, if it's a record
+     * @param func The weight function
+     * @return The description, or null if the weight function isn't a record
+     */
+    private static String getDescription(WeightFunction func){
+        if (!func.getClass().isRecord()) return null;
+        StringBuilder description = new StringBuilder(func.getClass().getName());
+        try {
+            for (RecordComponent component : func.getClass().getRecordComponents()){
+                description.append(';').append(component.getName()).append('=')
+                        .append(component.getAccessor().invoke(func));
+            }
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } return description.toString();
+    }
+
+    /**
+     * Gets the digest of an input
+     * @param grayMat The image
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param isEightConnected Whether or not the 8-connected approach is applied
+     * @param funcDescription The description of the weight function
+     * @return The digest in hexadecimal
+     */
+    private static String getDigest(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                                    boolean isEightConnected, String funcDescription){
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+        header.putInt(grayMat.getWidth()).putInt(grayMat.getHeight()).putInt(isEightConnected ? 8 : 4);
+        digest.update(header.array());
+        digest.update(funcDescription.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer row = ByteBuffer.allocate(grayMat.getWidth() * Float.BYTES);
+        for (int y = 0; y < grayMat.getHeight(); y++){
+            row.clear();
+            row.asFloatBuffer().put(grayMat.getData(), grayMat.getOffset() + y * grayMat.getStride(),
+                    grayMat.getWidth());
+            digest.update(row.array());
+        }
+        for (PixSet pixSet : new PixSet[]{holeSet, boundarySet}){
+            long[] pixels = pixSet.toSortedArray();
+            ByteBuffer pixBuffer = ByteBuffer.allocate(Integer.BYTES + pixels.length * Long.BYTES);
+            pixBuffer.putInt(pixels.length).asLongBuffer().put(pixels);
+            digest.update(pixBuffer.array());
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -4,7 +4,6 @@ import img_hole_fill.algos.*;
 import img_hole_fill.utils.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.HashSet;
 
 /**
  * The solutions for filling a hole in a given image
@@ -14,6 +13,24 @@ public abstract class Runner {
     private static final String HOLE_FILE_PREFIX = "ByHoleFile";
     private static final String EIGHT_CONNECTED_PREFIX = "EightConnected";
     private static final String FOUR_CONNECTED_PREFIX = "FourConnected";
+    private static final String COLOR_PREFIX = "Color";
+    private static final String ACCURACY_PROPERTY = "img_hole_fill.accuracy";
+
+    /**
+     * Whether or not to print the accuracy of every result against the base algorithm, on by default and
+     * off with -Dimg_hole_fill.accuracy=false
+     */
+    private static volatile boolean isAccuracyEnabled =
+            Boolean.parseBoolean(System.getProperty(ACCURACY_PROPERTY, "true"));
+
+    /**
+     * Sets whether or not to print the accuracy of every result against the base algorithm. Production runs
+     * should turn it off, since the reference is a run of the base algorithm whenever it isn't cached.
+     * @param isEnabled Whether or not to print the accuracy
+     */
+    public static void setAccuracyEnabled(boolean isEnabled) {
+        isAccuracyEnabled = isEnabled;
+    }
     
     /**
      * Fixing an image given that the matrix representing it already contains the hole, and writing it to the
@@ -26,16 +43,16 @@ public abstract class Runner {
      * @param algo The filling algorithm to use in order to fill the hole
      * @throws IOException In case there's a problem writing the output image to a file
      */
-    public static void fillByHoledMat(String imgFileName, float[][] imgMat, WeightFunction func,
+    public static void fillByHoledMat(String imgFileName, GrayImage imgMat, WeightFunction func,
                                       boolean isEightConnected, FillHoleAlgo algo) throws IOException {
-        HashSet<IntPair> holeSet = HoleUtils.getHoleSetFromMat(imgMat, StrictHoleCondition.getInstance());
+        PixSet holeSet = HoleUtils.getHoleSetFromMat(imgMat, StrictHoleCondition.getInstance());
         fillImg(imgFileName, imgMat, holeSet, func, HOLED_MAT_PREFIX + algo.toString() + func.toString(),
                  isEightConnected, algo);
     }
     
     /**
      * Fixing the original image given the hole in a separate file, and writing the solution to the current 
-     * working directory
+     * working directory. The decoded image, the hole and its boundary are taken from the shared input cache.
      * @param imgFileName The file name of the image
      * @param holeFileName The file name of the hole file
      * @param func The weighting function with which to calculate the values to fill the hole with
@@ -48,9 +65,11 @@ public abstract class Runner {
                                       WeightFunction func, boolean isEightConnected,
                                       FillHoleAlgo algo)
             throws IOException {
-        float[][] grayImgMat = MatImgUtils.getGrayMatFromFile(imgFileName);
-        HashSet<IntPair> holeSet = HoleUtils.getHoleSetFromFile(holeFileName);
-        fillImg(imgFileName, grayImgMat, holeSet, func,
+        InputCache inputCache = InputCache.getInstance();
+        GrayImage grayImgMat = inputCache.getGrayMat(imgFileName);
+        InputCache.HoleSets holeSets = inputCache.getHoleSets(holeFileName, ThresholdHoleCondition.getInstance(),
+                isEightConnected);
+        fillImg(imgFileName, grayImgMat, holeSets.holeSet(), holeSets.boundarySet(), func,
                  HOLE_FILE_PREFIX + algo.toString() + func.toString(), isEightConnected, algo);
     }
     
@@ -67,41 +86,57 @@ public abstract class Runner {
      * @param algo The filling algorithm to use in order to fill the hole
      * @throws IOException In case there's a problem writing the output image to a file
      */
-    public static void fillImg(String imgFileName, float[][] imgMat, HashSet<IntPair> holeSet,
+    public static void fillImg(String imgFileName, GrayImage imgMat, PixSet holeSet,
                                WeightFunction func, String fileNamePrefix, boolean isEightConnected,
                                FillHoleAlgo algo)
             throws IOException {
-        HashSet<IntPair> boundarySet = BoundaryUtils.getBoundarySet(holeSet, isEightConnected);
-
-        // The following hash-tagged lines are for printing the accuracy of the algorithm against the base
-        // algorithm
+        PixSet boundarySet = BoundaryUtils.getBoundarySet(holeSet, isEightConnected);
+        fillImg(imgFileName, imgMat, holeSet, boundarySet, func, fileNamePrefix, isEightConnected, algo);
+    }
 
-        // ##################################################################################################
-        // ##################################################################################################
-        float[][] imgMatCopy = GeneralUtils.copyArr(imgMat);
-        HashSet<IntPair> holeSetCopy = new HashSet<>(holeSet);
-        HashSet<IntPair> boundarySetCopy = new HashSet<>(boundarySet);
-        // ##################################################################################################
-        // ##################################################################################################
+    /**
+     * Fixing an image given its matrix and the set of holes, and writing the solution to the current 
+     * working directory.
+     * @param imgFileName The file name of the image
+     * @param imgMat The matrix of pixels representing the image with the hole
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary of the hole
+     * @param func The weighting function with which to calculate the values to fill the hole with
+     * @param fileNamePrefix The prefix to add to the file name of the result
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is the 
+     * 4-connected approach)
+     * @param algo The filling algorithm to use in order to fill the hole
+     * @throws IOException In case there's a problem writing the output image to a file
+     */
+    public static void fillImg(String imgFileName, GrayImage imgMat, PixSet holeSet, PixSet boundarySet,
+                               WeightFunction func, String fileNamePrefix, boolean isEightConnected,
+                               FillHoleAlgo algo)
+            throws IOException {
 
+        // The exact reference for printing the accuracy of the algorithm against the base algorithm, taken
+        // before the algorithm changes the matrix and the hole set
+        GrayImage reference = isAccuracyEnabled ? ReferenceCache.getInstance().getReference(imgMat, holeSet,
+                boundarySet, func, isEightConnected) : null;
+        PixSet holeSetCopy = isAccuracyEnabled ? new PixSet(holeSet) : null;
 
-        algo.apply(imgMat, holeSet, boundarySet, func, isEightConnected);
+        PhaseTrace.FillEvent event = new PhaseTrace.FillEvent(algo.toString(), func.toString(), holeSet,
+                boundarySet, isEightConnected);
+        algo.apply(imgMat, holeSet, boundarySet, CountingWeight.wrap(func, event.getEvaluations()),
+                isEightConnected);
+        event.finish();
         String algoName = (isEightConnected ?
                 EIGHT_CONNECTED_PREFIX : FOUR_CONNECTED_PREFIX) + fileNamePrefix + imgFileName;
 
-
-        // ##################################################################################################
-        // ##################################################################################################
-        Tests.printAccuracy(algoName, imgMat, imgMatCopy, holeSetCopy, boundarySetCopy, func, isEightConnected);
-        // ##################################################################################################
-        // ##################################################################################################
+        if (isAccuracyEnabled) Tests.printAccuracy(algoName, imgMat, reference, holeSetCopy);
+        else System.out.println(algoName);
 
         BufferedImage grayImg = BuffImgUtils.getGrayImgFromMat(imgMat);
-        BuffImgUtils.writeImg(grayImg, algoName);
+        BuffImgUtils.writeGrayImg(grayImg, algoName);
     }
 
     /**
-     * Running the base algorithm with the input connected approach
+     * Running the base algorithm with the input connected approach, filling the hole with a thread per
+     * available processor
      * @param imgFileName The file name of the image
      * @param holeFileName The file name of the hole
      * @param isEightConnected Whether or not to apply the 8-connected approach (the default is the
@@ -111,7 +146,7 @@ public abstract class Runner {
     public static void mainSection(String imgFileName, String holeFileName,
                                    boolean isEightConnected) throws IOException {
         Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(), isEightConnected,
-                BaseAlgo.getInstance());
+                BaseAlgo.getParallelInstance());
     }
 
     /**
@@ -163,4 +198,130 @@ public abstract class Runner {
         Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
                 false, HolesLineSpaceAlgo.getHolesLineSpaceAlgoInstance());
     }
+
+    /**
+     * Running the Convolution Fill algorithm with both connected approaches (8 and 4)
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runConvolutionFillAlgo(String imgFileName, String holeFileName) throws IOException {
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                true, ConvolutionFillAlgo.getConvolutionFillAlgoInstance());
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                false, ConvolutionFillAlgo.getConvolutionFillAlgoInstance());
+    }
+
+    /**
+     * Running the Quad Tree algorithm with both connected approaches (8 and 4). Its error against the base
+     * algorithm is printed as for any other algorithm, so the opening angle can be tuned by it.
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @param openingAngle The opening angle of the quadtree, 0 gives the base algorithm
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runQuadTreeAlgo(String imgFileName, String holeFileName, float openingAngle)
+            throws IOException {
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                true, new QuadTreeAlgo(openingAngle));
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                false, new QuadTreeAlgo(openingAngle));
+    }
+
+    /**
+     * Running the base algorithm coarse to fine through the Pyramid algorithm with both connected
+     * approaches (8 and 4). Every level of the pyramid is traced as a PhaseTrace.PyramidLevelEvent.
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @param levels The largest amount of times to halve the image
+     * @param bandWidth The width of the band refilled on every finer level, in layers of hole pixels
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runPyramidAlgo(String imgFileName, String holeFileName, int levels, int bandWidth)
+            throws IOException {
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                true, new PyramidAlgo(BaseAlgo.getParallelInstance(), levels, bandWidth));
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                false, new PyramidAlgo(BaseAlgo.getParallelInstance(), levels, bandWidth));
+    }
+
+    /**
+     * Running the base algorithm on every connected component of the hole on its own through the Component
+     * algorithm with both connected approaches (8 and 4)
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @param neighbourRadius The largest distance between the bounding boxes of two components for the
+     *                        boundary of one of them to be included in the filling of the other, negative for
+     *                        none at all
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runComponentAlgo(String imgFileName, String holeFileName, int neighbourRadius)
+            throws IOException {
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                true, new ComponentAlgo(BaseAlgo::getInstance, neighbourRadius));
+        Runner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                false, new ComponentAlgo(BaseAlgo::getInstance, neighbourRadius));
+    }
+
+    /**
+     * Fixing the original image in all its channels given the hole in a separate file, and writing the
+     * solution to the current working directory. The hole and its boundary are taken from the shared input
+     * cache.
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole file
+     * @param func The weighting function with which to calculate the values to fill the hole with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is the
+     * 4-connected approach)
+     * @param algo The filling algorithm to use in order to fill the hole
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void fillColorByHoleFile(String imgFileName, String holeFileName, WeightFunction func,
+                                           boolean isEightConnected, FillHoleAlgo algo) throws IOException {
+        ColorImage colorImg = MatImgUtils.getColorImgFromFile(imgFileName);
+        InputCache.HoleSets holeSets = InputCache.getInstance().getHoleSets(holeFileName,
+                ThresholdHoleCondition.getInstance(), isEightConnected);
+        PhaseTrace.FillEvent event = new PhaseTrace.FillEvent(algo.toString(), func.toString(),
+                holeSets.holeSet(), holeSets.boundarySet(), isEightConnected);
+        algo.apply(colorImg, holeSets.holeSet(), holeSets.boundarySet(),
+                CountingWeight.wrap(func, event.getEvaluations()), isEightConnected);
+        event.finish();
+        String algoName = (isEightConnected ? EIGHT_CONNECTED_PREFIX : FOUR_CONNECTED_PREFIX) +
+                HOLE_FILE_PREFIX + COLOR_PREFIX + algo.toString() + func.toString() + imgFileName;
+        System.out.println(algoName);
+        BuffImgUtils.writeImg(colorImg.toImg(), algoName);
+    }
+
+    /**
+     * Running the base algorithm and the approximation algorithm on all the channels of the image with both
+     * connected approaches (8 and 4)
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runColorAlgo(String imgFileName, String holeFileName) throws IOException {
+        for (boolean isEightConnected : new boolean[]{true, false}) {
+            Runner.fillColorByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                    isEightConnected, BaseAlgo.getParallelInstance());
+            Runner.fillColorByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(),
+                    isEightConnected, new ApproxAlgo(true, false, true));
+        }
+    }
+
+    /**
+     * Running the base algorithm tile by tile through the tiled runner with both connected approaches (8 and
+     * 4), writing every tile of the result to its own file
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @param tileSize The side of the tiles
+     * @param maxInFlight The largest amount of tiles submitted and not written yet
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public static void runTiledBaseAlgo(String imgFileName, String holeFileName, int tileSize, int maxInFlight)
+            throws IOException {
+        TiledRunner tiledRunner = new TiledRunner(tileSize, maxInFlight);
+        tiledRunner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(), true,
+                BaseAlgo::getInstance);
+        tiledRunner.fillByHoleFile(imgFileName, holeFileName, DefaultWeight.getInstance(), false,
+                BaseAlgo::getInstance);
+    }
 }
@@ -0,0 +1,175 @@
+package img_hole_fill;
+
+import img_hole_fill.algos.FillHoleAlgo;
+import img_hole_fill.algos.WeightFunction;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.InputCache;
+import img_hole_fill.utils.PhaseTrace;
+import img_hole_fill.utils.PixSet;
+import img_hole_fill.utils.ThresholdHoleCondition;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Running a sweep of algorithms and parameters concurrently over a single decoded input. The image and the
+ * hole are decoded once, the base algorithm result every config is measured against is taken from the
+ * reference cache once per weight function and connected approach, and the configs then run on a bounded
+ * pool, each on its own copy of the input. The wall time, the CPU time and the allocation of every config
+ * are measured on the thread running it, so threads the algorithm spawns aren't counted: sequential
+ * algorithms measure best in a sweep.
+ * @param parallelism The amount of configs running at once
+ */
+public record SweepRunner(int parallelism) {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double BYTES_PER_MEGA = 1 << 20;
+    private static final long UNSUPPORTED = -1;
+
+    /**
+     * A single run of a sweep
+     * @param algoSupplier Supplies the algorithm, a new instance for algorithms with state
+     * @param func The weight function
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is 4)
+     */
+    public record SweepConfig(Supplier<FillHoleAlgo> algoSupplier, WeightFunction func,
+                              boolean isEightConnected) {}
+
+    /**
+     * The measurements of a single run of a sweep
+     * @param name The name of the algorithm, the weight function and the connected approach
+     * @param wallNanos The wall time of the run, in nanoseconds
+     * @param cpuNanos The CPU time of the thread running the run, in nanoseconds, or -1 if unsupported
+     * @param allocatedBytes The bytes allocated by the thread running the run, or -1 if unsupported
+     * @param accuracy The accuracy against the base algorithm
+     */
+    public record SweepResult(String name, long wallNanos, long cpuNanos, long allocatedBytes,
+                              Tests.Accuracy accuracy) {}
+
+    /**
+     * Create a new instance of this runner
+     * @param parallelism The amount of configs running at once
+     */
+    public SweepRunner {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+    }
+
+    /**
+     * Create a new instance of this runner, running a config per available processor
+     */
+    public SweepRunner(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs a sweep over an image and a hole
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @param configs The configs to run
+     * @return The results, in the order of the configs
+     * @throws IOException In case there's a problem reading an image
+     */
+    public List<SweepResult> run(String imgFileName, String holeFileName, List<SweepConfig> configs)
+            throws IOException {
+        InputCache inputCache = InputCache.getInstance();
+        GrayImage grayMat = inputCache.getGrayMat(imgFileName);
+        HashMap<Boolean, InputCache.HoleSets> holeSetsByConnectivity = new HashMap<>();
+        ReferenceCache referenceCache = ReferenceCache.getInstance();
+        for (SweepConfig config : configs){
+            InputCache.HoleSets holeSets = holeSetsByConnectivity.get(config.isEightConnected());
+            if (holeSets == null){
+                holeSets = inputCache.getHoleSets(holeFileName, ThresholdHoleCondition.getInstance(),
+                        config.isEightConnected());
+                holeSetsByConnectivity.put(config.isEightConnected(), holeSets);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            ArrayList<Future<SweepResult>> futures = new ArrayList<>(configs.size());
+            for (SweepConfig config : configs){
+                InputCache.HoleSets holeSets = holeSetsByConnectivity.get(config.isEightConnected());
+                GrayImage reference = referenceCache.getReference(grayMat, holeSets.holeSet(),
+                        holeSets.boundarySet(), config.func(), config.isEightConnected());
+                futures.add(executor.submit(() -> runConfig(config, grayMat, holeSets, reference)));
+            }
+            ArrayList<SweepResult> results = new ArrayList<>(configs.size());
+            for (Future<SweepResult> future : futures) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the sweep", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A config of the sweep failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a single config on copies of the input and measures it
+     * @param config The config
+     * @param grayMat The image, shared by all the configs and never changed
+     * @param holeSets The hole and its boundary, shared by all the configs and never changed
+     * @param reference The result of the base algorithm
+     * @return The measurements
+     */
+    private static SweepResult runConfig(SweepConfig config, GrayImage grayMat, InputCache.HoleSets holeSets,
+                                         GrayImage reference) {
+        GrayImage imgMat = grayMat.copy();
+        PixSet holeSet = new PixSet(holeSets.holeSet());
+        PixSet boundarySet = new PixSet(holeSets.boundarySet());
+        FillHoleAlgo algo = config.algoSupplier().get();
+
+        long cpuStart = getCpuNanos();
+        long allocatedStart = PhaseTrace.getAllocatedBytes();
+        long wallStart = System.nanoTime();
+        algo.apply(imgMat, holeSet, boundarySet, config.func(), config.isEightConnected());
+        long wallNanos = System.nanoTime() - wallStart;
+        long cpuEnd = getCpuNanos();
+        long allocatedEnd = PhaseTrace.getAllocatedBytes();
+
+        String name = (config.isEightConnected() ? "EightConnected" : "FourConnected") + algo.toString() +
+                config.func().toString();
+        return new SweepResult(name, wallNanos, cpuStart == UNSUPPORTED ? UNSUPPORTED : cpuEnd - cpuStart,
+                allocatedStart == UNSUPPORTED ? UNSUPPORTED : allocatedEnd - allocatedStart,
+                Tests.getAccuracy(imgMat, reference, holeSets.holeSet()));
+    }
+
+    /**
+     * Gets the CPU time of the current thread
+     * @return The CPU time in nanoseconds, or -1 if unsupported
+     */
+    private static long getCpuNanos() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : UNSUPPORTED;
+    }
+
+    /**
+     * Prints the results of a sweep as a table
+     * @param results The results
+     */
+    public static void printTable(List<SweepResult> results) {
+        int nameWidth = "Config".length();
+        for (SweepResult result : results) nameWidth = Math.max(nameWidth, result.name().length());
+        String format = "%-" + nameWidth + "s %12s %12s %12s %10s %10s\n";
+        System.out.printf(format, "Config", "Wall (ms)", "CPU (ms)", "Alloc (MB)", "Accuracy", "Error");
+        for (SweepResult result : results){
+            System.out.printf(format, result.name(),
+                    String.format("%.2f", result.wallNanos() / NANOS_PER_MILLI),
+                    result.cpuNanos() == UNSUPPORTED ? "n/a" :
+                            String.format("%.2f", result.cpuNanos() / NANOS_PER_MILLI),
+                    result.allocatedBytes() == UNSUPPORTED ? "n/a" :
+                            String.format("%.2f", result.allocatedBytes() / BYTES_PER_MEGA),
+                    String.format("%.4f", result.accuracy().accuracy()),
+                    String.format("%.4f", result.accuracy().error()));
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package img_hole_fill;
 
 import img_hole_fill.algos.*;
+import img_hole_fill.utils.BoundaryUtils;
 import img_hole_fill.utils.BuffImgUtils;
+import img_hole_fill.utils.GrayImage;
 import img_hole_fill.utils.HoleUtils;
-import img_hole_fill.utils.IntPair;
+import img_hole_fill.utils.InputCache;
+import img_hole_fill.utils.PhaseTrace;
+import img_hole_fill.utils.PixConnectUtils;
+import img_hole_fill.utils.PixSet;
+import img_hole_fill.utils.ThresholdHoleCondition;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Tests for reviewing various results
@@ -16,49 +25,81 @@ public abstract class Tests {
     private static final String DEFAULT_GRAY_FILE_NAME_PREFIX = "Gray";
     private static final String HOLED_PREFIX_BY_HOLE_FILE_NAME = "HoledByHoleFileName";
     private static final String HOLED_PREFIX_BY_HOLED_MAT = "HoledByHoledMat";
+    private static final int ACCURACY_CHUNK_SIZE = 4096;
+    private static final int ACCURACY_CHUNKS_PER_THREAD = 4;
+    private static final int SEQUENTIAL_PARALLELISM = 1;
+    private static final int LAYERS_CHECK_HOLES = 30;
+    private static final long LAYERS_CHECK_SEED = 21;
+    private static final int DENSE_CHECK_SIZE = 96;
+    private static final int SPARSE_CHECK_SIZE = 1024;
+    private static final int CHECK_MARGIN = 12;
+    private static final int MAX_CHECK_COMPONENTS = 4;
+    private static final int MAX_CHECK_RADIUS = 9;
 
     /**
-     * Prints the percentage of pixels in the given matrix that are not 0
+     * The accuracy of an algorithm against the base algorithm
+     * @param accuracy The percentage of hole pixels filled the same as the base algorithm
+     * @param error The average difference from the base algorithm over the hole pixels, in percents
+     */
+    public record Accuracy(float accuracy, float error) {}
+
+    /**
+     * Prints the accuracy of an algorithm against the base algorithm
      * @param algoName The name of the algorithm that its accuracy is measured
      * @param imgMat The matrix after the algorithm modified it
+     * @param referenceMat The matrix filled by the base algorithm
      * @param holeSet The pixels in the hole
-     * @param boundarySet The pixels in the boundary
-     * @param func The weight function used by the algorithm
-     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is the
-     *                         4-connected approach)
      */
-    static void printAccuracy(String algoName, float[][] imgMat,
-                              float[][] copyImgMat, HashSet<IntPair> holeSet,
-                              HashSet<IntPair> boundarySet, WeightFunction func,
-                              boolean isEightConnected){
+    static void printAccuracy(String algoName, GrayImage imgMat, GrayImage referenceMat, PixSet holeSet){
         System.out.println(algoName);
-        BaseAlgo.getInstance().apply(copyImgMat, holeSet, boundarySet, func, isEightConnected);
-        float base;
-        float other;
-        float tmp;
-        for (IntPair pix : holeSet){
-            other = imgMat[pix.getX()][pix.getY()];
-            base = copyImgMat[pix.getX()][pix.getY()];
-            tmp = Math.abs(base - other);
-            copyImgMat[pix.getX()][pix.getY()] -= imgMat[pix.getX()][pix.getY()];
-            tmp = copyImgMat[pix.getX()][pix.getY()];
-        }
-        int counter = 0;
-        float diff = 0;
-        float cur;
-        float tmpErr;
-        for (IntPair pix : holeSet){
-            cur = copyImgMat[pix.getX()][pix.getY()];
-            if (cur > 0.00001) {
-                counter++;
-                tmpErr = Math.abs(cur);
-                diff += Math.abs(tmpErr);
+        Accuracy accuracy = getAccuracy(imgMat, referenceMat, holeSet);
+        System.out.printf("Accuracy: %f\n", accuracy.accuracy());
+        System.out.printf("Error: %f\n\n", accuracy.error());
+    }
+
+    /**
+     * Gets the accuracy of an algorithm against the base algorithm, counting the hole pixels the base
+     * algorithm filled with a larger value, in a single parallel pass over the hole
+     * @param imgMat The matrix after the algorithm filled it
+     * @param baseImgMat The matrix after the base algorithm filled it
+     * @param holeSet The pixels in the hole
+     * @return The accuracy
+     */
+    static Accuracy getAccuracy(GrayImage imgMat, GrayImage baseImgMat, PixSet holeSet){
+        PhaseTrace.AccuracyEvent event = new PhaseTrace.AccuracyEvent();
+        int holesAmount = holeSet.size();
+        int chunksAmount = Math.max(1, Math.min(holesAmount / ACCURACY_CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors() * ACCURACY_CHUNKS_PER_THREAD));
+        double[][] chunkSums = new double[chunksAmount][];
+        IntStream.range(0, chunksAmount).parallel().forEach(chunk -> {
+            int counter = 0;
+            double diff = 0;
+            float cur;
+            int x;
+            int y;
+            int from = (int) ((long) chunk * holesAmount / chunksAmount);
+            int to = (int) ((long) (chunk + 1) * holesAmount / chunksAmount);
+            for (int i = from; i < to; i++){
+                x = PixSet.getX(holeSet.get(i));
+                y = PixSet.getY(holeSet.get(i));
+                cur = baseImgMat.get(x, y) - imgMat.get(x, y);
+                if (cur > 0.00001) {
+                    counter++;
+                    diff += Math.abs(cur);
+                }
             }
+            chunkSums[chunk] = new double[]{counter, diff};
+        });
+        int counter = 0;
+        double diff = 0;
+        for (double[] chunkSum : chunkSums){
+            counter += (int) chunkSum[0];
+            diff += chunkSum[1];
         }
-        float accuracy = 100 * (holeSet.size() - counter) / (float) holeSet.size();
-        float error = 100 * diff / (float) holeSet.size();
-        System.out.printf("Accuracy: %f\n", accuracy);
-        System.out.printf("Error: %f\n\n", error);
+        float accuracy = 100 * (holesAmount - counter) / (float) holesAmount;
+        float error = (float) (100 * diff / holesAmount);
+        event.finish(holesAmount, accuracy, error);
+        return new Accuracy(accuracy, error);
     }
 
     /**
@@ -79,7 +120,7 @@ public abstract class Tests {
      */
     public static void writeHoledImgByHoleFileTest(String imgFileName, String holeFileName) throws IOException {
         BufferedImage grayImg = BuffImgUtils.getGrayImgFromFileName(imgFileName);
-        HashSet<IntPair> holeSet = HoleUtils.getHoleSetFromFile(holeFileName);
+        PixSet holeSet = HoleUtils.getHoleSetFromFile(holeFileName);
         HoleUtils.setHolesInImg(grayImg, holeSet);
         BuffImgUtils.writeImg(grayImg, HOLED_PREFIX_BY_HOLE_FILE_NAME + imgFileName);
     }
@@ -93,7 +134,7 @@ public abstract class Tests {
      */
     public static void writeHoledImgByHoledMatTest(String imgFileName, String holeFileName)
             throws IOException {
-        float[][] grayMat = HoleUtils.getHoledGrayMatFromFile(imgFileName, holeFileName);
+        GrayImage grayMat = HoleUtils.getHoledGrayMatFromFile(imgFileName, holeFileName);
         BufferedImage grayImg = BuffImgUtils.getGrayImgFromMat(grayMat);
         BuffImgUtils.writeImg(grayImg, HOLED_PREFIX_BY_HOLED_MAT + imgFileName);
     }
@@ -109,7 +150,10 @@ public abstract class Tests {
      */
     public static void fillByHoledMatTest(String imgFileName, String holeFileName, boolean isEightConnected,
                                           FillHoleAlgo algo) throws IOException {
-        float[][] grayImgMat = HoleUtils.getHoledGrayMatFromFile(imgFileName, holeFileName);
+        InputCache inputCache = InputCache.getInstance();
+        GrayImage grayImgMat = inputCache.getGrayMat(imgFileName);
+        HoleUtils.setHolesInMat(grayImgMat, inputCache.getHoleSets(holeFileName,
+                ThresholdHoleCondition.getInstance(), isEightConnected).holeSet());
         Runner.fillByHoledMat(imgFileName, grayImgMat, DefaultWeight.getInstance(), isEightConnected,
                 algo);
     }
@@ -198,4 +242,162 @@ public abstract class Tests {
             }
         }
     }
+
+    /**
+     * Run the approx versions and the line space and random algorithms with both connected approaches as a
+     * single concurrent sweep over a single decoded input, printing a table of the results
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole
+     * @throws IOException In case there's a problem reading an image
+     */
+    public static void runSweep(String imgFileName, String holeFileName) throws IOException {
+        ArrayList<Supplier<FillHoleAlgo>> algoSuppliers = new ArrayList<>();
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool2 : new boolean[]{true, false}) {
+                for (boolean bool3 : new boolean[]{true, false}) {
+                    algoSuppliers.add(() -> new ApproxAlgo(bool1, bool2, bool3));
+                }
+            }
+        }
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool3 : new boolean[]{true, false}) {
+                algoSuppliers.add(() -> new WavefrontApproxAlgo(bool1, bool3, SEQUENTIAL_PARALLELISM));
+            }
+        }
+        algoSuppliers.add(() -> new BoundaryLineSpaceAlgo(false));
+        algoSuppliers.add(() -> new BoundaryLineSpaceAlgo(true));
+        algoSuppliers.add(HolesLineSpaceAlgo::getHolesLineSpaceAlgoInstance);
+        algoSuppliers.add(RandHoleAlgo::getRandHoleAlgoInstance);
+        algoSuppliers.add(RandBoundaryAlgo::getRandBoundaryAlgoInstance);
+
+        ArrayList<SweepRunner.SweepConfig> configs = new ArrayList<>();
+        for (Supplier<FillHoleAlgo> algoSupplier : algoSuppliers){
+            for (boolean isEightConnected : new boolean[]{true, false}){
+                configs.add(new SweepRunner.SweepConfig(algoSupplier, DefaultWeight.getInstance(),
+                        isEightConnected));
+            }
+        }
+        SweepRunner.printTable(new SweepRunner().run(imgFileName, holeFileName, configs));
+    }
+
+    /**
+     * Checks that the approx versions fill bit by bit the same as filling layer after layer by sets, the way
+     * ApproxAlgo used to, for all the 8 combinations of their flags, both connected approaches and random
+     * holes of several components. Half of the holes are spread over a large image, so that their layers
+     * are labelled by a hash table rather than by a dense grid.
+     * @return True iff all the cases are filled the same
+     */
+    public static boolean checkApproxLayers() {
+        Random random = new Random(LAYERS_CHECK_SEED);
+        WeightFunction func = DefaultWeight.getInstance();
+        int cases = 0;
+        int mismatches = 0;
+        for (int hole = 0; hole < LAYERS_CHECK_HOLES; hole++) {
+            int size = hole % 2 == 0 ? DENSE_CHECK_SIZE : SPARSE_CHECK_SIZE;
+            GrayImage imgMat = new GrayImage(size, size);
+            for (int i = 0; i < imgMat.getData().length; i++) imgMat.getData()[i] = random.nextFloat();
+            PixSet holeSet = getRandomHoleSet(random, size);
+            for (boolean isLargeInnerLayer : new boolean[]{true, false}) {
+                for (boolean isAddToBoundaryAsWeGo : new boolean[]{true, false}) {
+                    for (boolean isEntireBoundary : new boolean[]{true, false}) {
+                        for (boolean isEightConnected : new boolean[]{true, false}) {
+                            GrayImage approxMat = imgMat.copy();
+                            PixSet approxHoleSet = new PixSet(holeSet);
+                            new ApproxAlgo(isLargeInnerLayer, isAddToBoundaryAsWeGo, isEntireBoundary).apply(
+                                    approxMat, approxHoleSet,
+                                    BoundaryUtils.getBoundarySet(approxHoleSet, isEightConnected), func,
+                                    isEightConnected);
+                            GrayImage referenceMat = imgMat.copy();
+                            PixSet referenceHoleSet = new PixSet(holeSet);
+                            fillBySetLayers(referenceMat, referenceHoleSet,
+                                    BoundaryUtils.getBoundarySet(referenceHoleSet, isEightConnected), func,
+                                    isEightConnected, isLargeInnerLayer, isAddToBoundaryAsWeGo,
+                                    isEntireBoundary);
+                            cases++;
+                            if (!Arrays.equals(approxMat.getData(), referenceMat.getData())) mismatches++;
+                        }
+                    }
+                }
+            }
+        }
+        System.out.printf("Approx layers: %d cases, %d filled differently from the layers by sets\n\n", cases,
+                mismatches);
+        return mismatches == 0;
+    }
+
+    /**
+     * Gets a random hole of a few disks, away from the edges of the image
+     * @param random The source of randomness
+     * @param size The width and the height of the image
+     * @return The pixels in the hole
+     */
+    private static PixSet getRandomHoleSet(Random random, int size) {
+        PixSet holeSet = new PixSet();
+        int components = 1 + random.nextInt(MAX_CHECK_COMPONENTS);
+        for (int component = 0; component < components; component++) {
+            int radius = 1 + random.nextInt(MAX_CHECK_RADIUS);
+            int centerX = CHECK_MARGIN + random.nextInt(size - 2 * CHECK_MARGIN);
+            int centerY = CHECK_MARGIN + random.nextInt(size - 2 * CHECK_MARGIN);
+            for (int y = centerY - radius; y <= centerY + radius; y++) {
+                for (int x = centerX - radius; x <= centerX + radius; x++) {
+                    int dx = x - centerX;
+                    int dy = y - centerY;
+                    if (dx * dx + dy * dy <= radius * radius) holeSet.add(x, y);
+                }
+            }
+        } return holeSet;
+    }
+
+    /**
+     * Fills a hole by layers the way ApproxAlgo used to, as a reference: each time taking the hole pixels
+     * connected to the current boundary as a set, filling each of them from the boundary (or from its
+     * connected pixels in the boundary), and taking the layer as the next boundary
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixels in the hole, emptied
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+     * @param isAddToBoundaryAsWeGo Whether or not to fill every hole pixel also from the pixels of its layer
+     *                              filled before it
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     */
+    private static void fillBySetLayers(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                                        WeightFunction func, boolean isEightConnected,
+                                        boolean isLargeInnerLayer, boolean isAddToBoundaryAsWeGo,
+                                        boolean isEntireBoundary) {
+        int layerConnectedAmount = PixConnectUtils.getConnectedAmount(isLargeInnerLayer);
+        int connectedAmount = PixConnectUtils.getConnectedAmount(isEightConnected);
+        WeightTable weightTable = func instanceof RadialWeightFunction radialFunc ?
+                WeightTable.getInstance(radialFunc) : null;
+        long pix;
+        while (!holeSet.isEmpty()) {
+            PixSet layer = new PixSet();
+            for (int i = 0; i < boundarySet.size(); i++) {
+                for (int j = 0; j < layerConnectedAmount; j++) {
+                    pix = PixConnectUtils.getConnectedPix(boundarySet.get(i), j);
+                    if (holeSet.contains(pix)) layer.add(pix);
+                }
+            }
+            if (layer.isEmpty()) return;
+            for (int i = 0; i < layer.size(); i++) {
+                long holePix = layer.get(i);
+                int holeX = PixSet.getX(holePix);
+                int holeY = PixSet.getY(holePix);
+                PixSet curBoundary = boundarySet;
+                if (!isEntireBoundary) {
+                    curBoundary = new PixSet();
+                    for (int j = 0; j < connectedAmount; j++) {
+                        pix = PixConnectUtils.getConnectedPix(holePix, j);
+                        if (boundarySet.contains(pix)) curBoundary.add(pix);
+                    }
+                }
+                grayMat.set(holeX, holeY, BaseAlgo.getPixFillVal(holeX, holeY, grayMat, curBoundary, func,
+                        weightTable));
+                if (isAddToBoundaryAsWeGo) boundarySet.add(holePix);
+            }
+            boundarySet = layer;
+            holeSet.removeAll(layer);
+        }
+    }
 }
@@ -0,0 +1,561 @@
+package img_hole_fill;
+
+import img_hole_fill.algos.FillHoleAlgo;
+import img_hole_fill.algos.WeightFunction;
+import img_hole_fill.utils.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Filling the holes of images too large to hold in memory, tile by tile. Image files aren't randomly
+ * addressable, so the image and the hole file are each decoded exactly once, streamed in strips of rows into
+ * temporary raw gray scale matrix files (raw files given as input are used as they are). The strips of the
+ * hole file are labelled on the way, keeping only two rows of labels, to find the bounding box of every
+ * connected component. Every tile is then mapped from the raw files together with a halo covering the entire
+ * components it touches and their boundaries, the components touching the tile are filled each against its
+ * own boundary (as in the Component algorithm), and the tile is written to its own file as soon as it's
+ * done. A component touching several tiles is filled only once, by the first of its tiles to reach it, and
+ * the rest of its tiles take the values of that fill, held until the last of them does. The memory in use
+ * depends on the size of the tiles, their halos and the in-flight limit, and not on the size of the image,
+ * as long as no single component is huge, and PNG files are decoded a row at a time (any other image format
+ * is decoded whole once, see GrayBandReader).
+ * @param tileSize The side of the tiles
+ * @param maxInFlight The largest amount of tiles submitted and not written yet
+ * @param parallelism The amount of tiles filled at once
+ */
+public record TiledRunner(int tileSize, int maxInFlight, int parallelism) {
+    private static final String TILED_PREFIX = "Tiled";
+    private static final String EIGHT_CONNECTED_PREFIX = "EightConnected";
+    private static final String FOUR_CONNECTED_PREFIX = "FourConnected";
+    private static final String TEMP_PREFIX = "img_hole_fill";
+    private static final int INITIAL_LABELS = 1024;
+    private static final int NO_LABEL = 0;
+
+    /**
+     * Create a new instance of this runner
+     * @param tileSize The side of the tiles
+     * @param maxInFlight The largest amount of tiles submitted and not written yet
+     * @param parallelism The amount of tiles filled at once
+     */
+    public TiledRunner {
+        if (tileSize < 1 || maxInFlight < 1 || parallelism < 1)
+            throw new IllegalArgumentException("The tile size, the in-flight limit and the parallelism " +
+                    "must be positive");
+    }
+
+    /**
+     * Create a new instance of this runner, filling a tile per available processor
+     * @param tileSize The side of the tiles
+     * @param maxInFlight The largest amount of tiles submitted and not written yet
+     */
+    public TiledRunner(int tileSize, int maxInFlight){
+        this(tileSize, maxInFlight, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Fixing the original image given the hole in a separate file tile by tile, and writing every tile of
+     * the solution to its own file in the current working directory
+     * @param imgFileName The file name of the image
+     * @param holeFileName The file name of the hole file, of the same size as the image
+     * @param func The weighting function with which to calculate the values to fill the hole with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (the default is the
+     * 4-connected approach)
+     * @param algoSupplier Supplies the filling algorithm for every component, called once per component
+     * @throws IOException In case there's a problem reading an image or writing the result
+     */
+    public void fillByHoleFile(String imgFileName, String holeFileName, WeightFunction func,
+                               boolean isEightConnected, Supplier<FillHoleAlgo> algoSupplier)
+            throws IOException {
+        ArrayList<File> tempFiles = new ArrayList<>();
+        try {
+            ComponentBoxes boxes = new ComponentBoxes();
+            File holeRawFile = toRawFile(holeFileName, tempFiles, boxes, isEightConnected);
+            File imgRawFile = toRawFile(imgFileName, tempFiles, null, isEightConnected);
+            Dimension size = RawMatUtils.getRawMatSize(imgRawFile);
+            if (!size.equals(RawMatUtils.getRawMatSize(holeRawFile)))
+                throw new IllegalArgumentException("The image and the hole are of different sizes");
+            fillTiles(imgFileName, imgRawFile, holeRawFile, size, getTileRegions(boxes, size), func,
+                    isEightConnected, algoSupplier);
+        } finally {
+            for (File tempFile : tempFiles) Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Gets a raw file of an image, decoding the image once into a temporary raw file unless it's a raw file
+     * already, and labelling the components of the hole on the way if it's the hole file
+     * @param fileName The file name of the image in the current working directory
+     * @param tempFiles The temporary files to delete once done, the new one is added to them
+     * @param boxes The component labels to add the hole pixels of every strip to, null for the image itself
+     * @param isEightConnected Whether or not to apply the 8-connected approach
+     * @return The raw file
+     * @throws IOException In case there's a problem reading the image or writing the raw file
+     */
+    private File toRawFile(String fileName, ArrayList<File> tempFiles, ComponentBoxes boxes,
+                           boolean isEightConnected) throws IOException {
+        try (GrayBandReader reader = new GrayBandReader(fileName, tileSize)) {
+            File rawFile;
+            RawMatUtils.BandWriter writer = null;
+            if (RawMatUtils.isRawFile(fileName)) rawFile = new File(System.getProperty("user.dir"), fileName);
+            else {
+                rawFile = Files.createTempFile(TEMP_PREFIX, RawMatUtils.RAW_EXTENSION).toFile();
+                tempFiles.add(rawFile);
+                writer = new RawMatUtils.BandWriter(rawFile, reader.getWidth(), reader.getHeight(),
+                        RawMatUtils.SampleType.FLOAT32);
+            }
+            if (writer == null && boxes == null) return rawFile;
+            HoleLabeller labeller = boxes == null ? null : new HoleLabeller(boxes, reader.getWidth(),
+                    isEightConnected);
+            try {
+                GrayImage strip;
+                while ((strip = reader.nextBand()) != null){
+                    if (writer != null) writer.write(strip);
+                    if (labeller != null) labeller.addStrip(strip, reader.getNextRow() - strip.getHeight());
+                }
+            } finally {
+                if (writer != null) writer.close();
+            }
+            if (boxes != null) boxes.mergeIntoRoots();
+            return rawFile;
+        }
+    }
+
+    /**
+     * Fills all the tiles, a bounded amount of them in flight at once
+     * @param imgFileName The file name of the image, for the names of the tiles
+     * @param imgRawFile The raw file of the image
+     * @param holeRawFile The raw file of the hole
+     * @param size The size of the image
+     * @param regions The region to read for every tile, row of tiles by row of tiles
+     * @param func The weighting function
+     * @param isEightConnected Whether or not to apply the 8-connected approach
+     * @param algoSupplier Supplies the filling algorithm for every component
+     * @throws IOException In case there's a problem reading a raw file or writing a tile
+     */
+    private void fillTiles(String imgFileName, File imgRawFile, File holeRawFile, Dimension size,
+                           Rectangle[] regions, WeightFunction func, boolean isEightConnected,
+                           Supplier<FillHoleAlgo> algoSupplier) throws IOException {
+        String fileNamePrefix = (isEightConnected ? EIGHT_CONNECTED_PREFIX : FOUR_CONNECTED_PREFIX) +
+                TILED_PREFIX + algoSupplier.get().toString() + func.toString();
+        int tilesX = getTilesAmount(size.width);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        SharedFills sharedFills = new SharedFills();
+        ArrayList<Future<?>> futures = new ArrayList<>(regions.length);
+        try {
+            for (int i = 0; i < regions.length; i++){
+                Rectangle core = getCore(i % tilesX, i / tilesX, size);
+                Rectangle region = regions[i];
+                String tileFileName = fileNamePrefix + "Tile" + core.x + "_" + core.y + imgFileName;
+                inFlight.acquireUninterruptibly();
+                futures.add(executor.submit(() -> {
+                    try {
+                        fillTile(imgRawFile, holeRawFile, core, region, func, isEightConnected,
+                                algoSupplier, sharedFills, tileFileName);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while filling the tiles", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException ioException) throw ioException.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fills a single tile and writes it
+     * @param imgRawFile The raw file of the image
+     * @param holeRawFile The raw file of the hole
+     * @param core The tile itself
+     * @param region The tile together with its halo
+     * @param func The weighting function
+     * @param isEightConnected Whether or not to apply the 8-connected approach
+     * @param algoSupplier Supplies the filling algorithm for every component
+     * @param sharedFills The fills of the components touching several tiles
+     * @param tileFileName The file name to write the tile to
+     * @throws IOException In case there's a problem reading a raw file or writing the tile
+     */
+    private void fillTile(File imgRawFile, File holeRawFile, Rectangle core, Rectangle region,
+                          WeightFunction func, boolean isEightConnected, Supplier<FillHoleAlgo> algoSupplier,
+                          SharedFills sharedFills, String tileFileName) throws IOException {
+        GrayImage grayMat = RawMatUtils.readRawMat(imgRawFile, region);
+        GrayImage grayHoleMat = RawMatUtils.readRawMat(holeRawFile, region);
+        PixSet holeSet = HoleUtils.getHoleSetFromMat(grayHoleMat, ThresholdHoleCondition.getInstance());
+        Rectangle localCore = new Rectangle(core.x - region.x, core.y - region.y, core.width, core.height);
+        long pix;
+        for (PixSet component : ComponentUtils.getComponents(holeSet, isEightConnected)){
+            if (!isTouching(component, localCore)) continue;
+            int tilesAmount = getTilesTouched(component, region);
+            if (tilesAmount == 1){
+                fillComponent(grayMat, component, func, isEightConnected, algoSupplier);
+                continue;
+            }
+            FilledComponent filled = sharedFills.get(getKey(component, region), tilesAmount, () -> {
+                long[] pixels = component.toArray();
+                fillComponent(grayMat, component, func, isEightConnected, algoSupplier);
+                return FilledComponent.of(grayMat, pixels, region);
+            });
+            for (int i = 0; i < filled.pixels().length; i++){
+                pix = filled.pixels()[i];
+                grayMat.set(PixSet.getX(pix) - region.x, PixSet.getY(pix) - region.y, filled.vals()[i]);
+            }
+        }
+        GrayImage tileMat = grayMat.view(localCore.x, localCore.y, localCore.width, localCore.height);
+        BufferedImage tileImg = BuffImgUtils.getGrayImgFromMat(tileMat);
+        BuffImgUtils.writeGrayImg(tileImg, tileFileName);
+    }
+
+    /**
+     * Fills a single component against its own boundary
+     * @param grayMat The image read for the tile
+     * @param component The pixels in the component
+     * @param func The weighting function
+     * @param isEightConnected Whether or not to apply the 8-connected approach
+     * @param algoSupplier Supplies the filling algorithm for every component
+     */
+    private static void fillComponent(GrayImage grayMat, PixSet component, WeightFunction func,
+                                      boolean isEightConnected, Supplier<FillHoleAlgo> algoSupplier){
+        PixSet boundaryInImg = BoundaryUtils.getBoundaryInImg(component, grayMat, isEightConnected);
+        algoSupplier.get().apply(grayMat, component, boundaryInImg, func, isEightConnected);
+    }
+
+    /**
+     * Gets the amount of tiles a component has pixels inside
+     * @param component The pixels in the component, in the coordinates of the region
+     * @param region The region read for the tile
+     * @return The amount of tiles
+     */
+    private int getTilesTouched(PixSet component, Rectangle region){
+        PixSet tiles = new PixSet();
+        long pix;
+        for (int i = 0; i < component.size(); i++){
+            pix = component.get(i);
+            tiles.add((PixSet.getX(pix) + region.x) / tileSize, (PixSet.getY(pix) + region.y) / tileSize);
+        } return tiles.size();
+    }
+
+    /**
+     * Gets the key of a component, the same for all the tiles reading it whole: its smallest pixel in the
+     * coordinates of the image
+     * @param component The pixels in the component, in the coordinates of the region
+     * @param region The region read for the tile
+     * @return The key
+     */
+    private static long getKey(PixSet component, Rectangle region){
+        long key = Long.MAX_VALUE;
+        long pix;
+        for (int i = 0; i < component.size(); i++){
+            pix = component.get(i);
+            key = Math.min(key, PixSet.pack(PixSet.getX(pix) + region.x, PixSet.getY(pix) + region.y));
+        } return key;
+    }
+
+    /**
+     * Checks whether a component has a pixel inside a tile
+     * @param component The pixels in the component
+     * @param tile The tile
+     * @return True iff the component has a pixel inside the tile
+     */
+    private static boolean isTouching(PixSet component, Rectangle tile){
+        long pix;
+        for (int i = 0; i < component.size(); i++){
+            pix = component.get(i);
+            if (tile.contains(PixSet.getX(pix), PixSet.getY(pix))) return true;
+        } return false;
+    }
+
+    /**
+     * Gets the region to read for every tile: the tile itself, grown to cover the bounding box of every
+     * component of the hole touching it and the boundary of the component
+     * @param boxes The bounding boxes of the components, by the roots of their labels
+     * @param size The size of the image
+     * @return The regions of the tiles, row of tiles by row of tiles
+     */
+    private Rectangle[] getTileRegions(ComponentBoxes boxes, Dimension size){
+        int tilesX = getTilesAmount(size.width);
+        int tilesY = getTilesAmount(size.height);
+        Rectangle[] regions = new Rectangle[tilesX * tilesY];
+        for (int i = 0; i < regions.length; i++) regions[i] = getCore(i % tilesX, i / tilesX, size);
+
+        Rectangle img = new Rectangle(size);
+        for (int label = 1; label < boxes.labelsAmount; label++){
+            if (boxes.find(label) != label) continue;
+            Rectangle box = new Rectangle(boxes.minX[label] - 1, boxes.minY[label] - 1,
+                    boxes.maxX[label] - boxes.minX[label] + 3, boxes.maxY[label] - boxes.minY[label] + 3)
+                    .intersection(img);
+            for (int tileY = boxes.minY[label] / tileSize; tileY <= boxes.maxY[label] / tileSize; tileY++){
+                for (int tileX = boxes.minX[label] / tileSize; tileX <= boxes.maxX[label] / tileSize;
+                     tileX++){
+                    regions[tileY * tilesX + tileX].add(box);
+                }
+            }
+        } return regions;
+    }
+
+    /**
+     * A filled component
+     * @param pixels The pixels in the component, in the coordinates of the image
+     * @param vals The values the pixels were filled with, by the order of the pixels
+     */
+    private record FilledComponent(long[] pixels, float[] vals) {
+
+        /**
+         * Takes the values of a component out of the image it was filled in
+         * @param grayMat The image read for the tile
+         * @param pixels The pixels in the component, in the coordinates of the region
+         * @param region The region read for the tile
+         * @return The filled component
+         */
+        static FilledComponent of(GrayImage grayMat, long[] pixels, Rectangle region){
+            long[] imgPixels = new long[pixels.length];
+            float[] vals = new float[pixels.length];
+            for (int i = 0; i < pixels.length; i++){
+                imgPixels[i] = PixSet.pack(PixSet.getX(pixels[i]) + region.x,
+                        PixSet.getY(pixels[i]) + region.y);
+                vals[i] = grayMat.get(PixSet.getX(pixels[i]), PixSet.getY(pixels[i]));
+            } return new FilledComponent(imgPixels, vals);
+        }
+    }
+
+    /**
+     * The fills of the components touching several tiles. The first tile to reach a component fills it,
+     * the rest of its tiles wait for that fill, and the fill is held only until the last of them takes it.
+     */
+    private static class SharedFills {
+        private final ConcurrentHashMap<Long, SharedFill> fills = new ConcurrentHashMap<>();
+
+        /**
+         * The fill of a single component
+         * @param filled The filled component, once filled
+         * @param tilesLeft The amount of tiles yet to take the fill
+         */
+        private record SharedFill(CompletableFuture<FilledComponent> filled, AtomicInteger tilesLeft) {}
+
+        /**
+         * Gets the fill of a component, filling it unless another tile got to it first. The tile filling a
+         * component never waits for another fill meanwhile, so the tiles can't wait for each other in a
+         * cycle.
+         * @param key The key of the component, see getKey
+         * @param tilesAmount The amount of tiles the component touches
+         * @param filler Fills the component in the image of the current tile
+         * @return The filled component
+         */
+        FilledComponent get(long key, int tilesAmount, Supplier<FilledComponent> filler){
+            SharedFill fill = new SharedFill(new CompletableFuture<>(), new AtomicInteger(tilesAmount));
+            SharedFill existing = fills.putIfAbsent(key, fill);
+            if (existing != null) fill = existing;
+            else {
+                try {
+                    fill.filled().complete(filler.get());
+                } catch (RuntimeException | Error e) {
+                    fill.filled().completeExceptionally(e);
+                    throw e;
+                }
+            }
+            try {
+                return fill.filled().join();
+            } finally {
+                if (fill.tilesLeft().decrementAndGet() == 0) fills.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Labels the connected components of the hole row by row, a strip of rows at a time as the hole file is
+     * streamed, with a union-find over the labels
+     */
+    private static class HoleLabeller {
+        private final ComponentBoxes boxes;
+        private final HoleCondition condition = ThresholdHoleCondition.getInstance();
+        private final int width;
+        private final boolean isEightConnected;
+        private final long[] rowWords;
+        private int[] prevLabels;
+        private int[] curLabels;
+
+        /**
+         * Create a labeller before the first strip
+         * @param boxes The labels to add the components to
+         * @param width The width of the image
+         * @param isEightConnected Whether or not to apply the 8-connected approach
+         */
+        HoleLabeller(ComponentBoxes boxes, int width, boolean isEightConnected){
+            this.boxes = boxes;
+            this.width = width;
+            this.isEightConnected = isEightConnected;
+            rowWords = new long[(width + Long.SIZE - 1) / Long.SIZE];
+            prevLabels = new int[width];
+            curLabels = new int[width];
+        }
+
+        /**
+         * Labels the hole pixels of the next strip
+         * @param strip The strip, as wide as the image
+         * @param stripY The row of the image the strip starts at
+         */
+        void addStrip(GrayImage strip, int stripY){
+            for (int y = 0; y < strip.getHeight(); y++){
+                if (condition.getRowHoles(strip, y, rowWords, 0) == 0){
+                    Arrays.fill(curLabels, NO_LABEL);
+                } else {
+                    for (int x = 0; x < width; x++){
+                        if ((rowWords[x / Long.SIZE] & (1L << x)) == 0){
+                            curLabels[x] = NO_LABEL;
+                            continue;
+                        }
+                        int label = x > 0 ? curLabels[x - 1] : NO_LABEL;
+                        label = boxes.union(label, prevLabels[x]);
+                        if (isEightConnected){
+                            if (x > 0) label = boxes.union(label, prevLabels[x - 1]);
+                            if (x < width - 1) label = boxes.union(label, prevLabels[x + 1]);
+                        }
+                        if (label == NO_LABEL) label = boxes.newLabel();
+                        curLabels[x] = label;
+                        boxes.addPix(label, x, stripY + y);
+                    }
+                }
+                int[] tmp = prevLabels;
+                prevLabels = curLabels;
+                curLabels = tmp;
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of tiles along an axis
+     * @param length The length of the image along the axis
+     * @return The amount of tiles
+     */
+    private int getTilesAmount(int length){
+        return (length + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Gets a tile itself, without its halo
+     * @param tileX The index of the column of the tile
+     * @param tileY The index of the row of the tile
+     * @param size The size of the image
+     * @return The tile
+     */
+    private Rectangle getCore(int tileX, int tileY, Dimension size){
+        int x = tileX * tileSize;
+        int y = tileY * tileSize;
+        return new Rectangle(x, y, Math.min(tileSize, size.width - x), Math.min(tileSize, size.height - y));
+    }
+
+    /**
+     * The labels of the connected components found so far, joined by a union-find, with a bounding box for
+     * every label
+     */
+    private static class ComponentBoxes {
+        private int[] parent = new int[INITIAL_LABELS];
+        private int[] minX = new int[INITIAL_LABELS];
+        private int[] minY = new int[INITIAL_LABELS];
+        private int[] maxX = new int[INITIAL_LABELS];
+        private int[] maxY = new int[INITIAL_LABELS];
+
+        /**
+         * The amount of labels, label 0 standing for no label at all
+         */
+        private int labelsAmount = 1;
+
+        /**
+         * Creates a new label with an empty bounding box
+         * @return The new label
+         */
+        int newLabel(){
+            if (labelsAmount == parent.length){
+                int newLength = labelsAmount * 2;
+                parent = Arrays.copyOf(parent, newLength);
+                minX = Arrays.copyOf(minX, newLength);
+                minY = Arrays.copyOf(minY, newLength);
+                maxX = Arrays.copyOf(maxX, newLength);
+                maxY = Arrays.copyOf(maxY, newLength);
+            }
+            int label = labelsAmount++;
+            parent[label] = label;
+            minX[label] = Integer.MAX_VALUE;
+            minY[label] = Integer.MAX_VALUE;
+            maxX[label] = Integer.MIN_VALUE;
+            maxY[label] = Integer.MIN_VALUE;
+            return label;
+        }
+
+        /**
+         * Finds the root of a label, halving the path on the way
+         * @param label The label
+         * @return The root
+         */
+        int find(int label){
+            while (parent[label] != label){
+                parent[label] = parent[parent[label]];
+                label = parent[label];
+            } return label;
+        }
+
+        /**
+         * Joins two labels, either of them may be no label at all
+         * @param label The first label
+         * @param other The second label
+         * @return The root of the joined labels, or no label if both are no label
+         */
+        int union(int label, int other){
+            if (label == NO_LABEL) return other == NO_LABEL ? NO_LABEL : find(other);
+            if (other == NO_LABEL) return find(label);
+            int root = find(label);
+            int otherRoot = find(other);
+            if (root != otherRoot) parent[otherRoot] = root;
+            return root;
+        }
+
+        /**
+         * Grows the bounding box of a label to cover a pixel
+         * @param label The label
+         * @param x The x coordinate of the pixel
+         * @param y The y coordinate of the pixel
+         */
+        void addPix(int label, int x, int y){
+            minX[label] = Math.min(minX[label], x);
+            minY[label] = Math.min(minY[label], y);
+            maxX[label] = Math.max(maxX[label], x);
+            maxY[label] = Math.max(maxY[label], y);
+        }
+
+        /**
+         * Grows the bounding box of every root to cover the bounding boxes of all the labels joined to it
+         */
+        void mergeIntoRoots(){
+            for (int label = 1; label < labelsAmount; label++){
+                int root = find(label);
+                if (root == label || minX[label] == Integer.MAX_VALUE) continue;
+                addPix(root, minX[label], minY[label]);
+                addPix(root, maxX[label], maxY[label]);
+            }
+        }
+    }
+}
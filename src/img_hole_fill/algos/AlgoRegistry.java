@@ -0,0 +1,88 @@
+package img_hole_fill.algos;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The filling algorithms by their names, for choosing an algorithm by a name given from outside the program.
+ * The name of an algorithm is its toString, the same name it gives the files of its results. Every
+ * algorithm is registered in its sequential configuration, since the callers run many fills at once.
+ */
+public abstract class AlgoRegistry {
+    private static final int PYRAMID_LEVELS = 3;
+    private static final int PYRAMID_BAND_WIDTH = 4;
+    private static final int COMPONENT_NEIGHBOUR_RADIUS = -1;
+    private static final int SEQUENTIAL_PARALLELISM = 1;
+
+    /**
+     * The suppliers of the algorithms by their names, in the order they were registered
+     */
+    private static final Map<String, Supplier<FillHoleAlgo>> algoSuppliers = getAlgoSuppliers();
+
+    /**
+     * Registers all the algorithms
+     * @return The suppliers of the algorithms by their names
+     */
+    private static Map<String, Supplier<FillHoleAlgo>> getAlgoSuppliers() {
+        LinkedHashMap<String, Supplier<FillHoleAlgo>> suppliers = new LinkedHashMap<>();
+        register(suppliers, BaseAlgo::getInstance);
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool2 : new boolean[]{true, false}) {
+                for (boolean bool3 : new boolean[]{true, false}) {
+                    register(suppliers, () -> new ApproxAlgo(bool1, bool2, bool3));
+                }
+            }
+        }
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool3 : new boolean[]{true, false}) {
+                register(suppliers, () -> new WavefrontApproxAlgo(bool1, bool3, SEQUENTIAL_PARALLELISM));
+            }
+        }
+        register(suppliers, () -> new BoundaryLineSpaceAlgo(false));
+        register(suppliers, () -> new BoundaryLineSpaceAlgo(true));
+        register(suppliers, HolesLineSpaceAlgo::getHolesLineSpaceAlgoInstance);
+        register(suppliers, RandHoleAlgo::getRandHoleAlgoInstance);
+        register(suppliers, RandBoundaryAlgo::getRandBoundaryAlgoInstance);
+        register(suppliers, QuadTreeAlgo::getInstance);
+        register(suppliers, () -> new PyramidAlgo(BaseAlgo.getInstance(), PYRAMID_LEVELS,
+                PYRAMID_BAND_WIDTH));
+        register(suppliers, () -> new ComponentAlgo(BaseAlgo::getInstance, COMPONENT_NEIGHBOUR_RADIUS,
+                SEQUENTIAL_PARALLELISM));
+        register(suppliers, () -> ConvolutionFillAlgo.getConvolutionFillAlgoInstance(SEQUENTIAL_PARALLELISM));
+        return Collections.unmodifiableMap(suppliers);
+    }
+
+    /**
+     * Registers an algorithm by the name of the algorithm it supplies
+     * @param suppliers The suppliers registered so far
+     * @param algoSupplier The supplier of the algorithm
+     */
+    private static void register(Map<String, Supplier<FillHoleAlgo>> suppliers,
+                                 Supplier<FillHoleAlgo> algoSupplier) {
+        suppliers.put(algoSupplier.get().toString(), algoSupplier);
+    }
+
+    /**
+     * Gets the names of all the algorithms
+     * @return The names, in the order they were registered
+     */
+    public static Set<String> getNames() {
+        return algoSuppliers.keySet();
+    }
+
+    /**
+     * Gets an algorithm by its name
+     * @param name The name of the algorithm
+     * @return An instance of the algorithm, not shared with any earlier caller unless the algorithm has no
+     * state
+     * @throws IllegalArgumentException In case there's no algorithm by this name
+     */
+    public static FillHoleAlgo getAlgo(String name) {
+        Supplier<FillHoleAlgo> algoSupplier = algoSuppliers.get(name);
+        if (algoSupplier == null) throw new IllegalArgumentException("Unknown algorithm " + name);
+        return algoSupplier.get();
+    }
+}
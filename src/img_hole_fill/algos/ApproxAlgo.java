@@ -1,126 +1,94 @@
 package img_hole_fill.algos;
 
-import img_hole_fill.utils.IntPair;
-import img_hole_fill.utils.PixConnectUtils;
-import java.util.ArrayList;
-import java.util.HashSet;
+import img_hole_fill.utils.ColorImage;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Approximating the basic solution in O(n) instead of O(n^2) where n is the number of pixels in the hole
+ * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+ * @param isAddToBoundaryAsWeGo Whether or not to fill every hole pixel also from the pixels of its layer
+ *                              filled before it
+ * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+ * @param parallelism The amount of threads filling a layer when not adding to the boundary as we go
  */
 public record ApproxAlgo(boolean isLargeInnerLayer, boolean isAddToBoundaryAsWeGo,
-                         boolean isEntireBoundary) implements FillHoleAlgo {
-    private static final int MAX_CONNECTED = 8;
+                         boolean isEntireBoundary, int parallelism) implements FillHoleAlgo {
     private static final String name = "Approx";
 
     /**
-     * Gets the connected pixels for a given pixel, 4-connected or 8-connected, depends on the input
-     * @param pix The pixel to get the connected pixels to it
-     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
-     * @return The list of connected pixels
+     * Create a new instance of this algo
+     * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+     * @param isAddToBoundaryAsWeGo Whether or not to fill every hole pixel also from the pixels of its layer
+     *                              filled before it
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     * @param parallelism The amount of threads filling a layer when not adding to the boundary as we go
      */
-    private static ArrayList<IntPair> getConnectedPixels(IntPair pix, boolean isEightConnected) {
-        ArrayList<IntPair> connected = new ArrayList<>(MAX_CONNECTED);
-        connected.addAll(PixConnectUtils.getSingleFourConnected(pix));
-        if (isEightConnected)
-            connected.addAll(PixConnectUtils.getSingleFourComplementToEight(pix));
-        return connected;
+    public ApproxAlgo {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
     }
 
     /**
-     * Gets the pixels in the hole set that 4-connect to the boundary set
-     * @param boundarySet The pixels in the boundary
-     * @param holeSet The pixels in the hole
-     * @return The pixels in the hole set that 4-connect to the boundary set
+     * Create a new instance of this algo filling the layers sequentially
+     * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+     * @param isAddToBoundaryAsWeGo Whether or not to fill every hole pixel also from the pixels of its layer
+     *                              filled before it
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
      */
-    private static HashSet<IntPair> getSmallInnerLayer(HashSet<IntPair> boundarySet,
-                                                      HashSet<IntPair> holeSet) {
-        return getInnerLayerHelper(boundarySet, holeSet, false);
-    }
-
-    /**
-     * Gets the pixels in the hole set that 8-connect to the boundary set
-     * @param boundarySet The pixels in the boundary
-     * @param holeSet The pixels in the hole
-     * @return The pixels in the hole set that 8-connect to the boundary set
-     */
-    private static HashSet<IntPair> getLargeInnerLayer(HashSet<IntPair> boundarySet,
-                                                      HashSet<IntPair> holeSet) {
-        return getInnerLayerHelper(boundarySet, holeSet, true);
-    }
-
-    /**
-     * Gets the pixels in the hole set that connect to the boundary set (4-connect or 8-connect depending
-     * on the input
-     * @param boundarySet The pixels in the boundary
-     * @param holeSet The pixels in the hole
-     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
-     * @return The pixels in the hole set that connect to the boundary set (4-connect or 8-connect depending
-     * on the input
-     */
-    private static HashSet<IntPair> getInnerLayerHelper(HashSet<IntPair> boundarySet,
-                                                        HashSet<IntPair> holeSet, boolean isEightConnected) {
-        HashSet<IntPair> innerLayer = new HashSet<>();
-        ArrayList<IntPair> curSuspects;
-        for (IntPair boundaryPix : boundarySet) {
-            curSuspects = getConnectedPixels(boundaryPix, isEightConnected);
-            for (IntPair suspectedPix : curSuspects) {
-                if (holeSet.contains(suspectedPix)) innerLayer.add(suspectedPix);
-            }
-        }
-        return innerLayer;
-    }
-
-    /**
-     * Gets the connected pixels in the given boundary, for a given pixel, 4-connected or 8-connected, depends
-     * on the input
-     * @param holePix The hole pixel to get the connected pixels to it
-     * @param boundarySet The pixels in the boundary
-     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
-     * @return The list of connected pixels in the boundary to the given hole pixel
-     */
-   private static HashSet<IntPair> getSingleBoundarySet(IntPair holePix, HashSet<IntPair> boundarySet,
-                                                 boolean isEightConnected) {
-        HashSet<IntPair> singleBoundarySet = new HashSet<>(MAX_CONNECTED);
-        singleBoundarySet.addAll(PixConnectUtils.getSingleFourConnected(holePix));
-        if (isEightConnected)
-            singleBoundarySet.addAll(PixConnectUtils.getSingleFourComplementToEight(holePix));
-        singleBoundarySet.removeIf(suspectedBoundaryPix -> !boundarySet.contains(suspectedBoundaryPix));
-        return singleBoundarySet;
+    public ApproxAlgo(boolean isLargeInnerLayer, boolean isAddToBoundaryAsWeGo, boolean isEntireBoundary) {
+        this(isLargeInnerLayer, isAddToBoundaryAsWeGo, isEntireBoundary, 1);
     }
 
     /**
      * Fills the hole pixels by layers: each time taking the current hole pixels that connect to the
      * current boundary and applying the base algo on each hole pixel based only on the boundary pixels that
      * connect to it directly. Next setting the hole layer just filled as the current boundary and going on
-     * for the next inner layer. Continuing this way until all the hole pixels are filled.
+     * for the next inner layer. Continuing this way until all the hole pixels connected to the boundary are
+     * filled, see ApproxLayers. When not adding to the boundary as we go, all the pixels of a layer are
+     * filled from the same boundary, so they are filled in parallel, with the same result as filling them
+     * sequentially.
      * @param grayMat The gray scale matrix to fill
      * @param holeSet The pixel in the hole
      * @param boundarySet The pixels in the initial boundary
      * @param func The weight function to use in the base algo
      * @param isEightConnected Whether or not to use 8-connected (the default is 4)
      */
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                       WeightFunction func, boolean isEightConnected) {
-        HashSet<IntPair> curInnerLayer;
-        HashSet<IntPair> curSingleBoundary;
-        float cur;
-        while (!holeSet.isEmpty()) {
-            if (isLargeInnerLayer)
-                curInnerLayer = getLargeInnerLayer(boundarySet, holeSet);
-            else curInnerLayer = getSmallInnerLayer(boundarySet, holeSet);
-            for (IntPair holePix : curInnerLayer) {
-                if (!isEntireBoundary) curSingleBoundary = getSingleBoundarySet(holePix, boundarySet,
-                         isEightConnected);
-                else curSingleBoundary = boundarySet;
-                cur = BaseAlgo.getPixFillVal(holePix, grayMat, curSingleBoundary, func);
-                grayMat[holePix.getX()][holePix.getY()] = cur;
-                if (isAddToBoundaryAsWeGo) {
-                    boundarySet.add(holePix);
-                }
+        if (holeSet.isEmpty()) return;
+        fill(new ApproxLayers(grayMat, holeSet, boundarySet, func, isEightConnected));
+    }
+
+    /**
+     * Fills the hole pixels of all the channels of an image by layers, as the gray scale apply does,
+     * calculating every weight once for all the channels
+     * @param img The image to fill
+     * @param holeSet The pixel in the hole
+     * @param boundarySet The pixels in the initial boundary
+     * @param func The weight function to use in the base algo
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     */
+    @Override
+    public void apply(ColorImage img, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        if (holeSet.isEmpty()) return;
+        fill(new ApproxLayers(img.getChannels(), holeSet, boundarySet, func, isEightConnected));
+    }
+
+    /**
+     * Fills the layers one after the other
+     * @param layers The layers of the hole
+     */
+    private void fill(ApproxLayers layers) {
+        ForkJoinPool pool = isAddToBoundaryAsWeGo ? null : BaseAlgo.getPool(parallelism);
+        while (layers.nextLayer(isLargeInnerLayer)) {
+            if (isAddToBoundaryAsWeGo) {
+                layers.fillAsWeGo(layers.getLayerStart(), layers.getLayerEnd(), isEntireBoundary);
+            } else {
+                layers.fillFromSameBoundary(layers.getLayerStart(), layers.getLayerEnd(),
+                        layers.getLayerStart(), isEntireBoundary, pool);
             }
-            boundarySet = curInnerLayer;
-            holeSet.removeAll(curInnerLayer);
         }
     }
 
@@ -0,0 +1,338 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.ComponentUtils;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixConnectUtils;
+import img_hole_fill.utils.PixSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The layers of a hole filled by the approx algorithms, from the boundary inwards. The layers are the
+ * distances of a breadth first search from the boundary through the hole. The search queue holds the
+ * boundary and then the layers one after the other, every layer in the order its pixels are reached from the
+ * previous one, so the boundary of a hole pixel is always a range of the queue: the previous layer, followed
+ * by the pixels of the current layer filled before it. A dense grid of labels over the bounding box of the
+ * hole and the boundary gives the place of every pixel in the queue, for finding the neighbours of a hole
+ * pixel in its boundary, unless the hole is too sparse in its bounding box for the grid to pay off, as for
+ * the bit mask of BoundaryUtils, in which case the labels are kept in a hash table of the pixels. The layers
+ * fill all the channels of an image at once, calculating every weight once for all of them.
+ */
+class ApproxLayers {
+    private static final int MAX_CONNECTED = 8;
+    private static final int NO_LABEL = 0;
+    private static final int UNVISITED_HOLE = -1;
+    private static final int COLOURS_AMOUNT = 4;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The most cells of the dense grid of labels per pixel in the hole and the boundary for the grid to be
+     * worthwhile. A lookup in the hash table costs far more than in the grid, which is also smaller up to a
+     * few cells per pixel.
+     */
+    private static final int MAX_GRID_CELLS_PER_PIX = 16;
+
+    /**
+     * The least amount of pixels in a range to fill it in parallel
+     */
+    private static final int MIN_PARALLEL_PIXELS = 256;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final GrayImage[] channels;
+    private final WeightFunction func;
+    private final WeightTable weightTable;
+    private final int connectedAmount;
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+
+    /**
+     * The labels of the pixels in the bounding box: the place in the queue plus 1 for a pixel in the queue,
+     * UNVISITED_HOLE for a hole pixel not reached yet, and NO_LABEL for any other pixel. Null when the labels
+     * are kept in the hash table instead.
+     */
+    private final int[] labels;
+
+    /**
+     * The open-addressing hash table of the labels when there's no dense grid, the pixels of the hole and the
+     * boundary in labelPixels and their labels in labelSlots, NO_LABEL marking an empty slot
+     */
+    private final long[] labelPixels;
+    private final int[] labelSlots;
+    private final long[] queue;
+    private int prevLayerStart;
+    private int layerStart;
+    private int layerEnd;
+
+    /**
+     * Create the layers of a hole in a gray scale image, with the boundary as the current layer
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function to use in the base algo
+     * @param isEightConnected Whether or not the boundary of a hole pixel is 8-connected to it (the default
+     *                         is 4), for filling by a partial boundary
+     */
+    ApproxLayers(GrayImage grayMat, PixSet holeSet, PixSet boundarySet, WeightFunction func,
+                 boolean isEightConnected) {
+        this(new GrayImage[]{grayMat}, holeSet, boundarySet, func, isEightConnected);
+    }
+
+    /**
+     * Create the layers of a hole in all the channels of an image, with the boundary as the current layer
+     * @param channels The channels of the image to fill
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function to use in the base algo
+     * @param isEightConnected Whether or not the boundary of a hole pixel is 8-connected to it (the default
+     *                         is 4), for filling by a partial boundary
+     */
+    ApproxLayers(GrayImage[] channels, PixSet holeSet, PixSet boundarySet, WeightFunction func,
+                 boolean isEightConnected) {
+        this.channels = channels;
+        this.func = func;
+        weightTable = func instanceof RadialWeightFunction radialFunc ? WeightTable.getInstance(radialFunc) :
+                null;
+        connectedAmount = PixConnectUtils.getConnectedAmount(isEightConnected);
+        int[] box = ComponentUtils.getBoundingBox(holeSet);
+        if (!boundarySet.isEmpty()) {
+            int[] boundaryBox = ComponentUtils.getBoundingBox(boundarySet);
+            box = new int[]{Math.min(box[0], boundaryBox[0]), Math.min(box[1], boundaryBox[1]),
+                    Math.max(box[2], boundaryBox[2]), Math.max(box[3], boundaryBox[3])};
+        }
+        originX = box[0];
+        originY = box[1];
+        width = holeSet.isEmpty() ? 0 : box[2] - box[0] + 1;
+        height = holeSet.isEmpty() ? 0 : box[3] - box[1] + 1;
+        long pixAmount = (long) holeSet.size() + boundarySet.size();
+        long area = (long) width * height;
+        if (area <= Integer.MAX_VALUE && area <= pixAmount * MAX_GRID_CELLS_PER_PIX) {
+            labels = new int[(int) area];
+            labelPixels = null;
+            labelSlots = null;
+        } else {
+            labels = null;
+            int tableLength = Integer.highestOneBit((int) Math.min(pixAmount * 2, 1 << 29)) << 1;
+            labelPixels = new long[tableLength];
+            labelSlots = new int[tableLength];
+        }
+        queue = new long[holeSet.isEmpty() ? 0 : boundarySet.size() + holeSet.size()];
+        if (holeSet.isEmpty()) return;
+        for (int i = 0; i < holeSet.size(); i++) setLabel(holeSet.get(i), UNVISITED_HOLE);
+        for (int i = 0; i < boundarySet.size(); i++) {
+            queue[layerEnd] = boundarySet.get(i);
+            setLabel(queue[layerEnd], ++layerEnd);
+        }
+    }
+
+    /**
+     * Moves on to the next layer: the hole pixels reached from the current layer and not before
+     * @param isLargeInnerLayer Whether to reach the 8-connected pixels or only the 4-connected ones
+     * @return Whether or not there is a next layer
+     */
+    boolean nextLayer(boolean isLargeInnerLayer) {
+        int layerConnectedAmount = PixConnectUtils.getConnectedAmount(isLargeInnerLayer);
+        int queueEnd = layerEnd;
+        long connectedPix;
+        for (int i = layerStart; i < layerEnd; i++) {
+            for (int j = 0; j < layerConnectedAmount; j++) {
+                connectedPix = PixConnectUtils.getConnectedPix(queue[i], j);
+                if (getLabel(connectedPix) != UNVISITED_HOLE) continue;
+                queue[queueEnd] = connectedPix;
+                setLabel(connectedPix, ++queueEnd);
+            }
+        }
+        prevLayerStart = layerStart;
+        layerStart = layerEnd;
+        layerEnd = queueEnd;
+        return layerStart < layerEnd;
+    }
+
+    /**
+     * Gets the place of the first pixel of the current layer in the queue
+     * @return The start of the current layer
+     */
+    int getLayerStart() {
+        return layerStart;
+    }
+
+    /**
+     * Gets the place after the last pixel of the current layer in the queue
+     * @return The end of the current layer
+     */
+    int getLayerEnd() {
+        return layerEnd;
+    }
+
+    /**
+     * Reorders the current layer by the colours of its pixels, keeping the order of the pixels of the same
+     * colour. The colour of a pixel is (x mod 2) + 2 * (y mod 2), so no two pixels of the same colour are
+     * 8-connected.
+     * @return The places in the queue where the colours start, followed by the end of the layer
+     */
+    int[] sortLayerByColour() {
+        int[] colourStarts = new int[COLOURS_AMOUNT + 1];
+        for (int i = layerStart; i < layerEnd; i++) colourStarts[getColour(queue[i]) + 1]++;
+        colourStarts[0] = layerStart;
+        for (int colour = 0; colour < COLOURS_AMOUNT; colour++) {
+            colourStarts[colour + 1] += colourStarts[colour];
+        }
+        long[] layer = new long[layerEnd - layerStart];
+        System.arraycopy(queue, layerStart, layer, 0, layer.length);
+        int[] nextPlaces = colourStarts.clone();
+        int place;
+        for (long pix : layer) {
+            place = nextPlaces[getColour(pix)]++;
+            queue[place] = pix;
+            setLabel(pix, place + 1);
+        } return colourStarts;
+    }
+
+    /**
+     * Gets the colour of a pixel
+     * @param pix The packed pixel
+     * @return The colour, between 0 and 3
+     */
+    private static int getColour(long pix) {
+        return (PixSet.getX(pix) & 1) + 2 * (PixSet.getY(pix) & 1);
+    }
+
+    /**
+     * Fills a range of the current layer one pixel after the other, each pixel from the previous layer and
+     * the pixels of the current layer before it in the queue
+     * @param from The place of the first pixel to fill (inclusive)
+     * @param to The place of the last pixel to fill (exclusive)
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     */
+    void fillAsWeGo(int from, int to, boolean isEntireBoundary) {
+        long[] singleBoundary = new long[MAX_CONNECTED];
+        float[] fillVals = new float[channels.length];
+        for (int i = from; i < to; i++) fill(i, i, isEntireBoundary, singleBoundary, fillVals);
+    }
+
+    /**
+     * Fills a range of the current layer, every pixel from the same boundary: the previous layer followed by
+     * the pixels of the current layer up to a given place. The range must not overlap the boundary, and the
+     * result doesn't depend on the order the pixels are filled in, so they are filled in parallel.
+     * @param from The place of the first pixel to fill (inclusive)
+     * @param to The place of the last pixel to fill (exclusive)
+     * @param boundaryEnd The place after the last pixel of the boundary
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     * @param pool The pool to fill on, or null to fill sequentially
+     */
+    void fillFromSameBoundary(int from, int to, int boundaryEnd, boolean isEntireBoundary,
+                              ForkJoinPool pool) {
+        if (pool == null || to - from < MIN_PARALLEL_PIXELS) {
+            long[] singleBoundary = new long[MAX_CONNECTED];
+            float[] fillVals = new float[channels.length];
+            for (int i = from; i < to; i++) fill(i, boundaryEnd, isEntireBoundary, singleBoundary, fillVals);
+            return;
+        }
+        int length = to - from;
+        int chunksAmount = Math.min(length / MIN_PARALLEL_PIXELS + 1,
+                pool.getParallelism() * CHUNKS_PER_THREAD);
+        pool.submit(() -> IntStream.range(0, chunksAmount).parallel().forEach(chunk -> {
+            long[] singleBoundary = new long[MAX_CONNECTED];
+            float[] fillVals = new float[channels.length];
+            int chunkEnd = from + (int) ((long) (chunk + 1) * length / chunksAmount);
+            for (int i = from + (int) ((long) chunk * length / chunksAmount); i < chunkEnd; i++) {
+                fill(i, boundaryEnd, isEntireBoundary, singleBoundary, fillVals);
+            }
+        })).join();
+    }
+
+    /**
+     * Fills a single pixel of the current layer from the previous layer followed by the pixels of the current
+     * layer up to a given place, either from all of them or only from the ones connected to the pixel
+     * @param index The place of the pixel
+     * @param boundaryEnd The place after the last pixel of the boundary
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     * @param singleBoundary A buffer for the connected pixels in the boundary
+     * @param fillVals A buffer for the values of the channels
+     */
+    private void fill(int index, int boundaryEnd, boolean isEntireBoundary, long[] singleBoundary,
+                      float[] fillVals) {
+        long holePix = queue[index];
+        int holeX = PixSet.getX(holePix);
+        int holeY = PixSet.getY(holePix);
+        if (isEntireBoundary) fill(holeX, holeY, queue, prevLayerStart, boundaryEnd, fillVals);
+        else {
+            int singleBoundaryAmount = 0;
+            long connectedPix;
+            int label;
+            for (int j = 0; j < connectedAmount; j++) {
+                connectedPix = PixConnectUtils.getConnectedPix(holePix, j);
+                label = getLabel(connectedPix);
+                if (label > prevLayerStart && label <= boundaryEnd) {
+                    singleBoundary[singleBoundaryAmount++] = connectedPix;
+                }
+            }
+            fill(holeX, holeY, singleBoundary, 0, singleBoundaryAmount, fillVals);
+        }
+    }
+
+    /**
+     * Fills a single pixel in all the channels from a range of an array of packed boundary pixels. A gray
+     * scale image is filled by BaseAlgo.getPixFillVal, and an image of several channels by
+     * BaseAlgo.getPixFillVals, which calculates every weight once for all the channels.
+     * @param holeX The x coordinate of the pixel
+     * @param holeY The y coordinate of the pixel
+     * @param boundary The packed boundary pixels
+     * @param from The index of the first boundary pixel (inclusive)
+     * @param to The index of the last boundary pixel (exclusive)
+     * @param fillVals A buffer for the values of the channels
+     */
+    private void fill(int holeX, int holeY, long[] boundary, int from, int to, float[] fillVals) {
+        if (channels.length == 1) {
+            channels[0].set(holeX, holeY, BaseAlgo.getPixFillVal(holeX, holeY, channels[0], boundary, from,
+                    to, func, weightTable));
+            return;
+        }
+        BaseAlgo.getPixFillVals(holeX, holeY, channels, boundary, from, to, func, weightTable, fillVals);
+        for (int c = 0; c < channels.length; c++) channels[c].set(holeX, holeY, fillVals[c]);
+    }
+
+    /**
+     * Gets the label of a pixel
+     * @param pix The packed pixel
+     * @return The label, NO_LABEL for a pixel outside the bounding box or neither in the hole nor in the
+     * boundary
+     */
+    private int getLabel(long pix) {
+        int x = PixSet.getX(pix) - originX;
+        int y = PixSet.getY(pix) - originY;
+        if (x < 0 || x >= width || y < 0 || y >= height) return NO_LABEL;
+        if (labels != null) return labels[y * width + x];
+        return labelSlots[findSlot(pix)];
+    }
+
+    /**
+     * Sets the label of a pixel of the hole or the boundary
+     * @param pix The packed pixel
+     * @param label The label, not NO_LABEL
+     */
+    private void setLabel(long pix, int label) {
+        if (labels != null) {
+            labels[(PixSet.getY(pix) - originY) * width + PixSet.getX(pix) - originX] = label;
+            return;
+        }
+        int slot = findSlot(pix);
+        labelPixels[slot] = pix;
+        labelSlots[slot] = label;
+    }
+
+    /**
+     * Finds the slot of the hash table holding the label of a pixel, or the empty slot where it should be
+     * inserted. The table is never more than half full, so there's always an empty slot.
+     * @param pix The packed pixel
+     * @return The index of the slot
+     */
+    private int findSlot(long pix) {
+        int mask = labelSlots.length - 1;
+        int slot = (int) ((pix * HASH_MULTIPLIER) >>>
+                (Long.SIZE - Integer.numberOfTrailingZeros(labelSlots.length)));
+        while (labelSlots[slot] != NO_LABEL && labelPixels[slot] != pix) slot = (slot + 1) & mask;
+        return slot;
+    }
+}
@@ -1,19 +1,42 @@
 package img_hole_fill.algos;
 
-import img_hole_fill.utils.IntPair;
-import java.util.HashSet;
+import img_hole_fill.utils.ColorImage;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The base algorithm for filling a hole in an image, works in O(n^2) where n is the number of pixels in
- *  the hole
+ *  the hole. The hole pixels may be filled in parallel, which gives the same result bit by bit as filling
+ *  them sequentially since every hole pixel is filled only from the boundary.
  */
 public class BaseAlgo implements FillHoleAlgo{
     static final String name = "BaseAlgo";
+    private static final int SEQUENTIAL_PARALLELISM = 1;
+    private static final int TASKS_PER_THREAD = 4;
 
     /**
-     * The only instance of this algo
+     * The sequential instance of this algo
      */
-    private static final BaseAlgo singleton = new BaseAlgo();
+    private static final BaseAlgo singleton = new BaseAlgo(SEQUENTIAL_PARALLELISM);
+
+    /**
+     * The parallel instances of this algo by their parallelism, so that each parallelism has a single pool
+     */
+    private static final ConcurrentHashMap<Integer, BaseAlgo> parallelInstances = new ConcurrentHashMap<>();
+
+    /**
+     * The amount of threads filling the hole
+     */
+    private final int parallelism;
+
+    /**
+     * The pool filling the hole, null for the sequential instance
+     */
+    private final ForkJoinPool pool;
 
     /**
      * Get a BaseAlgo instance
@@ -24,32 +47,84 @@ public class BaseAlgo implements FillHoleAlgo{
     }
 
     /**
-     * This is private for applying the singleton design pattern
+     * Get a BaseAlgo instance filling the hole with a thread per available processor
+     * @return A parallel BaseAlgo instance
+     */
+    public static BaseAlgo getParallelInstance() {
+        return getParallelInstance(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Get a BaseAlgo instance filling the hole with the given amount of threads
+     * @param parallelism The amount of threads, 1 gives the sequential instance
+     * @return A BaseAlgo instance
+     */
+    public static BaseAlgo getParallelInstance(int parallelism) {
+        if (parallelism < SEQUENTIAL_PARALLELISM)
+            throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+        if (parallelism == SEQUENTIAL_PARALLELISM) return singleton;
+        return parallelInstances.computeIfAbsent(parallelism, BaseAlgo::new);
+    }
+
+    /**
+     * This is private for applying the singleton design pattern per parallelism
+     * @param parallelism The amount of threads filling the hole
+     */
+    private BaseAlgo(int parallelism){
+        this.parallelism = parallelism;
+        this.pool = parallelism == SEQUENTIAL_PARALLELISM ? null : new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Gets the pool shared by all the algorithms running on the given amount of threads, the pool of the
+     * parallel instance of that parallelism. The pools live as long as the process, so no algorithm creates
+     * a pool of its own, or has to shut one down.
+     * @param parallelism The amount of threads
+     * @return The pool, null for a single thread
+     */
+    static ForkJoinPool getPool(int parallelism) {
+        return getParallelInstance(parallelism).pool;
+    }
+
+    /**
+     * Getter for the parallelism
+     * @return The amount of threads filling the hole
      */
-    private BaseAlgo(){}
+    public int getParallelism() {
+        return parallelism;
+    }
 
     /**
      * Gets the value to fill the given hole pixel with
-     * @param holePix The hole pixel to fill
+     * @param holeX The x coordinate of the hole pixel to fill
+     * @param holeY The y coordinate of the hole pixel to fill
      * @param grayMat The gray scale mat to get values of other pixels from
      * @param boundarySet The pixels in the boundary
      * @param func The weight function to use in calculating the value to fill the given hole pixel
+     * @param weightTable The table of the weight function, or null if it isn't radial
      * @return The value to fill the hole pixel with
      */
-    static float getPixFillVal(IntPair holePix, float[][] grayMat, HashSet<IntPair> boundarySet,
-                               WeightFunction func){
+    public static float getPixFillVal(int holeX, int holeY, GrayImage grayMat, PixSet boundarySet,
+                                      WeightFunction func, WeightTable weightTable){
         float numerator = 0;
         float denominator = 0;
         float curWeight;
         float curNumAdd;
-        int counter = 0;
         float curMatVal;
+        long boundaryPix;
+        int boundaryX;
+        int boundaryY;
         if (boundarySet.size() == 0) return 0;
-        for (IntPair boundaryPoint : boundarySet){
-            counter++;
-            curWeight = func.getWeight(holePix, boundaryPoint);
+        if (weightTable != null) CountingWeight.countTableReads(func, boundarySet.size());
+        for (int i = 0; i < boundarySet.size(); i++){
+            boundaryPix = boundarySet.get(i);
+            boundaryX = PixSet.getX(boundaryPix);
+            boundaryY = PixSet.getY(boundaryPix);
+            curWeight = weightTable != null ?
+                    weightTable.getWeight(WeightTable.getSquaredDist(holeX, holeY, boundaryX, boundaryY)) :
+                    func.getWeight(holeX, holeY, boundaryX, boundaryY);
             denominator += curWeight;
-            curMatVal = grayMat[boundaryPoint.getX()][boundaryPoint.getY()];
+            curMatVal = grayMat.get(boundaryX, boundaryY);
 //            if (curMatVal < 0) {
 //                curMatVal = 0;
 //            }
@@ -60,7 +135,81 @@ public class BaseAlgo implements FillHoleAlgo{
     }
 
     /**
-     * Fills the entire hole by applying the getPixFillVal for each pixel in the hole
+     * Gets the value to fill the given hole pixel with, by a range of an array of packed boundary pixels.
+     * The boundary is summed in the same order as in getPixFillVal over a set holding the same pixels, so the
+     * value is the same bit by bit.
+     * @param holeX The x coordinate of the hole pixel to fill
+     * @param holeY The y coordinate of the hole pixel to fill
+     * @param grayMat The gray scale mat to get values of other pixels from
+     * @param boundary The packed boundary pixels
+     * @param from The index of the first boundary pixel (inclusive)
+     * @param to The index of the last boundary pixel (exclusive)
+     * @param func The weight function to use in calculating the value to fill the given hole pixel
+     * @param weightTable The table of the weight function, or null if it isn't radial
+     * @return The value to fill the hole pixel with
+     */
+    static float getPixFillVal(int holeX, int holeY, GrayImage grayMat, long[] boundary, int from, int to,
+                               WeightFunction func, WeightTable weightTable){
+        float numerator = 0;
+        float denominator = 0;
+        float curWeight;
+        int boundaryX;
+        int boundaryY;
+        if (from == to) return 0;
+        if (weightTable != null) CountingWeight.countTableReads(func, to - from);
+        for (int i = from; i < to; i++){
+            boundaryX = PixSet.getX(boundary[i]);
+            boundaryY = PixSet.getY(boundary[i]);
+            curWeight = weightTable != null ?
+                    weightTable.getWeight(WeightTable.getSquaredDist(holeX, holeY, boundaryX, boundaryY)) :
+                    func.getWeight(holeX, holeY, boundaryX, boundaryY);
+            denominator += curWeight;
+            numerator += curWeight * grayMat.get(boundaryX, boundaryY);
+        }
+        return numerator / denominator;
+    }
+
+    /**
+     * Gets the values to fill the given hole pixel with in all the channels of an image, by a range of an
+     * array of packed boundary pixels. Every weight is calculated once for all the channels, and every
+     * channel is summed in the same order as in getPixFillVal, so the values are the same bit by bit.
+     * @param holeX The x coordinate of the hole pixel to fill
+     * @param holeY The y coordinate of the hole pixel to fill
+     * @param channels The channels of the image to get values of other pixels from
+     * @param boundary The packed boundary pixels
+     * @param from The index of the first boundary pixel (inclusive)
+     * @param to The index of the last boundary pixel (exclusive)
+     * @param func The weight function to use in calculating the values to fill the given hole pixel
+     * @param weightTable The table of the weight function, or null if it isn't radial
+     * @param fillVals The array to put the values in, by the order of the channels
+     */
+    static void getPixFillVals(int holeX, int holeY, GrayImage[] channels, long[] boundary, int from, int to,
+                               WeightFunction func, WeightTable weightTable, float[] fillVals){
+        float denominator = 0;
+        float curWeight;
+        int boundaryX;
+        int boundaryY;
+        Arrays.fill(fillVals, 0, channels.length, 0);
+        if (from == to) return;
+        if (weightTable != null) CountingWeight.countTableReads(func, to - from);
+        for (int i = from; i < to; i++){
+            boundaryX = PixSet.getX(boundary[i]);
+            boundaryY = PixSet.getY(boundary[i]);
+            curWeight = weightTable != null ?
+                    weightTable.getWeight(WeightTable.getSquaredDist(holeX, holeY, boundaryX, boundaryY)) :
+                    func.getWeight(holeX, holeY, boundaryX, boundaryY);
+            denominator += curWeight;
+            for (int c = 0; c < channels.length; c++){
+                fillVals[c] += curWeight * channels[c].get(boundaryX, boundaryY);
+            }
+        }
+        for (int c = 0; c < channels.length; c++) fillVals[c] /= denominator;
+    }
+
+    /**
+     * Fills the entire hole by applying the getPixFillVal for each pixel in the hole. The boundary is copied
+     * into a snapshot once, and all the values are calculated before any of them is written, so the order
+     * in which the pixels are filled doesn't matter.
      * @param grayMat The matrix to fill its values
      * @param holeSet The pixels in the hole
      * @param boundarySet The pixels in the boundary
@@ -68,10 +217,140 @@ public class BaseAlgo implements FillHoleAlgo{
      * @param isEightConnected Whether or not to use the 8-connected approach in the algorithm (the default
      *                        is 4-connected)
      */
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet,
-                      HashSet<IntPair> boundarySet, WeightFunction func, boolean isEightConnected){
-        for (IntPair hole : holeSet){
-            grayMat[hole.getX()][hole.getY()] = getPixFillVal(hole, grayMat, boundarySet, func);
+    public void apply(GrayImage grayMat, PixSet holeSet,
+                      PixSet boundarySet, WeightFunction func, boolean isEightConnected){
+        long[] holes = holeSet.toArray();
+        float[] fillVals = new float[holes.length];
+        BoundarySnapshot boundary = BoundarySnapshot.of(grayMat, boundarySet);
+        float[] weightTable = FillKernel.getWeightTable(holes, boundary, func);
+        calcFillVals(holes, boundary, 1, func, weightTable, fillVals);
+        for (int i = 0; i < holes.length; i++){
+            grayMat.set(PixSet.getX(holes[i]), PixSet.getY(holes[i]), fillVals[i]);
+        }
+    }
+
+    /**
+     * Fills the entire hole in all the channels of an image. Every weight is calculated once for all the
+     * channels, and the value of every channel is the same bit by bit as filling the channel on its own.
+     * @param img The image to fill its values
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function to use in order to calculate the values to fill with
+     * @param isEightConnected Whether or not to use the 8-connected approach in the algorithm (the default
+     *                        is 4-connected)
+     */
+    @Override
+    public void apply(ColorImage img, PixSet holeSet,
+                      PixSet boundarySet, WeightFunction func, boolean isEightConnected){
+        GrayImage[] channels = img.getChannels();
+        long[] holes = holeSet.toArray();
+        float[] fillVals = new float[holes.length * channels.length];
+        BoundarySnapshot boundary = BoundarySnapshot.of(channels, boundarySet);
+        float[] weightTable = FillKernel.getWeightTable(holes, boundary, func);
+        calcFillVals(holes, boundary, channels.length, func, weightTable, fillVals);
+        for (int i = 0; i < holes.length; i++){
+            for (int c = 0; c < channels.length; c++){
+                channels[c].set(PixSet.getX(holes[i]), PixSet.getY(holes[i]),
+                        fillVals[i * channels.length + c]);
+            }
+        }
+    }
+
+    /**
+     * Calculates the values of all the hole pixels, on the pool if there's one
+     * @param holes The packed hole pixels
+     * @param boundary The snapshot of the boundary
+     * @param channelsAmount The amount of channels in the snapshot
+     * @param func The weight function to use in order to calculate the values to fill with
+     * @param weightTable The weights by the squared distance, or null to evaluate the weight function
+     * @param fillVals The array to put the values in, the values of every hole pixel one after the other by
+     *                 the order of the channels
+     */
+    private void calcFillVals(long[] holes, BoundarySnapshot boundary, int channelsAmount,
+                              WeightFunction func, float[] weightTable, float[] fillVals){
+        if (pool == null) FillTask.fill(holes, 0, holes.length, boundary, channelsAmount, func, weightTable,
+                fillVals);
+        else {
+            int taskSize = Math.max(FillKernel.BLOCK_SIZE, holes.length / (parallelism * TASKS_PER_THREAD));
+            pool.invoke(new FillTask(holes, boundary, channelsAmount, func, weightTable, fillVals, 0,
+                    holes.length, taskSize));
+        }
+    }
+
+    /**
+     * A task calculating the values of a range of hole pixels, splitting itself in halves until the range is
+     * small enough. Tasks are never serialized, though ForkJoinTask is Serializable.
+     */
+    @SuppressWarnings("serial")
+    private static class FillTask extends RecursiveAction {
+        private final long[] holes;
+        private final BoundarySnapshot boundary;
+        private final int channelsAmount;
+        private final WeightFunction func;
+        private final float[] weightTable;
+        private final float[] fillVals;
+        private final int from;
+        private final int to;
+        private final int taskSize;
+
+        /**
+         * Creates a new task
+         * @param holes The packed hole pixels
+         * @param boundary The snapshot of the boundary
+         * @param channelsAmount The amount of channels in the snapshot
+         * @param func The weight function to use in order to calculate the values to fill with
+         * @param weightTable The weights by the squared distance, or null to evaluate the weight function
+         * @param fillVals The array to put the values in, the values of every hole pixel one after the other
+         *                 by the order of the channels
+         * @param from The index of the first hole pixel in the range (inclusive)
+         * @param to The index of the last hole pixel in the range (exclusive)
+         * @param taskSize The largest range to calculate without splitting
+         */
+        FillTask(long[] holes, BoundarySnapshot boundary, int channelsAmount, WeightFunction func,
+                 float[] weightTable, float[] fillVals, int from, int to, int taskSize){
+            this.holes = holes;
+            this.boundary = boundary;
+            this.channelsAmount = channelsAmount;
+            this.func = func;
+            this.weightTable = weightTable;
+            this.fillVals = fillVals;
+            this.from = from;
+            this.to = to;
+            this.taskSize = taskSize;
+        }
+
+        /**
+         * Calculates the range or splits it in halves
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= taskSize) {
+                fill(holes, from, to, boundary, channelsAmount, func, weightTable, fillVals);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FillTask(holes, boundary, channelsAmount, func, weightTable, fillVals, from, mid,
+                            taskSize),
+                    new FillTask(holes, boundary, channelsAmount, func, weightTable, fillVals, mid, to,
+                            taskSize));
+        }
+
+        /**
+         * Calculates a range of hole pixels by the kernel of a single channel or of several channels
+         * @param holes The packed hole pixels
+         * @param from The index of the first hole pixel in the range (inclusive)
+         * @param to The index of the last hole pixel in the range (exclusive)
+         * @param boundary The snapshot of the boundary
+         * @param channelsAmount The amount of channels in the snapshot
+         * @param func The weight function to use in order to calculate the values to fill with
+         * @param weightTable The weights by the squared distance, or null to evaluate the weight function
+         * @param fillVals The array to put the values in
+         */
+        static void fill(long[] holes, int from, int to, BoundarySnapshot boundary, int channelsAmount,
+                         WeightFunction func, float[] weightTable, float[] fillVals) {
+            if (channelsAmount == 1) FillKernel.fill(holes, from, to, boundary, func, weightTable, fillVals);
+            else FillKernel.fillChannels(holes, from, to, boundary, channelsAmount, func, weightTable,
+                    fillVals);
         }
     }
 
@@ -1,8 +1,8 @@
 package img_hole_fill.algos;
 
 import img_hole_fill.utils.GeneralUtils;
-import img_hole_fill.utils.IntPair;
-import java.util.*;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
 
 /**
  * An algorithm for filling a hole in an image in O(nlog(n)) where n is the number of pixels in the hole.
@@ -26,7 +26,7 @@ public class BoundaryLineSpaceAlgo extends LineSpace implements FillHoleAlgo {
      */
     private void preRepsUpdate() {
         headRepIndex++;
-        headRepIndex %= repsLst.size();
+        headRepIndex %= repsLst.length;
         nextRepIndex = headRepIndex;
     }
 
@@ -40,13 +40,16 @@ public class BoundaryLineSpaceAlgo extends LineSpace implements FillHoleAlgo {
      *                         4-connected approach)
      */
     @Override
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                       WeightFunction func, boolean isEightConnected) {
         initLineSpace(boundarySet);
         preRepsUpdate();
-        ArrayList<IntPair> sortedHoleSet = GeneralUtils.getSortedLst(holeSet);
-        for (IntPair pix : sortedHoleSet) {
-            grayMat[pix.getX()][pix.getY()] = BaseAlgo.getPixFillVal(pix, grayMat, repsSet, func);
+        long[] sortedHoleSet = GeneralUtils.getSortedLst(holeSet);
+        WeightTable weightTable = func instanceof RadialWeightFunction radialFunc ?
+                WeightTable.getInstance(radialFunc) : null;
+        for (long pix : sortedHoleSet) {
+            grayMat.set(PixSet.getX(pix), PixSet.getY(pix), BaseAlgo.getPixFillVal(PixSet.getX(pix),
+                    PixSet.getY(pix), grayMat, repsSet, func, weightTable));
             if (isRotate) {
                 preRepsUpdate();
                 initReps();
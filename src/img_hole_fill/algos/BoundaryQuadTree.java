@@ -0,0 +1,214 @@
+package img_hole_fill.algos;
+
+import java.util.Arrays;
+
+/**
+ * A quadtree over the boundary pixels, where every node aggregates the pixels below it: their amount, the
+ * sum of their values and their centroid. A hole pixel far enough from a node may weigh the whole node at
+ * once as if all its pixels were at the centroid, as in the Barnes-Hut approximation.
+ */
+class BoundaryQuadTree {
+    private static final int LEAF_SIZE = 8;
+    private static final int QUADRANTS = 4;
+    private static final int NO_CHILD = -1;
+
+    /**
+     * The boundary pixels, reordered so that the pixels of every node are contiguous
+     */
+    private final int[] xs;
+    private final int[] ys;
+    private final float[] vals;
+
+    /**
+     * The nodes, by their indices. The root is node 0.
+     */
+    private int[] firstPix;
+    private int[] endPix;
+    private int[] side;
+    private int[] children;
+    private double[] centroidX;
+    private double[] centroidY;
+    private double[] sumVal;
+    private int nodesAmount;
+
+    /**
+     * Builds the tree over a boundary snapshot
+     * @param boundary The boundary snapshot, not empty
+     */
+    BoundaryQuadTree(BoundarySnapshot boundary) {
+        xs = boundary.xs().clone();
+        ys = boundary.ys().clone();
+        vals = boundary.vals().clone();
+        int initialNodes = Math.max(QUADRANTS, 2 * xs.length / LEAF_SIZE);
+        firstPix = new int[initialNodes];
+        endPix = new int[initialNodes];
+        side = new int[initialNodes];
+        children = new int[initialNodes * QUADRANTS];
+        centroidX = new double[initialNodes];
+        centroidY = new double[initialNodes];
+        sumVal = new double[initialNodes];
+        int rootSide = Integer.highestOneBit(Math.max(Math.max(boundary.maxX() - boundary.minX(),
+                boundary.maxY() - boundary.minY()), 1)) << 1;
+        build(0, xs.length, boundary.minX(), boundary.minY(), rootSide);
+    }
+
+    /**
+     * Builds a node and the nodes below it
+     * @param from The index of the first pixel of the node (inclusive)
+     * @param to The index of the last pixel of the node (exclusive)
+     * @param cornerX The smallest x coordinate of the cell of the node
+     * @param cornerY The smallest y coordinate of the cell of the node
+     * @param cellSide The side of the cell of the node, a power of 2
+     * @return The index of the node
+     */
+    private int build(int from, int to, int cornerX, int cornerY, int cellSide) {
+        int node = newNode();
+        firstPix[node] = from;
+        endPix[node] = to;
+        side[node] = cellSide;
+        double sumX = 0, sumY = 0, sumV = 0;
+        for (int i = from; i < to; i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+            sumV += vals[i];
+        }
+        centroidX[node] = sumX / (to - from);
+        centroidY[node] = sumY / (to - from);
+        sumVal[node] = sumV;
+        Arrays.fill(children, node * QUADRANTS, (node + 1) * QUADRANTS, NO_CHILD);
+        if (to - from <= LEAF_SIZE || cellSide == 1) return node;
+
+        int half = cellSide / 2;
+        int midX = cornerX + half;
+        int midY = cornerY + half;
+        int splitX = partition(from, to, midX, true);
+        int splitLowY = partition(from, splitX, midY, false);
+        int splitHighY = partition(splitX, to, midY, false);
+        int[] bounds = {from, splitLowY, splitX, splitHighY, to};
+        for (int q = 0; q < QUADRANTS; q++) {
+            if (bounds[q] == bounds[q + 1]) continue;
+            int child = build(bounds[q], bounds[q + 1], q < 2 ? cornerX : midX, q % 2 == 0 ? cornerY : midY,
+                    half);
+            children[node * QUADRANTS + q] = child;
+        }
+        return node;
+    }
+
+    /**
+     * Partitions a range of pixels in place so that the pixels below a threshold come first
+     * @param from The index of the first pixel of the range (inclusive)
+     * @param to The index of the last pixel of the range (exclusive)
+     * @param threshold The threshold
+     * @param isByX Whether to compare the x coordinates or the y coordinates
+     * @return The index of the first pixel not below the threshold
+     */
+    private int partition(int from, int to, int threshold, boolean isByX) {
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+            if ((isByX ? xs[i] : ys[i]) < threshold) i++;
+            else swap(i, j--);
+        } return i;
+    }
+
+    /**
+     * Swaps two pixels
+     * @param i The index of the first pixel
+     * @param j The index of the second pixel
+     */
+    private void swap(int i, int j) {
+        int tmp = xs[i];
+        xs[i] = xs[j];
+        xs[j] = tmp;
+        tmp = ys[i];
+        ys[i] = ys[j];
+        ys[j] = tmp;
+        float tmpVal = vals[i];
+        vals[i] = vals[j];
+        vals[j] = tmpVal;
+    }
+
+    /**
+     * Allocates a new node, growing the arrays if needed
+     * @return The index of the new node
+     */
+    private int newNode() {
+        if (nodesAmount == firstPix.length) {
+            int newLength = nodesAmount * 2;
+            firstPix = Arrays.copyOf(firstPix, newLength);
+            endPix = Arrays.copyOf(endPix, newLength);
+            side = Arrays.copyOf(side, newLength);
+            children = Arrays.copyOf(children, newLength * QUADRANTS);
+            centroidX = Arrays.copyOf(centroidX, newLength);
+            centroidY = Arrays.copyOf(centroidY, newLength);
+            sumVal = Arrays.copyOf(sumVal, newLength);
+        }
+        return nodesAmount++;
+    }
+
+    /**
+     * Gets the value to fill a hole pixel with. A node is weighed as a whole when its side is smaller than
+     * the opening angle times its distance from the hole pixel, otherwise its children are visited, and
+     * the pixels of a leaf are weighed one by one.
+     * @param holeX The x coordinate of the hole pixel
+     * @param holeY The y coordinate of the hole pixel
+     * @param func The weight function
+     * @param weightTable The table of the weight function, or null if it isn't radial
+     * @param openingAngle The opening angle, 0 weighs every boundary pixel on its own
+     * @param stack A stack of at least getStackSize() cells to use for the traversal
+     * @return The value to fill the hole pixel with
+     */
+    float getPixFillVal(int holeX, int holeY, WeightFunction func, WeightTable weightTable, float openingAngle,
+                        int[] stack) {
+        double squaredAngle = (double) openingAngle * openingAngle;
+        double numerator = 0;
+        double denominator = 0;
+        float curWeight;
+        long weightsAmount = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            double dx = centroidX[node] - holeX;
+            double dy = centroidY[node] - holeY;
+            double squaredDist = dx * dx + dy * dy;
+            int pixAmount = endPix[node] - firstPix[node];
+            if (pixAmount > 1 && (double) side[node] * side[node] < squaredAngle * squaredDist) {
+                curWeight = weightTable != null ? weightTable.getWeight(Math.round(squaredDist)) :
+                        func.getWeight(holeX, holeY, (int) Math.round(centroidX[node]),
+                                (int) Math.round(centroidY[node]));
+                weightsAmount++;
+                denominator += (double) curWeight * pixAmount;
+                numerator += curWeight * sumVal[node];
+                continue;
+            }
+            boolean isLeaf = true;
+            for (int q = 0; q < QUADRANTS; q++) {
+                int child = children[node * QUADRANTS + q];
+                if (child != NO_CHILD) {
+                    stack[top++] = child;
+                    isLeaf = false;
+                }
+            }
+            if (!isLeaf) continue;
+            for (int i = firstPix[node]; i < endPix[node]; i++) {
+                curWeight = weightTable != null ?
+                        weightTable.getWeight(WeightTable.getSquaredDist(holeX, holeY, xs[i], ys[i])) :
+                        func.getWeight(holeX, holeY, xs[i], ys[i]);
+                denominator += curWeight;
+                numerator += curWeight * vals[i];
+            }
+            weightsAmount += endPix[node] - firstPix[node];
+        }
+        if (weightTable != null) CountingWeight.countTableReads(func, weightsAmount);
+        return (float) (numerator / denominator);
+    }
+
+    /**
+     * Gets the size of the stack needed for a traversal
+     * @return The size of the stack
+     */
+    int getStackSize() {
+        return QUADRANTS * (Integer.SIZE + 1);
+    }
+}
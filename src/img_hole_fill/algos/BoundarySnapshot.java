@@ -0,0 +1,66 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+
+/**
+ * The boundary pixels and their values copied into contiguous arrays (a structure of arrays), so that the
+ * inner loop of the fill reads them sequentially instead of looking each one up in the image
+ * @param xs The x coordinates of the boundary pixels
+ * @param ys The y coordinates of the boundary pixels
+ * @param vals The values of the boundary pixels, for an image of several channels the values of every
+ *             boundary pixel one after the other, by the order of the channels
+ * @param minX The smallest x coordinate of the boundary pixels
+ * @param maxX The largest x coordinate of the boundary pixels
+ * @param minY The smallest y coordinate of the boundary pixels
+ * @param maxY The largest y coordinate of the boundary pixels
+ */
+record BoundarySnapshot(int[] xs, int[] ys, float[] vals, int minX, int maxX, int minY, int maxY) {
+
+    /**
+     * Copies the boundary pixels and their current values
+     * @param grayMat The image to take the values from
+     * @param boundarySet The pixels in the boundary
+     * @return The snapshot, in the dense order of the boundary set
+     */
+    static BoundarySnapshot of(GrayImage grayMat, PixSet boundarySet) {
+        return of(new GrayImage[]{grayMat}, boundarySet);
+    }
+
+    /**
+     * Copies the boundary pixels and their current values in all the channels of an image
+     * @param channels The channels of the image to take the values from
+     * @param boundarySet The pixels in the boundary
+     * @return The snapshot, in the dense order of the boundary set
+     */
+    static BoundarySnapshot of(GrayImage[] channels, PixSet boundarySet) {
+        int size = boundarySet.size();
+        int[] xs = new int[size];
+        int[] ys = new int[size];
+        float[] vals = new float[size * channels.length];
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        long pix;
+        for (int i = 0; i < size; i++) {
+            pix = boundarySet.get(i);
+            xs[i] = PixSet.getX(pix);
+            ys[i] = PixSet.getY(pix);
+            for (int c = 0; c < channels.length; c++) {
+                vals[i * channels.length + c] = channels[c].get(xs[i], ys[i]);
+            }
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new BoundarySnapshot(xs, ys, vals, minX, maxX, minY, maxY);
+    }
+
+    /**
+     * Gets the amount of boundary pixels
+     * @return The amount of boundary pixels
+     */
+    int size() {
+        return xs.length;
+    }
+}
@@ -0,0 +1,208 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.BoundaryUtils;
+import img_hole_fill.utils.ComponentUtils;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Filling every connected component of the hole on its own, against its own boundary, by any other
+ * algorithm. The merged boundary makes every hole pixel weigh the boundary of every far away hole as well,
+ * so a hole made of many small components costs far less this way. The boundaries of the neighbouring
+ * components within a radius may be included as well. The components are filled in parallel on a work
+ * stealing pool, the largest first so that no large component is left to the end.
+ * @param innerAlgoSupplier Supplies the algorithm filling a component, called once per component so that
+ *                          algorithms with state are never shared between threads
+ * @param neighbourRadius The largest distance between the bounding boxes of two components for the
+ *                        boundary of one of them to be included in the filling of the other, negative for
+ *                        none at all
+ * @param parallelism The amount of components to fill at once
+ */
+public record ComponentAlgo(Supplier<FillHoleAlgo> innerAlgoSupplier, int neighbourRadius, int parallelism)
+        implements FillHoleAlgo {
+    private static final String name = "Components";
+
+    /**
+     * The side of the cells of the grid the neighbouring components are looked up by
+     */
+    private static final int CELL_SIZE = 64;
+
+    /**
+     * Create a new instance of this algo
+     * @param innerAlgoSupplier Supplies the algorithm filling a component
+     * @param neighbourRadius The largest distance between the bounding boxes of two neighbouring components
+     * @param parallelism The amount of components to fill at once
+     */
+    public ComponentAlgo {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+    }
+
+    /**
+     * Create a new instance of this algo using a thread per available processor
+     * @param innerAlgoSupplier Supplies the algorithm filling a component
+     * @param neighbourRadius The largest distance between the bounding boxes of two neighbouring components
+     */
+    public ComponentAlgo(Supplier<FillHoleAlgo> innerAlgoSupplier, int neighbourRadius){
+        this(innerAlgoSupplier, neighbourRadius, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Fills the components of the hole
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary, the boundary of every component is limited to them
+     * @param func The weight function
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4), both for labeling the
+     *                         components and for their boundaries
+     */
+    @Override
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        ArrayList<PixSet> components = ComponentUtils.getComponents(holeSet, isEightConnected);
+        int componentsAmount = components.size();
+        PixSet[] boundaries = new PixSet[componentsAmount];
+        int[][] boxes = new int[componentsAmount][];
+        ForkJoinPool pool = BaseAlgo.getPool(parallelism);
+        runAll(pool, componentsAmount, i -> {
+            boundaries[i] = getComponentBoundary(components.get(i), boundarySet, isEightConnected);
+            boxes[i] = ComponentUtils.getBoundingBox(components.get(i));
+        });
+        HashMap<Long, ArrayList<Integer>> grid = neighbourRadius < 0 ? null : getGrid(boxes);
+        runAll(pool, componentsAmount, i -> {
+            PixSet curBoundary = grid == null ? boundaries[i] :
+                    getNeighbourhoodBoundary(i, boxes, boundaries, grid);
+            innerAlgoSupplier.get().apply(grayMat, components.get(i), curBoundary, func, isEightConnected);
+        });
+    }
+
+    /**
+     * Runs a task per component on the pool and waits for all of them. A pool takes the tasks submitted
+     * from outside it in the order they are submitted, the largest component first.
+     * @param pool The pool, null to run the tasks one after the other on the current thread
+     * @param componentsAmount The amount of components
+     * @param task The task, given the index of a component
+     */
+    private static void runAll(ForkJoinPool pool, int componentsAmount, ComponentTask task){
+        if (pool == null) {
+            for (int i = 0; i < componentsAmount; i++) task.run(i);
+            return;
+        }
+        ArrayList<ForkJoinTask<?>> futures = new ArrayList<>(componentsAmount);
+        for (int i = 0; i < componentsAmount; i++){
+            int index = i;
+            futures.add(pool.submit(() -> task.run(index)));
+        }
+        for (ForkJoinTask<?> future : futures) future.join();
+    }
+
+    /**
+     * Gets the boundary of a single component
+     * @param component The pixels in the component
+     * @param boundarySet The pixels in the boundary of the entire hole
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     * @return The pixels in the boundary of the component that are in the boundary of the entire hole
+     */
+    private static PixSet getComponentBoundary(PixSet component, PixSet boundarySet, boolean isEightConnected){
+        PixSet componentBoundary = BoundaryUtils.getBoundarySet(component, isEightConnected);
+        PixSet result = new PixSet(componentBoundary.size());
+        long pix;
+        for (int i = 0; i < componentBoundary.size(); i++){
+            pix = componentBoundary.get(i);
+            if (boundarySet.contains(pix)) result.add(pix);
+        } return result;
+    }
+
+    /**
+     * Registers every component in the cells of the grid its bounding box covers
+     * @param boxes The bounding boxes of the components
+     * @return The indices of the components by the packed coordinates of the cells
+     */
+    private static HashMap<Long, ArrayList<Integer>> getGrid(int[][] boxes){
+        HashMap<Long, ArrayList<Integer>> grid = new HashMap<>();
+        for (int i = 0; i < boxes.length; i++){
+            for (int cellX = getCell(boxes[i][0]); cellX <= getCell(boxes[i][2]); cellX++){
+                for (int cellY = getCell(boxes[i][1]); cellY <= getCell(boxes[i][3]); cellY++){
+                    grid.computeIfAbsent(PixSet.pack(cellX, cellY), key -> new ArrayList<>()).add(i);
+                }
+            }
+        } return grid;
+    }
+
+    /**
+     * Gets the boundary of a component together with the boundaries of its neighbouring components
+     * @param index The index of the component
+     * @param boxes The bounding boxes of the components
+     * @param boundaries The boundaries of the components
+     * @param grid The components by the cells of the grid
+     * @return The pixels in the merged boundary
+     */
+    private PixSet getNeighbourhoodBoundary(int index, int[][] boxes, PixSet[] boundaries,
+                                            HashMap<Long, ArrayList<Integer>> grid){
+        int[] box = boxes[index];
+        PixSet result = new PixSet(boundaries[index]);
+        BitSet visited = new BitSet(boxes.length);
+        visited.set(index);
+        for (int cellX = getCell(box[0] - neighbourRadius); cellX <= getCell(box[2] + neighbourRadius); cellX++){
+            for (int cellY = getCell(box[1] - neighbourRadius); cellY <= getCell(box[3] + neighbourRadius);
+                 cellY++){
+                ArrayList<Integer> cell = grid.get(PixSet.pack(cellX, cellY));
+                if (cell == null) continue;
+                for (int other : cell){
+                    if (visited.get(other)) continue;
+                    visited.set(other);
+                    if (getBoxesDist(box, boxes[other]) <= neighbourRadius) result.addAll(boundaries[other]);
+                }
+            }
+        } return result;
+    }
+
+    /**
+     * Gets the cell of the grid a coordinate is in
+     * @param coordinate The coordinate
+     * @return The coordinate of the cell
+     */
+    private static int getCell(int coordinate){
+        return Math.floorDiv(coordinate, CELL_SIZE);
+    }
+
+    /**
+     * Gets the distance between two bounding boxes, the largest of the gaps along the axes
+     * @param box The first bounding box
+     * @param other The second bounding box
+     * @return The distance, 0 for overlapping boxes
+     */
+    private static long getBoxesDist(int[] box, int[] other){
+        long gapX = Math.max(0, Math.max((long) other[0] - box[2], (long) box[0] - other[2]));
+        long gapY = Math.max(0, Math.max((long) other[1] - box[3], (long) box[1] - other[3]));
+        return Math.max(gapX, gapY);
+    }
+
+    /**
+     * A task run on a single component
+     */
+    private interface ComponentTask {
+
+        /**
+         * Runs the task
+         * @param index The index of the component
+         */
+        void run(int index);
+    }
+
+    /**
+     * This is used in the writing of the result generated by this algo. The output string will be
+     * part of the name of the output image.
+     * @return The string that should be concatenated with the file name of the output image generated by
+     * this algo
+     */
+    @Override
+    public String toString() {
+        return name + neighbourRadius + innerAlgoSupplier.get().toString();
+    }
+}
@@ -0,0 +1,150 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.FftUtils;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computing the result of the base algorithm in O(n log(n)) where n is the area of the bounding box of the
+ * hole and its boundary. For a radial weight function both the numerator and the denominator of the base
+ * algorithm are convolutions with the weight kernel: of the boundary values and of the boundary indicator.
+ * Both are computed at once with a single complex FFT, putting the values in the real parts and the
+ * indicator in the imaginary parts, since the kernel is real. The result matches the base algorithm up to
+ * float rounding.
+ */
+public class ConvolutionFillAlgo implements FillHoleAlgo {
+    private static final String name = "ConvolutionFillAlgo";
+
+    /**
+     * The amount of threads running the transforms of the rows and the columns
+     */
+    private final int parallelism;
+
+    /**
+     * Factory for the class, using a thread per available processor
+     * @return An instance of this class
+     */
+    public static ConvolutionFillAlgo getConvolutionFillAlgoInstance(){
+        return getConvolutionFillAlgoInstance(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Factory for the class
+     * @param parallelism The amount of threads running the transforms
+     * @return An instance of this class
+     */
+    public static ConvolutionFillAlgo getConvolutionFillAlgoInstance(int parallelism){
+        return new ConvolutionFillAlgo(parallelism);
+    }
+
+    /**
+     * Hiding the constructor
+     * @param parallelism The amount of threads running the transforms
+     */
+    private ConvolutionFillAlgo(int parallelism){
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Applying the algorithm to fill the hole. A weight function that is not radial can't be convolved, so
+     * the base algorithm is applied instead.
+     * @param grayMat The matrix to fill its values
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weighting function to use while calculating the values to fill with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
+     */
+    @Override
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        if (!(func instanceof RadialWeightFunction radialFunc) || boundarySet.isEmpty()) {
+            BaseAlgo.getParallelInstance(parallelism).apply(grayMat, holeSet, boundarySet, func,
+                    isEightConnected);
+            return;
+        }
+        if (holeSet.isEmpty()) return;
+        BoundarySnapshot boundary = BoundarySnapshot.of(grayMat, boundarySet);
+        long[] holes = holeSet.toArray();
+        int minX = boundary.minX(), maxX = boundary.maxX();
+        int minY = boundary.minY(), maxY = boundary.maxY();
+        for (long hole : holes) {
+            minX = Math.min(minX, PixSet.getX(hole));
+            maxX = Math.max(maxX, PixSet.getX(hole));
+            minY = Math.min(minY, PixSet.getY(hole));
+            maxY = Math.max(maxY, PixSet.getY(hole));
+        }
+        int boxWidth = maxX - minX + 1;
+        int boxHeight = maxY - minY + 1;
+        int width = FftUtils.nextPowerOf2(2 * boxWidth - 1);
+        int height = FftUtils.nextPowerOf2(2 * boxHeight - 1);
+        int length = Math.multiplyExact(width, height);
+
+        double[] signalRe = new double[length];
+        double[] signalIm = new double[length];
+        for (int i = 0; i < boundary.size(); i++) {
+            int index = (boundary.ys()[i] - minY) * width + boundary.xs()[i] - minX;
+            signalRe[index] = boundary.vals()[i];
+            signalIm[index] = 1;
+        }
+        double[] kernelRe = getKernel(radialFunc, boxWidth, boxHeight, width, height, length);
+        double[] kernelIm = new double[length];
+
+        ForkJoinPool pool = BaseAlgo.getPool(parallelism);
+        FftUtils.fft2D(signalRe, signalIm, width, height, false, pool);
+        FftUtils.fft2D(kernelRe, kernelIm, width, height, false, pool);
+        double tmpRe;
+        for (int i = 0; i < length; i++) {
+            tmpRe = signalRe[i] * kernelRe[i] - signalIm[i] * kernelIm[i];
+            signalIm[i] = signalRe[i] * kernelIm[i] + signalIm[i] * kernelRe[i];
+            signalRe[i] = tmpRe;
+        }
+        FftUtils.fft2D(signalRe, signalIm, width, height, true, pool);
+
+        for (long hole : holes) {
+            int index = (PixSet.getY(hole) - minY) * width + PixSet.getX(hole) - minX;
+            grayMat.set(PixSet.getX(hole), PixSet.getY(hole), (float) (signalRe[index] / signalIm[index]));
+        }
+    }
+
+    /**
+     * Lays the weight kernel out for a circular convolution. The offset (dx, dy) is put at
+     * (dx mod width, dy mod height), and since the transform is at least twice as large as the box minus
+     * one, no two offsets within the box share a cell. The offset (0, 0) is left 0 since a hole pixel is
+     * never in the boundary.
+     * @param func The weight function
+     * @param boxWidth The width of the bounding box of the hole and the boundary
+     * @param boxHeight The height of the bounding box of the hole and the boundary
+     * @param width The width of the transform
+     * @param height The height of the transform
+     * @param length The amount of cells of the transform, the width times the height
+     * @return The kernel, row by row
+     */
+    private static double[] getKernel(RadialWeightFunction func, int boxWidth, int boxHeight, int width,
+                                      int height, int length) {
+        double[] kernel = new double[length];
+        WeightTable weightTable = WeightTable.getInstance(func);
+        for (int dy = 1 - boxHeight; dy < boxHeight; dy++) {
+            int rowStart = Math.floorMod(dy, height) * width;
+            for (int dx = 1 - boxWidth; dx < boxWidth; dx++) {
+                if (dx == 0 && dy == 0) continue;
+                kernel[rowStart + Math.floorMod(dx, width)] =
+                        weightTable.getWeight((long) dx * dx + (long) dy * dy);
+            }
+        }
+        CountingWeight.countTableReads(func, (2L * boxWidth - 1) * (2L * boxHeight - 1) - 1);
+        return kernel;
+    }
+
+    /**
+     * This is used in the writing of the result generated by this algo. The output string will be
+     * part of the name of the output image.
+     * @return The string that should be concatenated with the file name of the output image generated by
+     * this algo
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,118 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.IntPair;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A weight function counting the weights of another weight function used by a fill, for tracing. A radial
+ * function is wrapped by a radial function, so the algorithms keep reading its weights from its weight
+ * table, which doesn't evaluate the function: the algorithms count the weights they read from the table
+ * through countTableReads, a block of pixels at a time, so that every weight used is counted either way.
+ */
+public class CountingWeight implements WeightFunction {
+    private final WeightFunction func;
+    final LongAdder evaluations;
+
+    /**
+     * Wraps a weight function in order to count its evaluations
+     * @param func The weight function
+     * @param evaluations The counter to count the evaluations into, or null in order not to count
+     * @return The wrapping weight function, or the given one if there's no counter
+     */
+    public static WeightFunction wrap(WeightFunction func, LongAdder evaluations){
+        if (evaluations == null) return func;
+        if (func instanceof RadialWeightFunction radialFunc) return new Radial(radialFunc, evaluations);
+        return new CountingWeight(func, evaluations);
+    }
+
+    /**
+     * Hiding the constructor, instances are created through wrap
+     * @param func The weight function
+     * @param evaluations The counter to count the evaluations into
+     */
+    private CountingWeight(WeightFunction func, LongAdder evaluations){
+        this.func = func;
+        this.evaluations = evaluations;
+    }
+
+    /**
+     * Counts weights read from the weight table of a weight function instead of evaluated, if the function
+     * counts its weights
+     * @param func The weight function
+     * @param amount The amount of weights read
+     */
+    static void countTableReads(WeightFunction func, long amount){
+        if (func instanceof CountingWeight countingFunc) countingFunc.evaluations.add(amount);
+    }
+
+    /**
+     * Gets the wrapped weight function
+     * @return The wrapped weight function
+     */
+    public WeightFunction getFunc(){
+        return func;
+    }
+
+    /**
+     * Gets the weight, counting the evaluation
+     * @param p1 First point
+     * @param p2 Second point
+     * @return The weight
+     */
+    @Override
+    public float getWeight(IntPair p1, IntPair p2) {
+        evaluations.increment();
+        return func.getWeight(p1, p2);
+    }
+
+    /**
+     * Gets the weight of two points given by their coordinates, counting the evaluation
+     * @param x1 The x coordinate of the first point
+     * @param y1 The y coordinate of the first point
+     * @param x2 The x coordinate of the second point
+     * @param y2 The y coordinate of the second point
+     * @return The weight
+     */
+    @Override
+    public float getWeight(int x1, int y1, int x2, int y2) {
+        evaluations.increment();
+        return func.getWeight(x1, y1, x2, y2);
+    }
+
+    /**
+     * The wrapped weight function names the results
+     * @return The name of the wrapped weight function
+     */
+    @Override
+    public String toString() {
+        return func.toString();
+    }
+
+    /**
+     * Counting the evaluations of a radial weight function
+     */
+    private static class Radial extends CountingWeight implements RadialWeightFunction {
+        private final RadialWeightFunction radialFunc;
+
+        /**
+         * Wraps a radial weight function
+         * @param radialFunc The radial weight function
+         * @param evaluations The counter to count the evaluations into
+         */
+        Radial(RadialWeightFunction radialFunc, LongAdder evaluations){
+            super(radialFunc, evaluations);
+            this.radialFunc = radialFunc;
+        }
+
+        /**
+         * Gets the weight by the squared distance, counting the evaluation
+         * @param squaredDist The squared distance
+         * @return The weight
+         */
+        @Override
+        public float getWeightBySquaredDist(long squaredDist) {
+            evaluations.increment();
+            return radialFunc.getWeightBySquaredDist(squaredDist);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import img_hole_fill.utils.IntPair;
 /**
  * The default weight function for applying an algorithm for filling a hole in an image
  */
-public record DefaultWeight(float z, float epsilon) implements WeightFunction {
+public record DefaultWeight(float z, float epsilon) implements RadialWeightFunction {
     static final float DEFAULT_Z = 3;
     static final float DEFAULT_EPSILON = (float) 0.01;
     static final String name = "DefaultWeight";
@@ -36,9 +36,19 @@ public record DefaultWeight(float z, float epsilon) implements WeightFunction {
      */
     @Override
     public float getWeight(IntPair p1, IntPair p2) {
+        return getWeight(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+    }
+
+    /**
+     * Gets the weight of two pixels given the square of the distance between them
+     *
+     * @param squaredDist The squared euclidean distance between the pixels
+     * @return The weight
+     */
+    @Override
+    public float getWeightBySquaredDist(long squaredDist) {
         float result;
-        float eucDist = (float) Math.sqrt(Math.pow((p2.getX() - p1.getX()), 2) +
-                Math.pow((p2.getY() - p1.getY()), 2));
+        float eucDist = (float) Math.sqrt((double) squaredDist);
         result = (float) (1.0 / (Math.pow(eucDist, z) + epsilon));
         return result;
     }
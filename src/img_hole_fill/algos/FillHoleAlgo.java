@@ -1,6 +1,9 @@
 package img_hole_fill.algos;
 
+import img_hole_fill.utils.ColorImage;
+import img_hole_fill.utils.GrayImage;
 import img_hole_fill.utils.IntPair;
+import img_hole_fill.utils.PixSet;
 import java.util.HashSet;
 
 /**
@@ -10,12 +13,60 @@ public interface FillHoleAlgo {
 
     /**
      * Filling the hole
-     * @param grayMat The matrix to fill its values
+     * @param grayMat The image to fill its values
      * @param holeSet The pixels in the hole
      * @param boundarySet The pixels in the boundary
      * @param func The weighting function to use while calculating the values to fill with
      * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
      */
-    void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                WeightFunction func, boolean isEightConnected);
+
+    /**
+     * Filling the hole of a multi-channel image. By default every channel is filled on its own, each from
+     * copies of the sets, so the given sets are left untouched. The algorithms weighting the boundary pixels
+     * directly override this to calculate every weight once for all the channels.
+     * @param img The image to fill its values
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weighting function to use while calculating the values to fill with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
+     */
+    default void apply(ColorImage img, PixSet holeSet, PixSet boundarySet,
+                       WeightFunction func, boolean isEightConnected){
+        for (int c = 0; c < img.getChannelsAmount(); c++){
+            apply(img.getChannel(c), new PixSet(holeSet), new PixSet(boundarySet), func, isEightConnected);
+        }
+    }
+
+    /**
+     * Filling the hole of a matrix indexed by x and then by y. This copies the matrix to a GrayImage and
+     * copies the result back.
+     * @param grayMat The matrix to fill its values
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weighting function to use while calculating the values to fill with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
+     */
+    default void apply(float[][] grayMat, PixSet holeSet, PixSet boundarySet,
+                       WeightFunction func, boolean isEightConnected){
+        GrayImage grayImg = GrayImage.fromMat(grayMat);
+        apply(grayImg, holeSet, boundarySet, func, isEightConnected);
+        grayImg.copyToMat(grayMat);
+    }
+
+    /**
+     * Filling the hole given by hash sets of IntPairs. This adapts the sets to PixSets, so the given sets
+     * are left untouched by the algorithm.
+     * @param grayMat The matrix to fill its values
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weighting function to use while calculating the values to fill with
+     * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
+     */
+    default void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+                       WeightFunction func, boolean isEightConnected){
+        apply(grayMat, PixSet.fromHashSet(holeSet), PixSet.fromHashSet(boundarySet), func,
+                isEightConnected);
+    }
 }
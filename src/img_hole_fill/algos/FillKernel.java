@@ -0,0 +1,222 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.PixSet;
+import java.util.Arrays;
+
+/**
+ * The inner loop of the base algorithm over a boundary snapshot. The hole pixels are taken in blocks, so
+ * every boundary pixel is loaded once per block and its weight towards each pixel of the block is
+ * accumulated in registers. For a radial weight function the weights are looked up in its WeightTable.
+ * For every hole pixel the boundary is summed in the same order as in BaseAlgo.getPixFillVal, so the
+ * results are the same bit by bit. For an image of several channels every weight is calculated once and used
+ * for the numerators of all the channels, which are summed in the same order as a single channel.
+ */
+abstract class FillKernel {
+    static final int BLOCK_SIZE = 4;
+
+    /**
+     * Gets the weight table to use for filling the given hole pixels from the given boundary
+     * @param holes The packed hole pixels
+     * @param boundary The boundary snapshot
+     * @param func The weight function
+     * @return The weights by the squared distance, or null if the function is not radial or the distances
+     * are too large to tabulate
+     */
+    static float[] getWeightTable(long[] holes, BoundarySnapshot boundary, WeightFunction func) {
+        if (!(func instanceof RadialWeightFunction radialFunc) || holes.length == 0 || boundary.size() == 0)
+            return null;
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (long hole : holes) {
+            minX = Math.min(minX, PixSet.getX(hole));
+            maxX = Math.max(maxX, PixSet.getX(hole));
+            minY = Math.min(minY, PixSet.getY(hole));
+            maxY = Math.max(maxY, PixSet.getY(hole));
+        }
+        long maxDx = Math.max(maxX - (long) boundary.minX(), boundary.maxX() - (long) minX);
+        long maxDy = Math.max(maxY - (long) boundary.minY(), boundary.maxY() - (long) minY);
+        return WeightTable.getInstance(radialFunc).getWeights(maxDx * maxDx + maxDy * maxDy);
+    }
+
+    /**
+     * Calculates the values to fill a range of hole pixels with
+     * @param holes The packed hole pixels
+     * @param from The index of the first hole pixel in the range (inclusive)
+     * @param to The index of the last hole pixel in the range (exclusive)
+     * @param boundary The boundary snapshot
+     * @param func The weight function
+     * @param weightTable The weights by the squared distance covering every pair of hole and boundary
+     *                    pixels, as given by getWeightTable, or null to evaluate the weight function
+     * @param fillVals The array to put the values in, by the indices of the hole pixels
+     */
+    static void fill(long[] holes, int from, int to, BoundarySnapshot boundary, WeightFunction func,
+                     float[] weightTable, float[] fillVals) {
+        int i = from;
+        if (weightTable != null) CountingWeight.countTableReads(func, (long) (to - from) * boundary.size());
+        if (weightTable != null && boundary.size() > 0) {
+            for (; i + BLOCK_SIZE <= to; i += BLOCK_SIZE) fillTableBlock(holes, i, boundary, weightTable,
+                    fillVals);
+        }
+        for (; i < to; i++) {
+            fillVals[i] = weightTable != null ?
+                    getPixFillVal(PixSet.getX(holes[i]), PixSet.getY(holes[i]), boundary, weightTable) :
+                    getPixFillVal(PixSet.getX(holes[i]), PixSet.getY(holes[i]), boundary, func);
+        }
+    }
+
+    /**
+     * Calculates the values to fill a range of hole pixels with in all the channels of an image
+     * @param holes The packed hole pixels
+     * @param from The index of the first hole pixel in the range (inclusive)
+     * @param to The index of the last hole pixel in the range (exclusive)
+     * @param boundary The boundary snapshot of all the channels
+     * @param channelsAmount The amount of channels
+     * @param func The weight function
+     * @param weightTable The weights by the squared distance covering every pair of hole and boundary
+     *                    pixels, as given by getWeightTable, or null to evaluate the weight function
+     * @param fillVals The array to put the values in, the values of every hole pixel one after the other by
+     *                 the order of the channels
+     */
+    static void fillChannels(long[] holes, int from, int to, BoundarySnapshot boundary, int channelsAmount,
+                             WeightFunction func, float[] weightTable, float[] fillVals) {
+        int[] xs = boundary.xs();
+        int[] ys = boundary.ys();
+        float[] vals = boundary.vals();
+        float[] numerators = new float[channelsAmount];
+        int holeX;
+        int holeY;
+        float denominator;
+        float curWeight;
+        if (xs.length == 0) {
+            Arrays.fill(fillVals, from * channelsAmount, to * channelsAmount, 0);
+            return;
+        }
+        if (weightTable != null) CountingWeight.countTableReads(func, (long) (to - from) * xs.length);
+        for (int i = from; i < to; i++) {
+            holeX = PixSet.getX(holes[i]);
+            holeY = PixSet.getY(holes[i]);
+            Arrays.fill(numerators, 0);
+            denominator = 0;
+            for (int j = 0; j < xs.length; j++) {
+                curWeight = weightTable != null ? weightTable[getSquaredDist(holeX, holeY, xs[j], ys[j])] :
+                        func.getWeight(holeX, holeY, xs[j], ys[j]);
+                denominator += curWeight;
+                for (int c = 0; c < channelsAmount; c++) {
+                    numerators[c] += curWeight * vals[j * channelsAmount + c];
+                }
+            }
+            for (int c = 0; c < channelsAmount; c++) {
+                fillVals[i * channelsAmount + c] = numerators[c] / denominator;
+            }
+        }
+    }
+
+    /**
+     * Gets the value to fill a single hole pixel with
+     * @param holeX The x coordinate of the hole pixel
+     * @param holeY The y coordinate of the hole pixel
+     * @param boundary The boundary snapshot
+     * @param func The weight function
+     * @return The value to fill the hole pixel with
+     */
+    static float getPixFillVal(int holeX, int holeY, BoundarySnapshot boundary, WeightFunction func) {
+        int[] xs = boundary.xs();
+        int[] ys = boundary.ys();
+        float[] vals = boundary.vals();
+        if (xs.length == 0) return 0;
+        float numerator = 0;
+        float denominator = 0;
+        float curWeight;
+        for (int j = 0; j < xs.length; j++) {
+            curWeight = func.getWeight(holeX, holeY, xs[j], ys[j]);
+            denominator += curWeight;
+            numerator += curWeight * vals[j];
+        }
+        return numerator / denominator;
+    }
+
+    /**
+     * Gets the value to fill a single hole pixel with, looking the weights up in a table
+     * @param holeX The x coordinate of the hole pixel
+     * @param holeY The y coordinate of the hole pixel
+     * @param boundary The boundary snapshot
+     * @param weightTable The weights by the squared distance
+     * @return The value to fill the hole pixel with
+     */
+    static float getPixFillVal(int holeX, int holeY, BoundarySnapshot boundary, float[] weightTable) {
+        int[] xs = boundary.xs();
+        int[] ys = boundary.ys();
+        float[] vals = boundary.vals();
+        if (xs.length == 0) return 0;
+        float numerator = 0;
+        float denominator = 0;
+        float curWeight;
+        for (int j = 0; j < xs.length; j++) {
+            curWeight = weightTable[getSquaredDist(holeX, holeY, xs[j], ys[j])];
+            denominator += curWeight;
+            numerator += curWeight * vals[j];
+        }
+        return numerator / denominator;
+    }
+
+    /**
+     * Calculates the values of a block of hole pixels, looking the weights up in a table
+     * @param holes The packed hole pixels
+     * @param from The index of the first hole pixel in the block
+     * @param boundary The boundary snapshot, not empty
+     * @param weightTable The weights by the squared distance
+     * @param fillVals The array to put the values in, by the indices of the hole pixels
+     */
+    private static void fillTableBlock(long[] holes, int from, BoundarySnapshot boundary,
+                                       float[] weightTable, float[] fillVals) {
+        int[] xs = boundary.xs();
+        int[] ys = boundary.ys();
+        float[] vals = boundary.vals();
+        int x0 = PixSet.getX(holes[from]), y0 = PixSet.getY(holes[from]);
+        int x1 = PixSet.getX(holes[from + 1]), y1 = PixSet.getY(holes[from + 1]);
+        int x2 = PixSet.getX(holes[from + 2]), y2 = PixSet.getY(holes[from + 2]);
+        int x3 = PixSet.getX(holes[from + 3]), y3 = PixSet.getY(holes[from + 3]);
+        float num0 = 0, num1 = 0, num2 = 0, num3 = 0;
+        float den0 = 0, den1 = 0, den2 = 0, den3 = 0;
+        int bx;
+        int by;
+        float val;
+        float w;
+        for (int j = 0; j < xs.length; j++) {
+            bx = xs[j];
+            by = ys[j];
+            val = vals[j];
+            w = weightTable[getSquaredDist(x0, y0, bx, by)];
+            den0 += w;
+            num0 += w * val;
+            w = weightTable[getSquaredDist(x1, y1, bx, by)];
+            den1 += w;
+            num1 += w * val;
+            w = weightTable[getSquaredDist(x2, y2, bx, by)];
+            den2 += w;
+            num2 += w * val;
+            w = weightTable[getSquaredDist(x3, y3, bx, by)];
+            den3 += w;
+            num3 += w * val;
+        }
+        fillVals[from] = num0 / den0;
+        fillVals[from + 1] = num1 / den1;
+        fillVals[from + 2] = num2 / den2;
+        fillVals[from + 3] = num3 / den3;
+    }
+
+    /**
+     * Gets the squared distance between two pixels as a table index. The caller makes sure it fits the
+     * table, which is never longer than WeightTable.MAX_LENGTH, so it doesn't overflow.
+     * @param x1 The x coordinate of the first pixel
+     * @param y1 The y coordinate of the first pixel
+     * @param x2 The x coordinate of the second pixel
+     * @param y2 The y coordinate of the second pixel
+     * @return The squared distance
+     */
+    private static int getSquaredDist(int x1, int y1, int x2, int y2) {
+        int dx = x2 - x1;
+        int dy = y2 - y1;
+        return dx * dx + dy * dy;
+    }
+}
@@ -1,8 +1,8 @@
 package img_hole_fill.algos;
 
 import img_hole_fill.utils.GeneralUtils;
-import img_hole_fill.utils.IntPair;
-import java.util.HashSet;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
 
 
 /**
@@ -34,10 +34,10 @@ public class HolesLineSpaceAlgo extends LineSpace implements FillHoleAlgo{
      * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
      */
     @Override
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                       WeightFunction func, boolean isEightConnected) {
         initLineSpace(holeSet);
-        HashSet<IntPair> holeReps = new HashSet<>(repsLst);
+        PixSet holeReps = PixSet.fromArray(repsLst);
         GeneralUtils.applySetsDiff(holeSet, holeReps);
         BaseAlgo baseAlgo = BaseAlgo.getInstance();
         baseAlgo.apply(grayMat, holeReps, boundarySet, func, isEightConnected);
@@ -1,12 +1,11 @@
 package img_hole_fill.algos;
 
 import img_hole_fill.utils.GeneralUtils;
-import img_hole_fill.utils.IntPair;
-import java.util.HashSet;
+import img_hole_fill.utils.PixSet;
 
 /**
  * A general template to get log(n) "representatives" in equal distances from each other out of a given set
- * of IntPairs
+ * of pixels
  */
 public abstract class LineSpace extends RepresentativesApproach{
 
@@ -24,7 +23,7 @@ public abstract class LineSpace extends RepresentativesApproach{
      * Initializes the template of the line space
      * @param repsSource The set from which to collect the representatives
      */
-    protected void initLineSpace(HashSet<IntPair> repsSource){
+    protected void initLineSpace(PixSet repsSource){
         repsLst = GeneralUtils.getSortedLst(repsSource);
         initRepsAmount();
         initRepsDist();
@@ -35,9 +34,9 @@ public abstract class LineSpace extends RepresentativesApproach{
      * Collecting the representatives
      */
     protected void initReps(){
-        repsSet = new HashSet<>(repsAmount);
+        repsSet = new PixSet(repsAmount);
         for (int i = 0; i < repsDist; i++) {
-            repsSet.add(repsLst.get(nextRepIndex));
+            repsSet.add(repsLst[nextRepIndex]);
             incrementNextRepIndex();
         }
     }
@@ -46,13 +45,13 @@ public abstract class LineSpace extends RepresentativesApproach{
      * Initializes the distance that should be between every two representatives
      */
     protected void initRepsDist() {
-        repsDist = repsLst.size() / repsAmount;
+        repsDist = repsLst.length / repsAmount;
     }
 
     /**
      * Initializes the index of the next "representative" on the source set
      */
     protected void incrementNextRepIndex() {
-        nextRepIndex = (nextRepIndex + repsDist) % repsLst.size();
+        nextRepIndex = (nextRepIndex + repsDist) % repsLst.length;
     }
 }
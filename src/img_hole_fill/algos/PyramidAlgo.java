@@ -0,0 +1,231 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.BoundaryUtils;
+import img_hole_fill.utils.ComponentUtils;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PhaseTrace;
+import img_hole_fill.utils.PixConnectUtils;
+import img_hole_fill.utils.PixSet;
+
+/**
+ * Filling a hole coarse to fine around any other algorithm. The image and the hole are halved repeatedly,
+ * the coarsest level is filled by the inner algorithm, and each finer level takes the interior of the hole
+ * from the level below it (by bilinear interpolation) and refills by the inner algorithm only a thin band
+ * of the hole next to its boundary. This is worth it for large holes, where the result is smooth anyway.
+ * Every coarse level holds only the bounding box of the hole of the level above it and a margin around it,
+ * wide enough for the boundary and the interpolation of all the levels below it, so halving costs the size
+ * of the hole rather than of the image.
+ * Every level is traced as a PhaseTrace.PyramidLevelEvent, along with the time spent on it alone.
+ * @param innerAlgo The algorithm filling the coarsest level and the bands
+ * @param levels The largest amount of times to halve the image
+ * @param bandWidth The width of the band refilled on every finer level, in layers of hole pixels
+ */
+public record PyramidAlgo(FillHoleAlgo innerAlgo, int levels, int bandWidth) implements FillHoleAlgo {
+    private static final String name = "Pyramid";
+    private static final int SCALE = 2;
+
+    /**
+     * The smallest hole worth halving, smaller holes are filled directly by the inner algorithm
+     */
+    private static final int MIN_HOLE_SIZE = 64;
+
+    /**
+     * Create a new instance of this algo
+     * @param innerAlgo The algorithm filling the coarsest level and the bands
+     * @param levels The largest amount of times to halve the image
+     * @param bandWidth The width of the band refilled on every finer level, in layers of hole pixels
+     */
+    public PyramidAlgo {
+        if (levels < 0 || bandWidth < 0)
+            throw new IllegalArgumentException("The levels and the band width must not be negative");
+    }
+
+    /**
+     * Fills the hole coarse to fine
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     */
+    @Override
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        fillLevel(grayMat, holeSet, boundarySet, func, isEightConnected, 0);
+    }
+
+    /**
+     * Fills a single level and the levels below it
+     * @param grayMat The image of this level
+     * @param holeSet The pixels in the hole of this level
+     * @param boundarySet The pixels in the boundary of this level
+     * @param func The weight function
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     * @param level The index of this level, 0 is the original image
+     * @return The time spent on this level and the levels below it, in nanoseconds
+     */
+    private long fillLevel(GrayImage grayMat, PixSet holeSet, PixSet boundarySet, WeightFunction func,
+                           boolean isEightConnected, int level) {
+        PhaseTrace.PyramidLevelEvent event = new PhaseTrace.PyramidLevelEvent(level);
+        long start = System.nanoTime();
+        int[] coarseBox = level < levels && holeSet.size() >= MIN_HOLE_SIZE ?
+                getCoarseBox(holeSet, grayMat, level) : null;
+        GrayImage coarseMat = coarseBox == null ? null : downsample(grayMat, holeSet, coarseBox);
+        PixSet coarseHoleSet = coarseMat == null ? null : getCoarseHoleSet(holeSet, grayMat, coarseBox);
+        if (coarseHoleSet == null || coarseHoleSet.isEmpty()) {
+            int holesAmount = holeSet.size();
+            innerAlgo.apply(grayMat, holeSet, boundarySet, func, isEightConnected);
+            long elapsed = System.nanoTime() - start;
+            event.finish(grayMat, holesAmount, holesAmount, elapsed);
+            return elapsed;
+        }
+        PixSet coarseBoundarySet = BoundaryUtils.getBoundaryInImg(coarseHoleSet, coarseMat, isEightConnected);
+        long coarseElapsed = fillLevel(coarseMat, coarseHoleSet, coarseBoundarySet, func, isEightConnected,
+                level + 1);
+
+        long hole;
+        for (int i = 0; i < holeSet.size(); i++) {
+            hole = holeSet.get(i);
+            grayMat.set(PixSet.getX(hole), PixSet.getY(hole),
+                    upsample(coarseMat, coarseBox, PixSet.getX(hole), PixSet.getY(hole)));
+        }
+        PixSet bandSet = getBand(holeSet, boundarySet, isEightConnected);
+        int bandSize = bandSet.size();
+        innerAlgo.apply(grayMat, bandSet, boundarySet, func, isEightConnected);
+        long elapsed = System.nanoTime() - start;
+        event.finish(grayMat, holeSet.size(), bandSize, elapsed - coarseElapsed);
+        return elapsed;
+    }
+
+    /**
+     * Gets the box of the coarse image of a level, in the coordinates of the halved level: the bounding box
+     * of the halved hole with a margin around it. Every level below needs the values of the pixels around
+     * its own box, so the margin doubles and grows by one for every level below, and every such pixel is
+     * then the average of all of its fine pixels. The corner is also aligned so that the fine pixels of
+     * every level below are halved in the same pairs as if the whole image were halved.
+     * @param holeSet The pixels in the hole of the level, not empty
+     * @param grayMat The image of the level
+     * @param level The index of the level, 0 is the original image
+     * @return The smallest x, the smallest y, the largest x and the largest y of the coarse image, in this
+     * order
+     */
+    private int[] getCoarseBox(PixSet holeSet, GrayImage grayMat, int level) {
+        int[] box = ComponentUtils.getBoundingBox(holeSet);
+        int margin = (1 << (levels - level)) - 1;
+        int alignMask = -(1 << (levels - level - 1));
+        return new int[]{Math.max(box[0] / SCALE - margin, 0) & alignMask,
+                Math.max(box[1] / SCALE - margin, 0) & alignMask,
+                Math.min(box[2] / SCALE + margin, (grayMat.getWidth() + 1) / SCALE - 1),
+                Math.min(box[3] / SCALE + margin, (grayMat.getHeight() + 1) / SCALE - 1)};
+    }
+
+    /**
+     * Halves the box of an image, every coarse pixel getting the average of the fine pixels under it that
+     * are not in the hole
+     * @param grayMat The fine image
+     * @param holeSet The pixels in the hole of the fine image
+     * @param coarseBox The box of the coarse image, see getCoarseBox
+     * @return The coarse image, with 0 where all the fine pixels are in the hole
+     */
+    private static GrayImage downsample(GrayImage grayMat, PixSet holeSet, int[] coarseBox) {
+        int width = grayMat.getWidth();
+        int height = grayMat.getHeight();
+        GrayImage coarseMat = new GrayImage(coarseBox[2] - coarseBox[0] + 1, coarseBox[3] - coarseBox[1] + 1);
+        for (int y = coarseBox[1]; y <= coarseBox[3]; y++) {
+            for (int x = coarseBox[0]; x <= coarseBox[2]; x++) {
+                float sum = 0;
+                int count = 0;
+                for (int fineY = y * SCALE; fineY < Math.min((y + 1) * SCALE, height); fineY++) {
+                    for (int fineX = x * SCALE; fineX < Math.min((x + 1) * SCALE, width); fineX++) {
+                        if (holeSet.contains(fineX, fineY)) continue;
+                        sum += grayMat.get(fineX, fineY);
+                        count++;
+                    }
+                }
+                coarseMat.set(x - coarseBox[0], y - coarseBox[1], count == 0 ? 0 : sum / count);
+            }
+        } return coarseMat;
+    }
+
+    /**
+     * Gets the hole of the coarse image, the coarse pixels all of whose fine pixels are in the hole
+     * @param holeSet The pixels in the hole of the fine image
+     * @param grayMat The fine image
+     * @param coarseBox The box of the coarse image, see getCoarseBox
+     * @return The pixels in the hole of the coarse image, in its coordinates
+     */
+    private static PixSet getCoarseHoleSet(PixSet holeSet, GrayImage grayMat, int[] coarseBox) {
+        PixSet coarseHoleSet = new PixSet(holeSet.size() / (SCALE * SCALE));
+        long hole;
+        for (int i = 0; i < holeSet.size(); i++) {
+            hole = holeSet.get(i);
+            int x = PixSet.getX(hole) / SCALE;
+            int y = PixSet.getY(hole) / SCALE;
+            if (coarseHoleSet.contains(x - coarseBox[0], y - coarseBox[1])) continue;
+            boolean isAllHole = true;
+            for (int fineY = y * SCALE; isAllHole && fineY < (y + 1) * SCALE; fineY++) {
+                for (int fineX = x * SCALE; isAllHole && fineX < (x + 1) * SCALE; fineX++) {
+                    isAllHole = !grayMat.contains(fineX, fineY) || holeSet.contains(fineX, fineY);
+                }
+            }
+            if (isAllHole) coarseHoleSet.add(x - coarseBox[0], y - coarseBox[1]);
+        } return coarseHoleSet;
+    }
+
+    /**
+     * Gets the value of a fine pixel by bilinear interpolation of the coarse image
+     * @param coarseMat The coarse image
+     * @param coarseBox The box of the coarse image, see getCoarseBox
+     * @param x The x coordinate of the fine pixel
+     * @param y The y coordinate of the fine pixel
+     * @return The interpolated value
+     */
+    private static float upsample(GrayImage coarseMat, int[] coarseBox, int x, int y) {
+        float coarseX = Math.max((x + (float) 0.5) / SCALE - (float) 0.5, 0) - coarseBox[0];
+        float coarseY = Math.max((y + (float) 0.5) / SCALE - (float) 0.5, 0) - coarseBox[1];
+        int x0 = Math.min((int) coarseX, coarseMat.getWidth() - 1);
+        int y0 = Math.min((int) coarseY, coarseMat.getHeight() - 1);
+        int x1 = Math.min(x0 + 1, coarseMat.getWidth() - 1);
+        int y1 = Math.min(y0 + 1, coarseMat.getHeight() - 1);
+        float fracX = coarseX - x0;
+        float fracY = coarseY - y0;
+        float top = coarseMat.get(x0, y0) * (1 - fracX) + coarseMat.get(x1, y0) * fracX;
+        float bottom = coarseMat.get(x0, y1) * (1 - fracX) + coarseMat.get(x1, y1) * fracX;
+        return top * (1 - fracY) + bottom * fracY;
+    }
+
+    /**
+     * Gets the hole pixels within the band width from the boundary, layer by layer
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     * @return The pixels in the band
+     */
+    private PixSet getBand(PixSet holeSet, PixSet boundarySet, boolean isEightConnected) {
+        PixSet bandSet = new PixSet();
+        PixSet frontier = boundarySet;
+        int connectedAmount = PixConnectUtils.getConnectedAmount(isEightConnected);
+        for (int layer = 0; layer < bandWidth && !frontier.isEmpty(); layer++) {
+            PixSet nextFrontier = new PixSet();
+            long neighbour;
+            for (int i = 0; i < frontier.size(); i++) {
+                for (int j = 0; j < connectedAmount; j++) {
+                    neighbour = PixConnectUtils.getConnectedPix(frontier.get(i), j);
+                    if (holeSet.contains(neighbour) && bandSet.add(neighbour)) nextFrontier.add(neighbour);
+                }
+            }
+            frontier = nextFrontier;
+        } return bandSet;
+    }
+
+    /**
+     * This is used in the writing of the result generated by this algo. The output string will be
+     * part of the name of the output image.
+     * @return The string that should be concatenated with the file name of the output image generated by
+     * this algo
+     */
+    @Override
+    public String toString() {
+        return name + levels + "Band" + bandWidth + innerAlgo.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+
+/**
+ * Approximating the basic solution in O(nlog(m)) where n is the number of pixels in the hole and m is the
+ * number of pixels in the boundary. The boundary is put in a quadtree, and every hole pixel weighs the
+ * nodes that are far enough from it as single clusters (the Barnes-Hut approximation), instead of throwing
+ * boundary pixels away as the representatives approaches do. The opening angle bounds the error: a node is
+ * taken as a cluster only when its side is smaller than the opening angle times its distance from the hole
+ * pixel, so an opening angle of 0 gives the basic solution.
+ * @param openingAngle The opening angle, the larger the faster and the less accurate
+ */
+public record QuadTreeAlgo(float openingAngle) implements FillHoleAlgo {
+    static final float DEFAULT_OPENING_ANGLE = (float) 0.5;
+    private static final String name = "QuadTree";
+
+    /**
+     * Create a new instance of this algo
+     * @param openingAngle The opening angle, the larger the faster and the less accurate
+     */
+    public QuadTreeAlgo {
+        if (openingAngle < 0) throw new IllegalArgumentException("The opening angle must not be negative");
+    }
+
+    /**
+     * Getter for an instance with the default opening angle
+     * @return The new instance produced
+     */
+    public static QuadTreeAlgo getInstance() {
+        return new QuadTreeAlgo(DEFAULT_OPENING_ANGLE);
+    }
+
+    /**
+     * Fills the hole by traversing the quadtree of the boundary for every hole pixel. All the values are
+     * calculated before any of them is written.
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param func The weight function
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     */
+    @Override
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        if (boundarySet.isEmpty()) {
+            BaseAlgo.getInstance().apply(grayMat, holeSet, boundarySet, func, isEightConnected);
+            return;
+        }
+        BoundaryQuadTree tree = new BoundaryQuadTree(BoundarySnapshot.of(grayMat, boundarySet));
+        long[] holes = holeSet.toArray();
+        float[] fillVals = new float[holes.length];
+        int[] stack = new int[tree.getStackSize()];
+        WeightTable weightTable = func instanceof RadialWeightFunction radialFunc ?
+                WeightTable.getInstance(radialFunc) : null;
+        for (int i = 0; i < holes.length; i++) {
+            fillVals[i] = tree.getPixFillVal(PixSet.getX(holes[i]), PixSet.getY(holes[i]), func, weightTable,
+                    openingAngle, stack);
+        }
+        for (int i = 0; i < holes.length; i++) {
+            grayMat.set(PixSet.getX(holes[i]), PixSet.getY(holes[i]), fillVals[i]);
+        }
+    }
+
+    /**
+     * This is used in the writing of the result generated by this algo. The output string will be
+     * part of the name of the output image.
+     * @return The string that should be concatenated with the file name of the output image generated by
+     * this algo
+     */
+    @Override
+    public String toString() {
+        return name + openingAngle;
+    }
+}
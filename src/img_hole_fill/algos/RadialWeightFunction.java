@@ -0,0 +1,28 @@
+package img_hole_fill.algos;
+
+/**
+ * A weighting function that depends only on the distance between the two points. Such a function can be
+ * tabulated by the squared distance, which is an integer for pixels, see WeightTable.
+ */
+public interface RadialWeightFunction extends WeightFunction {
+
+    /**
+     * Gets the weight of two points given the square of the euclidean distance between them
+     * @param squaredDist The squared distance
+     * @return The weight
+     */
+    float getWeightBySquaredDist(long squaredDist);
+
+    /**
+     * Gets the weight of two points given by their coordinates
+     * @param x1 The x coordinate of the first point
+     * @param y1 The y coordinate of the first point
+     * @param x2 The x coordinate of the second point
+     * @param y2 The y coordinate of the second point
+     * @return The weight
+     */
+    @Override
+    default float getWeight(int x1, int y1, int x2, int y2){
+        return getWeightBySquaredDist(WeightTable.getSquaredDist(x1, y1, x2, y2));
+    }
+}
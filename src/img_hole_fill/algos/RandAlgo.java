@@ -1,10 +1,7 @@
 package img_hole_fill.algos;
 
 import img_hole_fill.utils.GeneralUtils;
-import img_hole_fill.utils.IntPair;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import img_hole_fill.utils.PixSet;
 
 /**
  * General template for using randomization for filling a hole in an image using log(n) representatives
@@ -14,22 +11,22 @@ import java.util.HashSet;
 public abstract class RandAlgo extends RepresentativesApproach{
 
     /**
-     * Initializes the list from which to get random representatives. The transformation to a list is used
-     * in order to collect the representatives by indices.
+     * Initializes the array from which to get random representatives. The transformation to an array is
+     * used in order to collect the representatives by indices.
      * @param randSet The set from which to get random representatives
      */
-    protected void initRandLst(HashSet<IntPair> randSet){
-        repsLst = new ArrayList<>(randSet);
-        Collections.shuffle(repsLst);
+    protected void initRandLst(PixSet randSet){
+        repsLst = randSet.toArray();
+        GeneralUtils.shuffle(repsLst);
     }
 
     /**
      * Initializes the set of representatives
      */
     protected void initRepsSet(){
-        repsSet = new HashSet<>();
+        repsSet = new PixSet(repsAmount);
         for (int i=0; i<repsAmount; i++){
-            repsSet.add(repsLst.get(i));
+            repsSet.add(repsLst[i]);
         }
     }
 
@@ -37,14 +34,14 @@ public abstract class RandAlgo extends RepresentativesApproach{
      * initializes the amount of representatives to collect
      */
     protected void initRepsAmount() {
-        repsAmount = GeneralUtils.getLog2(repsLst.size());
+        repsAmount = GeneralUtils.getLog2(repsLst.length);
     }
 
     /**
      * Prepares the ground to apply the randomization algo
      * @param randSet The set of representatives
      */
-    protected void initHelper(HashSet<IntPair> randSet){
+    protected void initHelper(PixSet randSet){
         initRandLst(randSet);
         initRepsAmount();
         initRepsSet();
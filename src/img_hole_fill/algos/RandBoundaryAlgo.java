@@ -1,7 +1,7 @@
 package img_hole_fill.algos;
 
-import img_hole_fill.utils.IntPair;
-import java.util.HashSet;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
 
 /**
  * Choosing log(n) (where n is the number of pixels in the hole to fill) representatives from the boundary of
@@ -32,7 +32,7 @@ public class RandBoundaryAlgo extends RandAlgo implements FillHoleAlgo{
      * @param isEightConnected Whether or not to apply the 8-connected approach (4-connected is the default)
      */
     @Override
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                       WeightFunction func, boolean isEightConnected) {
         initHelper(boundarySet);
         BaseAlgo.getInstance().apply(grayMat, holeSet, repsSet, func, isEightConnected);
@@ -1,8 +1,7 @@
 package img_hole_fill.algos;
 
-import img_hole_fill.utils.IntPair;
-
-import java.util.HashSet;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
 
 /**
  * Filling a hole in an image using in nlog(n) where n is the number of pixels in the hole.
@@ -11,7 +10,7 @@ import java.util.HashSet;
  */
 public class RandHoleAlgo extends RandAlgo implements FillHoleAlgo{
 
-    private HashSet<IntPair> otherHolePixels;
+    private PixSet otherHolePixels;
 
     /**
      * Factory for the class
@@ -27,13 +26,13 @@ public class RandHoleAlgo extends RandAlgo implements FillHoleAlgo{
     private RandHoleAlgo(){}
 
     private void initOtherHolePixels(){
-        otherHolePixels = new HashSet<>();
-        for (int i=repsAmount; i<repsLst.size(); i++){
-            otherHolePixels.add(repsLst.get(i));
+        otherHolePixels = new PixSet(repsLst.length);
+        for (int i=repsAmount; i<repsLst.length; i++){
+            otherHolePixels.add(repsLst[i]);
         }
     }
 
-    private void applyHelper(float[][] grayMat, HashSet<IntPair> boundarySet, WeightFunction func,
+    private void applyHelper(GrayImage grayMat, PixSet boundarySet, WeightFunction func,
                               boolean isEightConnected){
         BaseAlgo.getInstance().apply(grayMat, repsSet, boundarySet, func, isEightConnected);
         BaseAlgo.getInstance().apply(grayMat, otherHolePixels, repsSet, func, isEightConnected);
@@ -49,7 +48,7 @@ public class RandHoleAlgo extends RandAlgo implements FillHoleAlgo{
      * 4-connected approach)
      */
     @Override
-    public void apply(float[][] grayMat, HashSet<IntPair> holeSet, HashSet<IntPair> boundarySet,
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
                        WeightFunction func, boolean isEightConnected) {
         initHelper(holeSet);
         initOtherHolePixels();
@@ -1,9 +1,7 @@
 package img_hole_fill.algos;
 
 import img_hole_fill.utils.GeneralUtils;
-import img_hole_fill.utils.IntPair;
-import java.util.ArrayList;
-import java.util.HashSet;
+import img_hole_fill.utils.PixSet;
 
 /**
  * A general template for algorithms using representatives pixels in the process of filling a hole in an
@@ -13,15 +11,15 @@ public abstract class RepresentativesApproach {
     /**
      * The set of representatives
      */
-    protected HashSet<IntPair> repsSet;
+    protected PixSet repsSet;
 
     /**
-     * The list of representatives. A list is used here in addition to a set in order to collect the
-     * representatives by their indices. And a set is used in order to comply with the API of the
-     * FillHoleAlgo which uses HashSets as this class is used by algorithms for filling holes in
-     * an image.
+     * The array of packed candidate pixels for the representatives. An array is used here in addition to a
+     * set in order to collect the representatives by their indices. And a set is used in order to comply
+     * with the API of the FillHoleAlgo which uses PixSets as this class is used by algorithms for filling
+     * holes in an image.
      */
-    protected ArrayList<IntPair> repsLst;
+    protected long[] repsLst;
 
     /**
      * The amount of representatives to collect
@@ -32,6 +30,6 @@ public abstract class RepresentativesApproach {
      * Initializes the amount of representatives in the pixSet
      */
     protected void initRepsAmount() {
-        repsAmount = GeneralUtils.getLog2(repsLst.size());
+        repsAmount = GeneralUtils.getLog2(repsLst.length);
     }
 }
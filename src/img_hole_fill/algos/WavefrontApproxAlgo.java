@@ -0,0 +1,101 @@
+package img_hole_fill.algos;
+
+import img_hole_fill.utils.ColorImage;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.PixSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A parallel variant of the approx algorithm adding to the boundary as we go. Every layer is split into four
+ * colours by the parity of the coordinates, (x mod 2) + 2 * (y mod 2), and the colours are filled one after
+ * the other: first the even columns of the even rows, then the odd columns of the even rows, then the even
+ * columns of the odd rows and last the odd columns of the odd rows. Every pixel is filled from the previous
+ * layer and from the pixels of the colours of its layer filled before its own colour, taken in this order.
+ * No two pixels of the same colour are connected, so the pixels of a colour are filled in parallel, and the
+ * result is the same for any amount of threads.
+ * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+ * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+ * @param parallelism The amount of threads filling a colour
+ */
+public record WavefrontApproxAlgo(boolean isLargeInnerLayer, boolean isEntireBoundary, int parallelism)
+        implements FillHoleAlgo {
+    private static final String name = "WavefrontApprox";
+
+    /**
+     * Create a new instance of this algo
+     * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     * @param parallelism The amount of threads filling a colour
+     */
+    public WavefrontApproxAlgo {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+    }
+
+    /**
+     * Create a new instance of this algo filling a colour with a thread per available processor
+     * @param isLargeInnerLayer Whether the inner layers are 8-connected or 4-connected to the outer ones
+     * @param isEntireBoundary Whether to fill from the entire boundary or only from its connected pixels
+     */
+    public WavefrontApproxAlgo(boolean isLargeInnerLayer, boolean isEntireBoundary) {
+        this(isLargeInnerLayer, isEntireBoundary, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Fills the hole pixels by layers, every layer colour by colour
+     * @param grayMat The gray scale matrix to fill
+     * @param holeSet The pixel in the hole
+     * @param boundarySet The pixels in the initial boundary
+     * @param func The weight function to use in the base algo
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     */
+    @Override
+    public void apply(GrayImage grayMat, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        if (holeSet.isEmpty()) return;
+        fill(new ApproxLayers(grayMat, holeSet, boundarySet, func, isEightConnected));
+    }
+
+    /**
+     * Fills the hole pixels of all the channels of an image by layers, as the gray scale apply does,
+     * calculating every weight once for all the channels
+     * @param img The image to fill
+     * @param holeSet The pixel in the hole
+     * @param boundarySet The pixels in the initial boundary
+     * @param func The weight function to use in the base algo
+     * @param isEightConnected Whether or not to use 8-connected (the default is 4)
+     */
+    @Override
+    public void apply(ColorImage img, PixSet holeSet, PixSet boundarySet,
+                      WeightFunction func, boolean isEightConnected) {
+        if (holeSet.isEmpty()) return;
+        fill(new ApproxLayers(img.getChannels(), holeSet, boundarySet, func, isEightConnected));
+    }
+
+    /**
+     * Fills the layers one after the other, every layer colour by colour
+     * @param layers The layers of the hole
+     */
+    private void fill(ApproxLayers layers) {
+        ForkJoinPool pool = BaseAlgo.getPool(parallelism);
+        int[] colourStarts;
+        while (layers.nextLayer(isLargeInnerLayer)) {
+            colourStarts = layers.sortLayerByColour();
+            for (int colour = 0; colour < colourStarts.length - 1; colour++) {
+                layers.fillFromSameBoundary(colourStarts[colour], colourStarts[colour + 1],
+                        colourStarts[colour], isEntireBoundary, pool);
+            }
+        }
+    }
+
+    /**
+     * This is used in the writing of the result generated by this algo. The output string will be
+     * part of the name of the output image.
+     * @return The string that should be concatenated with the file name of the output image generated by
+     * this algo
+     */
+    @Override
+    public String toString() {
+        return name + (isLargeInnerLayer ? "Large" : "Small") + "InnerLayer" +
+                (isEntireBoundary ? "EntireBoundary" : "PartialBoundary");
+    }
+}
@@ -14,4 +14,17 @@ public interface WeightFunction {
      * @return The weight
      */
     float getWeight(IntPair p1, IntPair p2);
+
+    /**
+     * Gets the weight of two points given by their coordinates, override this in order to avoid creating
+     * IntPairs in the inner loops of the algorithms
+     * @param x1 The x coordinate of the first point
+     * @param y1 The y coordinate of the first point
+     * @param x2 The x coordinate of the second point
+     * @param y2 The y coordinate of the second point
+     * @return The weight
+     */
+    default float getWeight(int x1, int y1, int x2, int y2){
+        return getWeight(new IntPair(x1, y1), new IntPair(x2, y2));
+    }
 }
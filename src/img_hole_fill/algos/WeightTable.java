@@ -0,0 +1,126 @@
+package img_hole_fill.algos;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A table of the weights of a radial weight function by the squared distance, so evaluating a weight is a
+ * single array load. The table grows lazily to the largest distance asked for, and a single table is shared
+ * by all the threads and all the requests using equal weight functions (for DefaultWeight, the same z and
+ * epsilon). Only the tables of the few weight functions used last are held, so a service filling with many
+ * different weight functions doesn't hold a table per function. An evicted table stays valid for the fills
+ * still using it.
+ */
+public class WeightTable {
+    private static final int INITIAL_LENGTH = 1 << 12;
+
+    /**
+     * The longest table to hold, 64MB of floats. Larger distances are evaluated directly.
+     */
+    static final int MAX_LENGTH = 1 << 24;
+
+    /**
+     * The largest amount of tables to hold
+     */
+    private static final int MAX_TABLES = 4;
+
+    /**
+     * The tables by their weight functions, the least recently used evicted first
+     */
+    private static final LinkedHashMap<RadialWeightFunction, WeightTable> tables =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<RadialWeightFunction, WeightTable> eldest) {
+                    return size() > MAX_TABLES;
+                }
+            };
+
+    private final RadialWeightFunction func;
+
+    /**
+     * The weights by the squared distance, replaced by a longer copy whenever the table grows
+     */
+    private volatile float[] weights;
+
+    /**
+     * Get the table of a weight function, the table of the counted function for a counting weight function
+     * @param func The weight function
+     * @return The table shared by all the weight functions equal to the given one, while it's held
+     */
+    public static WeightTable getInstance(RadialWeightFunction func){
+        if (func instanceof CountingWeight countingFunc) func = (RadialWeightFunction) countingFunc.getFunc();
+        synchronized (tables) {
+            return tables.computeIfAbsent(func, WeightTable::new);
+        }
+    }
+
+    /**
+     * Hiding the constructor, tables are shared through getInstance
+     * @param func The weight function to tabulate
+     */
+    private WeightTable(RadialWeightFunction func){
+        this.func = func;
+        this.weights = tabulate(new float[0], INITIAL_LENGTH);
+    }
+
+    /**
+     * Gets the squared distance between two pixels
+     * @param x1 The x coordinate of the first pixel
+     * @param y1 The y coordinate of the first pixel
+     * @param x2 The x coordinate of the second pixel
+     * @param y2 The y coordinate of the second pixel
+     * @return The squared distance
+     */
+    public static long getSquaredDist(int x1, int y1, int x2, int y2){
+        long dx = x2 - x1;
+        long dy = y2 - y1;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Gets the weight by the squared distance
+     * @param squaredDist The squared distance
+     * @return The weight
+     */
+    public float getWeight(long squaredDist){
+        float[] curWeights = weights;
+        if (squaredDist < curWeights.length) return curWeights[(int) squaredDist];
+        if (squaredDist < MAX_LENGTH) return getWeights(squaredDist)[(int) squaredDist];
+        return func.getWeightBySquaredDist(squaredDist);
+    }
+
+    /**
+     * Gets the table, grown to cover at least the given squared distance
+     * @param maxSquaredDist The largest squared distance that will be looked up
+     * @return The weights by the squared distance, or null if the distance is too large to tabulate
+     */
+    public float[] getWeights(long maxSquaredDist){
+        float[] curWeights = weights;
+        if (maxSquaredDist < curWeights.length) return curWeights;
+        if (maxSquaredDist >= MAX_LENGTH) return null;
+        synchronized (this) {
+            curWeights = weights;
+            if (maxSquaredDist >= curWeights.length) {
+                int length = curWeights.length;
+                while (length <= maxSquaredDist) length <<= 1;
+                curWeights = tabulate(curWeights, Math.min(length, MAX_LENGTH));
+                weights = curWeights;
+            }
+            return curWeights;
+        }
+    }
+
+    /**
+     * Creates a longer table, copying the weights already calculated and calculating the rest
+     * @param oldWeights The weights already calculated
+     * @param length The length of the new table
+     * @return The new table
+     */
+    private float[] tabulate(float[] oldWeights, int length){
+        float[] newWeights = new float[length];
+        System.arraycopy(oldWeights, 0, newWeights, 0, oldWeights.length);
+        for (int i = oldWeights.length; i < length; i++){
+            newWeights[i] = func.getWeightBySquaredDist(i);
+        } return newWeights;
+    }
+}
@@ -0,0 +1,323 @@
+package img_hole_fill.bench;
+
+import img_hole_fill.algos.*;
+import img_hole_fill.utils.BoundaryUtils;
+import img_hole_fill.utils.GrayImage;
+import img_hole_fill.utils.HoleUtils;
+import img_hole_fill.utils.PixSet;
+import img_hole_fill.utils.StrictHoleCondition;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark harness for the filling algorithms and the pixel utilities, in the spirit of JMH: every
+ * benchmark runs warmup iterations and then measured iterations of a fixed time each, every invocation on
+ * fresh copies of its input so that the copying isn't measured. The inputs are a synthetic image and
+ * synthetic holes, parameterized by the size of the image, the shape of the hole and its area. For every
+ * benchmark and parameters the time per operation, the bytes allocated per operation and the garbage
+ * collections during the measurement are printed. The allocation is counted on the benchmark thread, so the
+ * algorithms run with their sequential instances.
+ * <p>
+ * Arguments, all optional: --filter (a substring of the benchmark names), --sizes, --shapes, --areas (as
+ * fractions of the image), --connectivity (4 or 8), --warmup and --iterations (amounts of iterations) and
+ * --iterationMillis, the lists separated by commas.
+ */
+public class Benchmarks {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double BYTES_PER_KILO = 1 << 10;
+    private static final long SEED = 42;
+    private static final int SEQUENTIAL_PARALLELISM = 1;
+
+    private String filter = "";
+    private int[] sizes = {256, 512};
+    private HoleShape[] shapes = HoleShape.values();
+    private double[] areas = {0.01, 0.05};
+    private boolean isEightConnected = false;
+    private int warmupIterations = 3;
+    private int measuredIterations = 5;
+    private long iterationNanos = 200_000_000L;
+
+    /**
+     * Keeps the results of the operations from being optimized away
+     */
+    private static volatile double sink;
+
+    /**
+     * The time and the allocation of the last measured operation, on the benchmark thread
+     */
+    private static long lastNanos;
+    private static long lastAllocated;
+
+    /**
+     * A single benchmark
+     * @param name The name of the benchmark
+     * @param operation The measured operation
+     */
+    private record Benchmark(String name, Operation operation) {}
+
+    /**
+     * The measured operation of a benchmark
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation on fresh copies of the input
+         * @param input The input, never changed by the operation
+         * @return A value derived from the result of the operation
+         */
+        double run(Input input);
+    }
+
+    /**
+     * The input of a single set of parameters
+     * @param grayMat The image
+     * @param holedMat The image with the hole values in the hole
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     * @param isEightConnected Whether the approach is 8-connected
+     */
+    private record Input(GrayImage grayMat, GrayImage holedMat, PixSet holeSet, PixSet boundarySet,
+                         boolean isEightConnected) {}
+
+    /**
+     * Running the benchmarks
+     * @param args The arguments, as described in the documentation of the class
+     */
+    public static void main(String[] args) {
+        Benchmarks benchmarks = new Benchmarks();
+        benchmarks.parseArgs(args);
+        benchmarks.run();
+    }
+
+    /**
+     * Parses the arguments
+     * @param args The arguments
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2){
+            String val = args[i + 1];
+            switch (args[i]) {
+                case "--filter" -> filter = val;
+                case "--sizes" -> sizes = Arrays.stream(val.split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--shapes" -> shapes = Arrays.stream(val.split(",")).map(String::toUpperCase)
+                        .map(HoleShape::valueOf).toArray(HoleShape[]::new);
+                case "--areas" -> areas = Arrays.stream(val.split(",")).mapToDouble(Double::parseDouble).toArray();
+                case "--connectivity" -> isEightConnected = Integer.parseInt(val) == 8;
+                case "--warmup" -> warmupIterations = Integer.parseInt(val);
+                case "--iterations" -> measuredIterations = Integer.parseInt(val);
+                case "--iterationMillis" -> iterationNanos = (long) (Long.parseLong(val) * NANOS_PER_MILLI);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets all the benchmarks
+     * @return The benchmarks
+     */
+    private static List<Benchmark> getBenchmarks() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        ArrayList<Supplier<FillHoleAlgo>> algoSuppliers = new ArrayList<>();
+        algoSuppliers.add(BaseAlgo::getInstance);
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool2 : new boolean[]{true, false}) {
+                for (boolean bool3 : new boolean[]{true, false}) {
+                    algoSuppliers.add(() -> new ApproxAlgo(bool1, bool2, bool3));
+                }
+            }
+        }
+        for (boolean bool1 : new boolean[]{true, false}) {
+            for (boolean bool3 : new boolean[]{true, false}) {
+                algoSuppliers.add(() -> new WavefrontApproxAlgo(bool1, bool3, SEQUENTIAL_PARALLELISM));
+            }
+        }
+        algoSuppliers.add(() -> new BoundaryLineSpaceAlgo(false));
+        algoSuppliers.add(HolesLineSpaceAlgo::getHolesLineSpaceAlgoInstance);
+        algoSuppliers.add(RandHoleAlgo::getRandHoleAlgoInstance);
+        algoSuppliers.add(RandBoundaryAlgo::getRandBoundaryAlgoInstance);
+        WeightFunction func = DefaultWeight.getInstance();
+        for (Supplier<FillHoleAlgo> algoSupplier : algoSuppliers){
+            benchmarks.add(new Benchmark(algoSupplier.get().toString(), input -> {
+                GrayImage grayMat = input.grayMat().copy();
+                PixSet holeSet = new PixSet(input.holeSet());
+                PixSet boundarySet = new PixSet(input.boundarySet());
+                FillHoleAlgo algo = algoSupplier.get();
+                return measure(() -> algo.apply(grayMat, holeSet, boundarySet, func,
+                        input.isEightConnected()), () -> grayMat.get(PixSet.getX(input.holeSet().get(0)),
+                        PixSet.getY(input.holeSet().get(0))));
+            }));
+        }
+        benchmarks.add(new Benchmark("BoundaryUtils.getBoundarySet", input -> {
+            PixSet[] boundarySet = new PixSet[1];
+            return measure(() -> boundarySet[0] = BoundaryUtils.getBoundarySet(input.holeSet(),
+                    input.isEightConnected()), () -> boundarySet[0].size());
+        }));
+        benchmarks.add(new Benchmark("HoleUtils.getHoleSetFromMat", input -> {
+            PixSet[] holeSet = new PixSet[1];
+            return measure(() -> holeSet[0] = HoleUtils.getHoleSetFromMat(input.holedMat(),
+                    StrictHoleCondition.getInstance()), () -> holeSet[0].size());
+        }));
+        return benchmarks;
+    }
+
+    /**
+     * Runs the benchmarks matching the filter over all the parameters and prints a table of the results
+     */
+    private void run() {
+        List<Benchmark> benchmarks = getBenchmarks().stream()
+                .filter(benchmark -> benchmark.name().contains(filter)).toList();
+        String format = "%-48s %6s %9s %7s %8s %12s %10s %12s %6s %8s\n";
+        System.out.printf(format, "Benchmark", "Size", "Shape", "Area", "Holes", "ms/op", "error",
+                "KB/op", "GCs", "GC ms");
+        for (int size : sizes){
+            GrayImage grayMat = getSyntheticImg(size);
+            for (HoleShape shape : shapes){
+                for (double area : areas){
+                    Input input = getInput(grayMat, shape, area);
+                    for (Benchmark benchmark : benchmarks){
+                        runBenchmark(benchmark, input, format, size, shape, area);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a single benchmark over a single input and prints its row of the table
+     * @param benchmark The benchmark
+     * @param input The input
+     * @param format The format of the rows
+     * @param size The side of the image
+     * @param shape The shape of the hole
+     * @param area The area of the hole as a fraction of the image
+     */
+    private void runBenchmark(Benchmark benchmark, Input input, String format, int size, HoleShape shape,
+                              double area) {
+        for (int i = 0; i < warmupIterations; i++) runIteration(benchmark, input);
+        long gcCount = getGcCount();
+        long gcMillis = getGcMillis();
+        double[] nanosPerOp = new double[measuredIterations];
+        double allocatedPerOp = 0;
+        for (int i = 0; i < measuredIterations; i++){
+            double[] iteration = runIteration(benchmark, input);
+            nanosPerOp[i] = iteration[0];
+            allocatedPerOp += iteration[1] / measuredIterations;
+        }
+        double mean = Arrays.stream(nanosPerOp).average().orElse(0);
+        double variance = Arrays.stream(nanosPerOp).map(nanos -> (nanos - mean) * (nanos - mean)).sum() /
+                Math.max(1, measuredIterations - 1);
+        System.out.printf(format, benchmark.name(), size, shape, area, input.holeSet().size(),
+                String.format("%.4f", mean / NANOS_PER_MILLI),
+                String.format("%.4f", Math.sqrt(variance) / NANOS_PER_MILLI),
+                allocatedPerOp < 0 ? "n/a" : String.format("%.1f", allocatedPerOp / BYTES_PER_KILO),
+                getGcCount() - gcCount, getGcMillis() - gcMillis);
+    }
+
+    /**
+     * Runs operations for the time of a single iteration, at least a single operation
+     * @param benchmark The benchmark
+     * @param input The input
+     * @return The nanoseconds per operation and the bytes allocated per operation (negative if unsupported)
+     */
+    private double[] runIteration(Benchmark benchmark, Input input) {
+        long opNanos = 0;
+        long allocated = 0;
+        int ops = 0;
+        long start = System.nanoTime();
+        double sum = 0;
+        while (ops == 0 || System.nanoTime() - start < iterationNanos){
+            sum += benchmark.operation().run(input);
+            opNanos += lastNanos;
+            allocated += lastAllocated;
+            ops++;
+        }
+        sink = sum;
+        return new double[]{(double) opNanos / ops, (double) allocated / ops};
+    }
+
+    /**
+     * Measures an operation, storing its time and allocation
+     * @param operation The operation
+     * @param result Derives a value from the result of the operation, after the measurement
+     * @return The derived value
+     */
+    private static double measure(Runnable operation, Supplier<Number> result) {
+        long allocatedStart = getAllocatedBytes();
+        long start = System.nanoTime();
+        operation.run();
+        lastNanos = System.nanoTime() - start;
+        lastAllocated = allocatedStart < 0 ? -1 : getAllocatedBytes() - allocatedStart;
+        return result.get().doubleValue();
+    }
+
+    /**
+     * Gets the input of a single set of parameters
+     * @param grayMat The image
+     * @param shape The shape of the hole
+     * @param area The area of the hole as a fraction of the image
+     * @return The input
+     */
+    private Input getInput(GrayImage grayMat, HoleShape shape, double area) {
+        int size = grayMat.getWidth();
+        PixSet holeSet = shape.getHoleSet(size, (int) (area * size * size), new Random(SEED));
+        GrayImage holedMat = grayMat.copy();
+        HoleUtils.setHolesInMat(holedMat, holeSet);
+        return new Input(grayMat, holedMat, holeSet, BoundaryUtils.getBoundarySet(holeSet, isEightConnected),
+                isEightConnected);
+    }
+
+    /**
+     * Gets a synthetic image: smooth waves with a little noise, in the range of the gray scale values
+     * @param size The side of the square image
+     * @return The image
+     */
+    private static GrayImage getSyntheticImg(int size) {
+        GrayImage grayMat = new GrayImage(size, size);
+        Random random = new Random(SEED);
+        for (int y = 0; y < size; y++){
+            for (int x = 0; x < size; x++){
+                grayMat.set(x, y, (float) (0.5 + 0.3 * Math.sin(x / 17.0) * Math.cos(y / 23.0) +
+                        0.1 * random.nextFloat()));
+            }
+        } return grayMat;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread so far
+     * @return The allocated bytes, or -1 if unsupported
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean allocationBean) ||
+                !allocationBean.isThreadAllocatedMemorySupported()) return -1;
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Gets the amount of garbage collections so far, of all the collectors
+     * @return The amount of collections
+     */
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, gcBean.getCollectionCount());
+        } return count;
+    }
+
+    /**
+     * Gets the time spent on garbage collections so far, of all the collectors
+     * @return The time in milliseconds
+     */
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()){
+            millis += Math.max(0, gcBean.getCollectionTime());
+        } return millis;
+    }
+}
@@ -0,0 +1,120 @@
+package img_hole_fill.bench;
+
+import img_hole_fill.utils.PixSet;
+import java.util.Random;
+
+/**
+ * The shapes of the synthetic holes the benchmarks run on. Every shape keeps a margin from the edges of the
+ * image, so that its boundary is inside the image.
+ */
+public enum HoleShape {
+
+    /**
+     * A single disk in the middle of the image
+     */
+    DISK {
+        @Override
+        PixSet getHoleSet(int size, int area, Random random) {
+            double radius = Math.min(Math.sqrt(area / Math.PI), size / 2.0 - MARGIN);
+            return getRing(size, radius, radius);
+        }
+    },
+
+    /**
+     * A single ring in the middle of the image, as thin as a 64th of the image
+     */
+    RING {
+        @Override
+        PixSet getHoleSet(int size, int area, Random random) {
+            double width = Math.max(2, size / 64.0);
+            double radius = Math.min((area / Math.PI + width * width) / (2 * width), size / 2.0 - MARGIN);
+            return getRing(size, radius, Math.min(width, radius));
+        }
+    },
+
+    /**
+     * A random walk of a brush of radius 2, reflected at the margins
+     */
+    SCRIBBLE {
+        @Override
+        PixSet getHoleSet(int size, int area, Random random) {
+            PixSet holeSet = new PixSet(area);
+            double x = size / 2.0;
+            double y = size / 2.0;
+            double angle = 0;
+            int max = size - 1 - MARGIN - BRUSH_RADIUS;
+            int min = MARGIN + BRUSH_RADIUS;
+            while (holeSet.size() < Math.min(area, (long) (size - 2 * MARGIN) * (size - 2 * MARGIN) / 2)){
+                angle += random.nextGaussian() * 0.3;
+                x += Math.cos(angle);
+                y += Math.sin(angle);
+                if (x < min || x > max) {
+                    angle = Math.PI - angle;
+                    x = Math.max(min, Math.min(x, max));
+                }
+                if (y < min || y > max) {
+                    angle = -angle;
+                    y = Math.max(min, Math.min(y, max));
+                }
+                for (int dx = -BRUSH_RADIUS; dx <= BRUSH_RADIUS; dx++){
+                    for (int dy = -BRUSH_RADIUS; dy <= BRUSH_RADIUS; dy++){
+                        if (dx * dx + dy * dy <= BRUSH_RADIUS * BRUSH_RADIUS)
+                            holeSet.add((int) x + dx, (int) y + dy);
+                    }
+                }
+            } return holeSet;
+        }
+    },
+
+    /**
+     * Many small rectangles of up to 3 by 3 pixels scattered over the image, as in scanned documents
+     */
+    SPECKS {
+        @Override
+        PixSet getHoleSet(int size, int area, Random random) {
+            PixSet holeSet = new PixSet(area);
+            int span = size - 2 * MARGIN - MAX_SPECK;
+            while (holeSet.size() < Math.min(area, (long) span * span / 2)){
+                int x = MARGIN + random.nextInt(span);
+                int y = MARGIN + random.nextInt(span);
+                int width = 1 + random.nextInt(MAX_SPECK);
+                int height = 1 + random.nextInt(MAX_SPECK);
+                for (int dx = 0; dx < width; dx++){
+                    for (int dy = 0; dy < height; dy++) holeSet.add(x + dx, y + dy);
+                }
+            } return holeSet;
+        }
+    };
+
+    private static final int MARGIN = 2;
+    private static final int BRUSH_RADIUS = 2;
+    private static final int MAX_SPECK = 3;
+
+    /**
+     * Generates the hole
+     * @param size The side of the square image
+     * @param area The amount of pixels in the hole, approximately, limited by the image
+     * @param random The source of randomness, seeded for repeatable holes
+     * @return The pixels in the hole
+     */
+    abstract PixSet getHoleSet(int size, int area, Random random);
+
+    /**
+     * Gets the pixels of a ring in the middle of the image
+     * @param size The side of the square image
+     * @param radius The outer radius of the ring
+     * @param width The width of the ring, the radius for a disk
+     * @return The pixels in the ring
+     */
+    private static PixSet getRing(int size, double radius, double width) {
+        PixSet holeSet = new PixSet();
+        double center = size / 2.0;
+        double innerRadius = radius - width;
+        for (int y = (int) (center - radius); y <= (int) (center + radius); y++){
+            for (int x = (int) (center - radius); x <= (int) (center + radius); x++){
+                double dist = Math.hypot(x + 0.5 - center, y + 0.5 - center);
+                if (dist <= radius && dist > innerRadius) holeSet.add(x, y);
+            }
+        } return holeSet;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Benchmarks of the filling algorithms and the pixel utilities
+ */
+package img_hole_fill.bench;
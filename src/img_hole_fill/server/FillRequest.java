@@ -0,0 +1,119 @@
+package img_hole_fill.server;
+
+import img_hole_fill.algos.AlgoRegistry;
+import img_hole_fill.algos.FillHoleAlgo;
+import img_hole_fill.utils.RawMatUtils;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A request to fill the hole of an image. The image is posted as a multipart/form-data body, together with
+ * either a mask image of the same size or a list of the coordinates of the hole pixels, and the rest is given
+ * in the query string:
+ * algo - The name of the algorithm, BaseAlgo by default
+ * connectivity - 4 or 8, 4 by default
+ * format - png for a gray scale PNG or raw for a raw gray scale matrix, png by default
+ * samples - The type of the samples of a raw result, float32, uint8 or uint16, float32 by default
+ * @param imgBytes The bytes of the image file, either an image format or a raw gray scale matrix
+ * @param maskBytes The bytes of the mask file, null if the hole is given by coordinates
+ * @param holeCoords The coordinates of the hole pixels, x after y after x, null if the hole is given by a
+ *                   mask
+ * @param algo The filling algorithm
+ * @param isEightConnected Whether or not to apply the 8-connected approach
+ * @param isRaw Whether to respond with a raw gray scale matrix or with a PNG
+ * @param sampleType The type of the samples of a raw result
+ */
+record FillRequest(byte[] imgBytes, byte[] maskBytes, int[] holeCoords, FillHoleAlgo algo,
+                   boolean isEightConnected, boolean isRaw, RawMatUtils.SampleType sampleType) {
+    static final String IMAGE_PART = "image";
+    static final String MASK_PART = "mask";
+    static final String HOLES_PART = "holes";
+    private static final String ALGO_PARAM = "algo";
+    private static final String CONNECTIVITY_PARAM = "connectivity";
+    private static final String FORMAT_PARAM = "format";
+    private static final String SAMPLES_PARAM = "samples";
+    private static final String DEFAULT_ALGO = "BaseAlgo";
+    private static final String RAW_FORMAT = "raw";
+    private static final String PNG_FORMAT = "png";
+
+    /**
+     * Parses a request
+     * @param rawQuery The raw query string of the request, null if there's none
+     * @param body The body of the request
+     * @param contentType The content type of the body
+     * @return The request
+     * @throws IOException In case the body isn't a valid multipart/form-data body
+     * @throws IllegalArgumentException In case a part or a parameter is missing or invalid
+     */
+    static FillRequest parse(String rawQuery, byte[] body, String contentType) throws IOException {
+        Map<String, String> params = parseQuery(rawQuery);
+        Map<String, byte[]> parts = MultipartForm.parse(body, contentType);
+        byte[] imgBytes = parts.get(IMAGE_PART);
+        if (imgBytes == null) throw new IllegalArgumentException("Missing the part " + IMAGE_PART);
+        byte[] maskBytes = parts.get(MASK_PART);
+        byte[] holesBytes = parts.get(HOLES_PART);
+        if ((maskBytes == null) == (holesBytes == null))
+            throw new IllegalArgumentException("Exactly one of the parts " + MASK_PART + " and " +
+                    HOLES_PART + " must be given");
+        int[] holeCoords = holesBytes == null ? null :
+                parseCoords(new String(holesBytes, StandardCharsets.US_ASCII));
+
+        FillHoleAlgo algo = AlgoRegistry.getAlgo(params.getOrDefault(ALGO_PARAM, DEFAULT_ALGO));
+        boolean isEightConnected = switch (params.getOrDefault(CONNECTIVITY_PARAM, "4")) {
+            case "4" -> false;
+            case "8" -> true;
+            default -> throw new IllegalArgumentException("The connectivity must be 4 or 8");
+        };
+        String format = params.getOrDefault(FORMAT_PARAM, PNG_FORMAT).toLowerCase(Locale.ROOT);
+        if (!format.equals(PNG_FORMAT) && !format.equals(RAW_FORMAT))
+            throw new IllegalArgumentException("The format must be " + PNG_FORMAT + " or " + RAW_FORMAT);
+        String samples = params.getOrDefault(SAMPLES_PARAM, RawMatUtils.SampleType.FLOAT32.name());
+        RawMatUtils.SampleType sampleType = RawMatUtils.SampleType.valueOf(samples.toUpperCase(Locale.ROOT));
+        return new FillRequest(imgBytes, maskBytes, holeCoords, algo, isEightConnected,
+                format.equals(RAW_FORMAT), sampleType);
+    }
+
+    /**
+     * Parses a query string
+     * @param rawQuery The raw query string, null if there's none
+     * @return The decoded parameters by their names
+     */
+    private static Map<String, String> parseQuery(String rawQuery){
+        HashMap<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String param : rawQuery.split("&")){
+            int separator = param.indexOf('=');
+            if (separator < 0) params.put(URLDecoder.decode(param, StandardCharsets.UTF_8), "");
+            else params.put(URLDecoder.decode(param.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8));
+        } return params;
+    }
+
+    /**
+     * Parses a list of coordinates, an x followed by a y for every pixel, separated by whitespace, commas or
+     * semicolons
+     * @param text The list
+     * @return The coordinates, x after y after x
+     * @throws IllegalArgumentException In case the list isn't of pairs of non negative integers
+     */
+    private static int[] parseCoords(String text){
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) return new int[0];
+        String[] tokens = trimmed.split("[\\s,;]+");
+        if (tokens.length % 2 != 0)
+            throw new IllegalArgumentException("The hole coordinates must come in pairs of x and y");
+        int[] coords = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++){
+            try {
+                coords[i] = Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid hole coordinate " + tokens[i]);
+            }
+            if (coords[i] < 0) throw new IllegalArgumentException("Negative hole coordinate " + tokens[i]);
+        } return coords;
+    }
+}
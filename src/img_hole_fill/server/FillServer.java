@@ -0,0 +1,388 @@
+package img_hole_fill.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import img_hole_fill.algos.AlgoRegistry;
+import img_hole_fill.algos.CountingWeight;
+import img_hole_fill.algos.DefaultWeight;
+import img_hole_fill.algos.WeightFunction;
+import img_hole_fill.utils.*;
+import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A local HTTP service filling the holes of images, so that a caller filling many images pays the start of
+ * the JVM and the warm-up of the JIT only once. The service listens on the loopback address only:
+ * POST /fill - Fills the hole of an image, see FillRequest for the body and the parameters, and responds with
+ *              the filled image
+ * GET /algos - Lists the names of the algorithms, a name per line
+ * Every request is handled on a thread of its own, a virtual thread where the JDK has them, which only
+ * reads the body and writes the response. Decoding, filling and encoding are bound to the processors, so
+ * they run on a bounded pool of workers behind a bounded queue. A request is admitted only while fewer
+ * requests than the workers and the queue together are admitted, before its body is read, so a request
+ * arriving when they're all taken is rejected at once with 429 without holding its body in memory. An image
+ * (or mask) of more pixels than the limit is rejected by its header with 413 before it's decoded, and a
+ * request not done within the timeout, waiting in the queue included, gets 503. The algorithms can't be
+ * interrupted, so a request timing out while filling keeps its worker, and its admission, until it's done,
+ * though one still waiting in the queue is dropped without running.
+ */
+public class FillServer {
+    private static final String FILL_PATH = "/fill";
+    private static final String ALGOS_PATH = "/algos";
+    private static final String POST_METHOD = "POST";
+    private static final String GET_METHOD = "GET";
+    private static final String PNG_TYPE = "image/png";
+    private static final String RAW_TYPE = "application/octet-stream";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+    private static final String REQUEST_NAME = "request";
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int UNAVAILABLE = 503;
+    private static final int NO_BODY = -1;
+    private static final int RETRY_AFTER_SECONDS = 1;
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final int DEFAULT_QUEUE_PER_WORKER = 4;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    private static final int DEFAULT_MAX_REQUEST_BYTES = 64 << 20;
+    private static final long DEFAULT_MAX_PIXELS = 1L << 26;
+
+    private final int workers;
+    private final int queueLimit;
+    private final long timeoutMillis;
+    private final int maxRequestBytes;
+    private final long maxPixels;
+    private final Semaphore admissions;
+    private final WeightFunction func = DefaultWeight.getInstance();
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ThreadPoolExecutor workerPool;
+
+    /**
+     * Create a new service, not started yet
+     * @param port The port to listen on, 0 for any free port
+     * @param workers The amount of requests filled at once
+     * @param queueLimit The largest amount of requests waiting for a worker
+     * @param timeoutMillis The longest time for a request to wait and be filled, in milliseconds
+     * @param maxRequestBytes The largest body of a request, in bytes
+     * @param maxPixels The largest amount of pixels in the image of a request
+     * @throws IOException In case the port can't be bound
+     */
+    public FillServer(int port, int workers, int queueLimit, long timeoutMillis, int maxRequestBytes,
+                      long maxPixels) throws IOException {
+        if (workers < 1 || queueLimit < 1 || timeoutMillis < 1 || maxRequestBytes < 1 || maxPixels < 1)
+            throw new IllegalArgumentException("The workers, the queue limit, the timeout, the request " +
+                    "size and the pixels limit must be positive");
+        this.workers = workers;
+        this.queueLimit = queueLimit;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxPixels = maxPixels;
+        admissions = new Semaphore(workers + queueLimit);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        requestExecutor = getRequestExecutor();
+        workerPool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), new ThreadPoolExecutor.AbortPolicy());
+        server.setExecutor(requestExecutor);
+        server.createContext(FILL_PATH, this::handleFill);
+        server.createContext(ALGOS_PATH, this::handleAlgos);
+    }
+
+    /**
+     * Create a new service, not started yet, with a worker per available processor and the default limits
+     * @param port The port to listen on, 0 for any free port
+     * @throws IOException In case the port can't be bound
+     */
+    public FillServer(int port) throws IOException {
+        this(port, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * DEFAULT_QUEUE_PER_WORKER, DEFAULT_TIMEOUT_MILLIS,
+                DEFAULT_MAX_REQUEST_BYTES, DEFAULT_MAX_PIXELS);
+    }
+
+    /**
+     * Gets an executor running every task on a new virtual thread. Virtual threads are looked up by
+     * reflection, so on a JDK without them (or with them only as a preview) every task runs on a cached
+     * platform thread instead.
+     * @return The executor
+     */
+    private static ExecutorService getRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY).invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts listening
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops listening, waiting a moment for the requests being handled, and shuts the workers down
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        workerPool.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the port the service listens on
+     * @return The port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request to fill the hole of an image. The request is admitted before its body is read, and
+     * its admission is handed over to its fill once it's queued, to be released when the fill is done or
+     * dropped from the queue.
+     * @param exchange The exchange of the request
+     * @throws IOException In case there's a problem reading the request or writing the response
+     */
+    private void handleFill(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(POST_METHOD)){
+                exchange.getResponseHeaders().set("Allow", POST_METHOD);
+                sendText(exchange, METHOD_NOT_ALLOWED, "Use " + POST_METHOD);
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType == null || !contentType.startsWith(MultipartForm.MEDIA_TYPE)){
+                sendText(exchange, UNSUPPORTED_MEDIA_TYPE, "The body must be " + MultipartForm.MEDIA_TYPE);
+                return;
+            }
+            if (!admissions.tryAcquire()){
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                sendText(exchange, TOO_MANY_REQUESTS, "All " + workers + " workers are busy and " +
+                        queueLimit + " requests are waiting");
+                return;
+            }
+            boolean isHandedOver = false;
+            try {
+                isHandedOver = handleAdmittedFill(exchange, contentType);
+            } finally {
+                if (!isHandedOver) admissions.release();
+            }
+        }
+    }
+
+    /**
+     * Handles an admitted request to fill the hole of an image
+     * @param exchange The exchange of the request
+     * @param contentType The type of the body of the request
+     * @return True iff the fill of the request was queued, its admission handed over to it
+     * @throws IOException In case there's a problem reading the request or writing the response
+     */
+    private boolean handleAdmittedFill(HttpExchange exchange, String contentType) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body == null){
+            sendText(exchange, PAYLOAD_TOO_LARGE, "The body exceeds " + maxRequestBytes + " bytes");
+            return false;
+        }
+        FillRequest request;
+        long pixels;
+        try {
+            request = FillRequest.parse(exchange.getRequestURI().getRawQuery(), body, contentType);
+            pixels = getPixelsAmount(request.imgBytes());
+            if (request.maskBytes() != null) pixels = Math.max(pixels, getPixelsAmount(request.maskBytes()));
+        } catch (IOException | IllegalArgumentException e) {
+            sendText(exchange, BAD_REQUEST, e.getMessage());
+            return false;
+        }
+        if (pixels > maxPixels){
+            sendText(exchange, PAYLOAD_TOO_LARGE, "The image exceeds " + maxPixels + " pixels");
+            return false;
+        }
+
+        FutureTask<byte[]> task = new FutureTask<>(() -> {
+            try {
+                return fill(request);
+            } finally {
+                admissions.release();
+            }
+        });
+        try {
+            workerPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            sendText(exchange, UNAVAILABLE, "The service is stopping");
+            return false;
+        }
+        byte[] result;
+        try {
+            result = task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            drop(task);
+            sendText(exchange, UNAVAILABLE, "Not filled within " + timeoutMillis + " ms");
+            return true;
+        } catch (InterruptedException e) {
+            drop(task);
+            Thread.currentThread().interrupt();
+            sendText(exchange, UNAVAILABLE, "Interrupted");
+            return true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException || cause instanceof IllegalArgumentException)
+                sendText(exchange, BAD_REQUEST, cause.getMessage());
+            else sendText(exchange, INTERNAL_ERROR, String.valueOf(cause));
+            return true;
+        }
+        exchange.getResponseHeaders().set("Content-Type", request.isRaw() ? RAW_TYPE : PNG_TYPE);
+        exchange.sendResponseHeaders(OK, result.length);
+        exchange.getResponseBody().write(result);
+        return true;
+    }
+
+    /**
+     * Drops a fill still waiting in the queue, so that it doesn't hold a place in the queue until a worker
+     * takes it, releasing its admission. A fill a worker already took can't be interrupted, so it's left to
+     * finish and release its admission on its own.
+     * @param task The fill
+     */
+    private void drop(FutureTask<byte[]> task) {
+        if (workerPool.remove(task)){
+            task.cancel(false);
+            admissions.release();
+        }
+    }
+
+    /**
+     * Gets the amount of pixels of an image by the header of its file, without decoding it
+     * @param bytes The bytes of the image file
+     * @return The amount of pixels
+     * @throws IOException In case the bytes aren't of a known image format
+     */
+    private static long getPixelsAmount(byte[] bytes) throws IOException {
+        Dimension size = RawMatUtils.isRawMat(bytes) ? RawMatUtils.getRawMatSize(bytes, REQUEST_NAME) :
+                BuffImgUtils.getImgSize(bytes, REQUEST_NAME);
+        return (long) size.width * size.height;
+    }
+
+    /**
+     * Handles a request for the names of the algorithms
+     * @param exchange The exchange of the request
+     * @throws IOException In case there's a problem writing the response
+     */
+    private void handleAlgos(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(GET_METHOD)){
+                exchange.getResponseHeaders().set("Allow", GET_METHOD);
+                sendText(exchange, METHOD_NOT_ALLOWED, "Use " + GET_METHOD);
+                return;
+            }
+            if (!exchange.getRequestURI().getPath().equals(ALGOS_PATH)){
+                sendText(exchange, NOT_FOUND, "Not found");
+                return;
+            }
+            sendText(exchange, OK, String.join("\n", AlgoRegistry.getNames()));
+        }
+    }
+
+    /**
+     * Fills the hole of the image of a request, on a worker
+     * @param request The request
+     * @return The encoded filled image
+     * @throws IOException In case an image can't be decoded or the result can't be encoded
+     * @throws IllegalArgumentException In case the mask or the hole doesn't fit the image
+     */
+    private byte[] fill(FillRequest request) throws IOException {
+        GrayImage imgMat = MatImgUtils.getGrayMatFromBytes(request.imgBytes(), REQUEST_NAME);
+        PixSet holeSet = request.maskBytes() != null ? getHoleSetFromMask(request.maskBytes(), imgMat) :
+                getHoleSetFromCoords(request.holeCoords(), imgMat);
+        PixSet boundarySet = BoundaryUtils.getBoundaryInImg(holeSet, imgMat, request.isEightConnected());
+
+        PhaseTrace.FillEvent event = new PhaseTrace.FillEvent(request.algo().toString(), func.toString(),
+                holeSet, boundarySet, request.isEightConnected());
+        request.algo().apply(imgMat, holeSet, boundarySet, CountingWeight.wrap(func, event.getEvaluations()),
+                request.isEightConnected());
+        event.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (request.isRaw()) BuffImgUtils.writeRawMat(imgMat, out, request.sampleType(), REQUEST_NAME);
+        else BuffImgUtils.writeGrayImg(BuffImgUtils.getGrayImgFromMat(imgMat), out, REQUEST_NAME);
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets the hole of an image out of a mask image of the same size
+     * @param maskBytes The bytes of the mask file
+     * @param imgMat The image
+     * @return The pixels of the hole
+     * @throws IOException In case the mask can't be decoded
+     */
+    private static PixSet getHoleSetFromMask(byte[] maskBytes, GrayImage imgMat) throws IOException {
+        GrayImage maskMat = MatImgUtils.getGrayMatFromBytes(maskBytes, REQUEST_NAME);
+        if (maskMat.getWidth() != imgMat.getWidth() || maskMat.getHeight() != imgMat.getHeight())
+            throw new IllegalArgumentException("The image and the mask are of different sizes");
+        return HoleUtils.getHoleSetFromMat(maskMat, ThresholdHoleCondition.getInstance());
+    }
+
+    /**
+     * Gets the hole of an image out of the coordinates of its pixels
+     * @param holeCoords The coordinates, x after y after x
+     * @param imgMat The image
+     * @return The pixels of the hole
+     */
+    private static PixSet getHoleSetFromCoords(int[] holeCoords, GrayImage imgMat) {
+        BitMask holeMask = new BitMask(imgMat.getWidth(), imgMat.getHeight());
+        for (int i = 0; i < holeCoords.length; i += 2){
+            if (holeCoords[i] >= imgMat.getWidth() || holeCoords[i + 1] >= imgMat.getHeight())
+                throw new IllegalArgumentException("The hole pixel (" + holeCoords[i] + ", " +
+                        holeCoords[i + 1] + ") is outside the image");
+            holeMask.set(holeCoords[i], holeCoords[i + 1]);
+        } return holeMask.toPixSet();
+    }
+
+    /**
+     * Reads the body of a request up to the largest size
+     * @param in The body
+     * @return The body, null if it's larger than the largest size
+     * @throws IOException In case there's a problem reading the body
+     */
+    private byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(maxRequestBytes + 1);
+        return body.length > maxRequestBytes ? null : body;
+    }
+
+    /**
+     * Sends a response of plain text
+     * @param exchange The exchange of the request
+     * @param status The status of the response
+     * @param text The text
+     * @throws IOException In case there's a problem writing the response
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? NO_BODY : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package img_hole_fill.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A parser of multipart/form-data bodies held in memory. Only the name of every part is kept out of its
+ * headers, since the parts are told apart by their names alone.
+ */
+abstract class MultipartForm {
+    static final String MEDIA_TYPE = "multipart/form-data";
+    private static final String BOUNDARY_PARAM = "boundary=";
+    private static final String NAME_PARAM = "name=\"";
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+    private static final byte[] DASHES = {'-', '-'};
+
+    /**
+     * Parses a multipart/form-data body
+     * @param body The body
+     * @param contentType The content type of the body, holding the boundary of the parts
+     * @return The contents of the parts by their names
+     * @throws IOException In case the body isn't a valid multipart/form-data body
+     */
+    static Map<String, byte[]> parse(byte[] body, String contentType) throws IOException {
+        byte[] delimiter = concat(DASHES, getBoundary(contentType).getBytes(StandardCharsets.ISO_8859_1));
+        byte[] innerDelimiter = concat(CRLF, delimiter);
+        HashMap<String, byte[]> parts = new HashMap<>();
+        int index = indexOf(body, delimiter, 0);
+        if (index < 0) throw new IOException("The body holds no parts");
+        index += delimiter.length;
+        while (!startsWith(body, DASHES, index)){
+            if (!startsWith(body, CRLF, index)) throw new IOException("Malformed delimiter of a part");
+            int headersStart = index + CRLF.length;
+            int headersEnd = indexOf(body, HEADERS_END, headersStart);
+            if (headersEnd < 0) throw new IOException("Unterminated headers of a part");
+            int contentStart = headersEnd + HEADERS_END.length;
+            int contentEnd = indexOf(body, innerDelimiter, contentStart);
+            if (contentEnd < 0) throw new IOException("Unterminated part");
+            String headers = new String(body, headersStart, headersEnd - headersStart,
+                    StandardCharsets.ISO_8859_1);
+            parts.put(getName(headers), Arrays.copyOfRange(body, contentStart, contentEnd));
+            index = contentEnd + innerDelimiter.length;
+        } return parts;
+    }
+
+    /**
+     * Gets the boundary of the parts out of a content type
+     * @param contentType The content type
+     * @return The boundary
+     * @throws IOException In case the content type isn't multipart/form-data with a boundary
+     */
+    private static String getBoundary(String contentType) throws IOException {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith(MEDIA_TYPE))
+            throw new IOException("The content type must be " + MEDIA_TYPE);
+        int start = contentType.indexOf(BOUNDARY_PARAM);
+        if (start < 0) throw new IOException("The content type has no boundary");
+        String boundary = contentType.substring(start + BOUNDARY_PARAM.length());
+        int end = boundary.indexOf(';');
+        if (end >= 0) boundary = boundary.substring(0, end);
+        boundary = boundary.trim();
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\""))
+            boundary = boundary.substring(1, boundary.length() - 1);
+        if (boundary.isEmpty()) throw new IOException("The content type has an empty boundary");
+        return boundary;
+    }
+
+    /**
+     * Gets the name of a part out of its Content-Disposition header
+     * @param headers The headers of the part
+     * @return The name of the part
+     * @throws IOException In case the part has no name
+     */
+    private static String getName(String headers) throws IOException {
+        for (String header : headers.split("\r\n")){
+            if (!header.toLowerCase(Locale.ROOT).startsWith("content-disposition:")) continue;
+            int start = header.indexOf(NAME_PARAM);
+            if (start < 0) break;
+            int end = header.indexOf('"', start + NAME_PARAM.length());
+            if (end < 0) break;
+            return header.substring(start + NAME_PARAM.length(), end);
+        }
+        throw new IOException("A part has no name");
+    }
+
+    /**
+     * Finds the first occurrence of a sequence of bytes
+     * @param bytes The bytes to search in
+     * @param sequence The sequence to search for
+     * @param from The index to start the search from
+     * @return The index of the first occurrence, -1 if there's none
+     */
+    private static int indexOf(byte[] bytes, byte[] sequence, int from){
+        for (int i = from; i <= bytes.length - sequence.length; i++){
+            if (bytes[i] == sequence[0] && startsWith(bytes, sequence, i)) return i;
+        } return -1;
+    }
+
+    /**
+     * Checks whether a sequence of bytes occurs at an index
+     * @param bytes The bytes to check
+     * @param sequence The sequence
+     * @param index The index
+     * @return Whether the bytes at the index are the sequence
+     */
+    private static boolean startsWith(byte[] bytes, byte[] sequence, int index){
+        if (index < 0 || index > bytes.length - sequence.length) return false;
+        return Arrays.equals(bytes, index, index + sequence.length, sequence, 0, sequence.length);
+    }
+
+    /**
+     * Concatenates two arrays of bytes
+     * @param first The first array
+     * @param second The second array
+     * @return The concatenation
+     */
+    private static byte[] concat(byte[] first, byte[] second){
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * A local HTTP service filling the holes of the images posted to it
+ */
+package img_hole_fill.server;
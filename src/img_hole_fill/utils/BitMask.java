@@ -0,0 +1,279 @@
+package img_hole_fill.utils;
+
+import java.util.stream.IntStream;
+
+/**
+ * A set of pixels within a rectangular region, a bit per pixel packed into a row of longs per row of the
+ * region. The bit i of the word w of a row stands for the pixel originX + 64 * w + i. Morphology runs a word
+ * at a time: dilating a row by a pixel is shifting its words by a bit, carrying the edge bits between
+ * adjacent words, so the boundary of a hole, dilate(hole) AND NOT hole, takes a handful of operations per 64
+ * pixels. Nothing is ever set outside the region, so the boundary of a mask covering an image is clipped to
+ * the image.
+ */
+public class BitMask {
+    private static final int WORD_BITS = Long.SIZE;
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * The least amount of words to go through in parallel over the rows
+     */
+    private static final int MIN_PARALLEL_WORDS = 1 << 16;
+
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Create an empty mask of a region
+     * @param originX The x coordinate of the top left pixel of the region
+     * @param originY The y coordinate of the top left pixel of the region
+     * @param width The width of the region
+     * @param height The height of the region
+     */
+    public BitMask(int originX, int originY, int width, int height){
+        if (width < 0 || height < 0) throw new IllegalArgumentException("The region must not be negative");
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + WORD_BITS - 1) >>> WORD_SHIFT;
+        words = new long[Math.multiplyExact(wordsPerRow, height)];
+    }
+
+    /**
+     * Create an empty mask of an image
+     * @param width The width of the image
+     * @param height The height of the image
+     */
+    public BitMask(int width, int height){
+        this(0, 0, width, height);
+    }
+
+    /**
+     * Creates a mask of a set of pixels, its region being the bounding box of the set with a margin around it
+     * @param pixSet The pixels
+     * @param margin The margin, 1 for the region to hold the boundary of the set
+     * @return The mask
+     */
+    public static BitMask fromPixSet(PixSet pixSet, int margin){
+        if (pixSet.isEmpty()) return new BitMask(0, 0);
+        int[] box = ComponentUtils.getBoundingBox(pixSet);
+        BitMask mask = new BitMask(box[0] - margin, box[1] - margin, box[2] - box[0] + 1 + 2 * margin,
+                box[3] - box[1] + 1 + 2 * margin);
+        long pix;
+        for (int i = 0; i < pixSet.size(); i++){
+            pix = pixSet.get(i);
+            mask.set(PixSet.getX(pix), PixSet.getY(pix));
+        } return mask;
+    }
+
+    /**
+     * Gets the x coordinate of the top left pixel of the region
+     * @return The x coordinate
+     */
+    public int getOriginX(){
+        return originX;
+    }
+
+    /**
+     * Gets the y coordinate of the top left pixel of the region
+     * @return The y coordinate
+     */
+    public int getOriginY(){
+        return originY;
+    }
+
+    /**
+     * Gets the width of the region
+     * @return The width
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Gets the height of the region
+     * @return The height
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Gets the amount of words in a row
+     * @return The amount of words in a row
+     */
+    public int getWordsPerRow(){
+        return wordsPerRow;
+    }
+
+    /**
+     * Gets the words of all the rows, row after row. Bits past the width in the last word of a row must stay
+     * clear.
+     * @return The words, shared with this mask
+     */
+    public long[] getWords(){
+        return words;
+    }
+
+    /**
+     * Checks whether a pixel is in the mask
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return Whether the pixel is in the mask, false for pixels outside the region
+     */
+    public boolean get(int x, int y){
+        int relX = x - originX;
+        int relY = y - originY;
+        if (relX < 0 || relX >= width || relY < 0 || relY >= height) return false;
+        return (words[relY * wordsPerRow + (relX >>> WORD_SHIFT)] & (1L << relX)) != 0;
+    }
+
+    /**
+     * Adds a pixel to the mask
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @throws IndexOutOfBoundsException In case the pixel is outside the region
+     */
+    public void set(int x, int y){
+        int relX = x - originX;
+        int relY = y - originY;
+        if (relX < 0 || relX >= width || relY < 0 || relY >= height){
+            throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y + ") is outside the mask");
+        }
+        words[relY * wordsPerRow + (relX >>> WORD_SHIFT)] |= 1L << relX;
+    }
+
+    /**
+     * Counts the pixels in the mask
+     * @return The amount of pixels
+     */
+    public long cardinality(){
+        long count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Dilates the mask by a pixel, within its region
+     * @param isEightConnected Whether or not to add the 8-connected neighbours (the default is 4)
+     * @return The dilated mask, of the same region
+     */
+    public BitMask dilate(boolean isEightConnected){
+        return dilate(isEightConnected, false);
+    }
+
+    /**
+     * Dilates the mask by a pixel, within its region
+     * @param isEightConnected Whether or not to add the 8-connected neighbours (the default is 4)
+     * @param isExcludingSelf Whether or not to leave out the pixels of this mask, getting the boundary in the
+     *                        same pass
+     * @return The dilated mask, of the same region
+     */
+    private BitMask dilate(boolean isEightConnected, boolean isExcludingSelf){
+        BitMask dilated = new BitMask(originX, originY, width, height);
+        long tailMask = width % WORD_BITS == 0 ? -1L : (1L << width) - 1;
+        getRows().forEach(y -> {
+            int row = y * wordsPerRow;
+            int upRow = y > 0 ? row - wordsPerRow : -1;
+            int downRow = y < height - 1 ? row + wordsPerRow : -1;
+            long word;
+            for (int w = 0; w < wordsPerRow; w++){
+                word = getHorizontallyDilated(row, w);
+                if (isEightConnected){
+                    if (upRow >= 0) word |= getHorizontallyDilated(upRow, w);
+                    if (downRow >= 0) word |= getHorizontallyDilated(downRow, w);
+                } else {
+                    if (upRow >= 0) word |= words[upRow + w];
+                    if (downRow >= 0) word |= words[downRow + w];
+                }
+                if (isExcludingSelf) word &= ~words[row + w];
+                dilated.words[row + w] = w == wordsPerRow - 1 ? word & tailMask : word;
+            }
+        });
+        return dilated;
+    }
+
+    /**
+     * Gets a word of a row dilated horizontally by a pixel, carrying the edge bits of the adjacent words
+     * @param row The index of the first word of the row
+     * @param w The index of the word within the row
+     * @return The dilated word
+     */
+    private long getHorizontallyDilated(int row, int w){
+        long word = words[row + w];
+        long dilated = word | (word << 1) | (word >>> 1);
+        if (w > 0) dilated |= words[row + w - 1] >>> (WORD_BITS - 1);
+        if (w < wordsPerRow - 1) dilated |= words[row + w + 1] << (WORD_BITS - 1);
+        return dilated;
+    }
+
+    /**
+     * Removes the pixels of another mask of the same region from this mask
+     * @param other The other mask
+     */
+    public void andNot(BitMask other){
+        if (other.originX != originX || other.originY != originY || other.width != width ||
+                other.height != height){
+            throw new IllegalArgumentException("The masks are of different regions");
+        }
+        for (int i = 0; i < words.length; i++) words[i] &= ~other.words[i];
+    }
+
+    /**
+     * Gets the outer boundary of the mask, dilate(mask) AND NOT mask, within its region
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
+     * @return The boundary, of the same region
+     */
+    public BitMask getBoundary(boolean isEightConnected){
+        return dilate(isEightConnected, true);
+    }
+
+    /**
+     * Gets the pixels in the mask as packed pixels, row after row
+     * @return The packed pixels
+     */
+    public long[] toPackedArray(){
+        int[] rowStarts = new int[height + 1];
+        getRows().forEach(y -> {
+            int count = 0;
+            for (int w = y * wordsPerRow; w < (y + 1) * wordsPerRow; w++) count += Long.bitCount(words[w]);
+            rowStarts[y + 1] = count;
+        });
+        for (int y = 0; y < height; y++) rowStarts[y + 1] = Math.addExact(rowStarts[y], rowStarts[y + 1]);
+        long[] packed = new long[rowStarts[height]];
+        getRows().forEach(y -> {
+            int index = rowStarts[y];
+            long word;
+            for (int w = 0; w < wordsPerRow; w++){
+                word = words[y * wordsPerRow + w];
+                while (word != 0){
+                    packed[index++] = PixSet.pack(originX + (w << WORD_SHIFT) +
+                            Long.numberOfTrailingZeros(word), originY + y);
+                    word &= word - 1;
+                }
+            }
+        });
+        return packed;
+    }
+
+    /**
+     * Gets the pixels in the mask as a set, row after row
+     * @return The set of pixels
+     */
+    public PixSet toPixSet(){
+        return PixSet.fromArray(toPackedArray());
+    }
+
+    /**
+     * Gets the rows of the mask to go through, in parallel if the mask is large enough
+     * @return The rows
+     */
+    private IntStream getRows(){
+        IntStream rows = IntStream.range(0, height);
+        return words.length >= MIN_PARALLEL_WORDS ? rows.parallel() : rows;
+    }
+}
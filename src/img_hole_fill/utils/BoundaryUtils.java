@@ -7,6 +7,12 @@ import java.util.HashSet;
  */
 public abstract class BoundaryUtils {
 
+    /**
+     * The most words of a bit mask per hole pixel for the mask to be worthwhile. Adding the neighbours of a
+     * hole pixel to a set costs far more than going through a few words.
+     */
+    private static final int MAX_MASK_WORDS_PER_HOLE_PIX = 8;
+
     /**
      * gets the pixels outside the hole that connect to the hole directly
      * @param holeSet The pixels in the hole
@@ -19,4 +25,67 @@ public abstract class BoundaryUtils {
         GeneralUtils.applySetsDiff(connectedSet, holeSet);
         return connectedSet;
     }
+
+    /**
+     * gets the pixels outside the hole that connect to the hole directly. The hole is put in a bit mask of
+     * its bounding box, unless the hole is too sparse in its bounding box for the mask to pay off.
+     * @param holeSet The pixels in the hole
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
+     * @return The outer boundary of the hole, row after row when computed by a mask
+     */
+    public static PixSet getBoundarySet(PixSet holeSet, boolean isEightConnected){
+        PhaseTrace.BoundaryEvent event = new PhaseTrace.BoundaryEvent(holeSet, isEightConnected);
+        PixSet boundarySet;
+        if (isMaskWorthwhile(holeSet)){
+            boundarySet = BitMask.fromPixSet(holeSet, 1).getBoundary(isEightConnected).toPixSet();
+        } else {
+            boundarySet = PixConnectUtils.getEntireFourConnected(holeSet);
+            if (isEightConnected) PixConnectUtils.completeEntireEightConnected(holeSet, boundarySet);
+            GeneralUtils.applySetsDiff(boundarySet, holeSet);
+        }
+        event.finish(boundarySet);
+        return boundarySet;
+    }
+
+    /**
+     * gets the pixels outside the hole that connect to the hole directly, leaving out the pixels outside the
+     * image, so a hole touching the edge of the image can still be filled
+     * @param holeSet The pixels in the hole
+     * @param grayMat The image of the hole
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
+     * @return The outer boundary of the hole inside the image
+     */
+    public static PixSet getBoundaryInImg(PixSet holeSet, GrayImage grayMat, boolean isEightConnected){
+        PixSet boundarySet = getBoundarySet(holeSet, isEightConnected);
+        PixSet boundaryInImg = new PixSet(boundarySet.size());
+        long pix;
+        for (int i = 0; i < boundarySet.size(); i++){
+            pix = boundarySet.get(i);
+            if (grayMat.contains(PixSet.getX(pix), PixSet.getY(pix))) boundaryInImg.add(pix);
+        } return boundaryInImg;
+    }
+
+    /**
+     * gets the pixels of a mask that connect to the hole directly, never leaving the region of the mask, so
+     * the boundary of a mask of a whole image is clipped to the image
+     * @param holeMask The pixels in the hole
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
+     * @return The outer boundary of the hole, row after row
+     */
+    public static PixSet getBoundarySet(BitMask holeMask, boolean isEightConnected){
+        return holeMask.getBoundary(isEightConnected).toPixSet();
+    }
+
+    /**
+     * Checks whether the words of a bit mask of the bounding box of a hole are few enough for the mask to be
+     * faster than adding the neighbours of every hole pixel to a set
+     * @param holeSet The pixels in the hole
+     * @return Whether or not to compute the boundary by a mask
+     */
+    private static boolean isMaskWorthwhile(PixSet holeSet){
+        if (holeSet.isEmpty()) return false;
+        int[] box = ComponentUtils.getBoundingBox(holeSet);
+        long maskWords = ((long) box[2] - box[0] + Long.SIZE + 2) / Long.SIZE * ((long) box[3] - box[1] + 3);
+        return maskWords <= (long) holeSet.size() * MAX_MASK_WORDS_PER_HOLE_PIX;
+    }
 }
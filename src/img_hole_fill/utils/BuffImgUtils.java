@@ -1,10 +1,19 @@
 package img_hole_fill.utils;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
 
 /**
  * Various utilities for BufferedImage objects
@@ -12,6 +21,10 @@ import java.io.IOException;
 public abstract class BuffImgUtils {
     static final float MAX_COLOR_VAL = 255;
     private static final String DEFAULT_IMG_FORMAT = "png";
+    private static final int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private static final PngWriter.Filter DEFAULT_FILTER = PngWriter.Filter.UP;
+    private static final int BANDS_PER_THREAD = 4;
+    private static final byte[] GRAY_LUT = getGrayLut();
 
     /**
      * Gets a buffered image object from a file name of an image
@@ -24,24 +37,138 @@ public abstract class BuffImgUtils {
         return ImageIO.read(imgFile);
     }
 
+    /**
+     * Gets the size of an image from its file name without decoding its pixels
+     * @param fileName The file name of the image in the current working directory
+     * @return The size of the image
+     * @throws IOException In case there's a problem reading the provided file
+     */
+    public static Dimension getImgSize(String fileName) throws IOException {
+        try (ImageInputStream stream = getImgInputStream(fileName)) {
+            ImageReader reader = getImgReader(stream, fileName);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Gets the size of an image from the bytes of its file in memory without decoding its pixels
+     * @param bytes The bytes of the image file
+     * @param sourceName The name of the source of the bytes, for the error message
+     * @return The size of the image
+     * @throws IOException In case the bytes aren't of a known image format
+     */
+    public static Dimension getImgSize(byte[] bytes, String sourceName) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            ImageReader reader = getImgReader(stream, sourceName);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Gets a region of an image from its file name, decoding only the pixels in the region into memory
+     * @param fileName The file name of the image in the current working directory
+     * @param region The region to read, inside the image
+     * @return The region as a buffered image object
+     * @throws IOException In case there's a problem reading the provided file
+     */
+    public static BufferedImage getBufferedImgRegion(String fileName, Rectangle region) throws IOException {
+        try (ImageInputStream stream = getImgInputStream(fileName)) {
+            ImageReader reader = getImgReader(stream, fileName);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Opens a stream over an image file
+     * @param fileName The file name of the image in the current working directory
+     * @return The stream
+     * @throws IOException In case there's a problem opening the provided file
+     */
+    private static ImageInputStream getImgInputStream(String fileName) throws IOException {
+        File imgFile = new File(System.getProperty("user.dir"), fileName);
+        ImageInputStream stream = ImageIO.createImageInputStream(imgFile);
+        if (stream == null) throw new IOException("Can't open the image file " + imgFile);
+        return stream;
+    }
+
+    /**
+     * Gets a reader for an image stream
+     * @param stream The stream of the image
+     * @param fileName The file name of the image, for the error message
+     * @return The reader, set to the stream
+     * @throws IOException In case there's no reader for the format of the image
+     */
+    private static ImageReader getImgReader(ImageInputStream stream, String fileName) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) throw new IOException("Unknown image format of " + fileName);
+        ImageReader reader = readers.next();
+        reader.setInput(stream, true, true);
+        return reader;
+    }
+
     /**
      * Converts a matrix to a gray scale image
-     * @param grayMat The matrix to convert
+     * @param grayMat The matrix to convert, indexed by x and then by y
      * @return The converted image
      */
     public static BufferedImage getGrayImgFromMat(float[][] grayMat){
-        int width = grayMat[0].length;
-        int height = grayMat.length;
-        int uniformVal;
-        BufferedImage grayImg = new BufferedImage(grayMat[0].length, grayMat.length,
-                BufferedImage.TYPE_BYTE_GRAY);
-        for (int i=0; i<height; i++){
-            for (int j=0; j<width; j++){
-                grayMat[i][j] = (grayMat[i][j] == -1 ? 0 : grayMat[i][j]);
-                uniformVal = (int) (MAX_COLOR_VAL * grayMat[i][j]);
-                grayImg.setRGB(i, j, (new Color(uniformVal, uniformVal, uniformVal).getRGB()));
+        return getGrayImgFromMat(GrayImage.fromMat(grayMat));
+    }
+
+    /**
+     * Converts a gray scale matrix to a gray scale buffered image, quantizing the values straight into the
+     * data buffer of the image in parallel over bands of rows. Hole values (-1) become black, and the other
+     * values are clamped to the range of the colors. The matrix isn't changed.
+     * @param grayMat The gray scale matrix to convert
+     * @return The converted image
+     */
+    public static BufferedImage getGrayImgFromMat(GrayImage grayMat){
+        int width = grayMat.getWidth();
+        int height = grayMat.getHeight();
+        float[] grayData = grayMat.getData();
+        BufferedImage grayImg = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] imgData = ((DataBufferByte) grayImg.getRaster().getDataBuffer()).getData();
+        int bandsAmount = Math.min(height, Runtime.getRuntime().availableProcessors() * BANDS_PER_THREAD);
+        IntStream.range(0, bandsAmount).parallel().forEach(band -> {
+            int index;
+            float val;
+            for (int y = band * height / bandsAmount; y < (band + 1) * height / bandsAmount; y++){
+                index = grayMat.getOffset() + y * grayMat.getStride();
+                for (int x = 0; x < width; x++, index++){
+                    val = grayData[index] == -1 ? 0 : grayData[index];
+                    imgData[y * width + x] = GRAY_LUT[Math.max(0, Math.min((int) (MAX_COLOR_VAL * val),
+                            (int) MAX_COLOR_VAL))];
+                }
             }
-        } return grayImg;
+        });
+        return grayImg;
+    }
+
+    /**
+     * Gets the byte a TYPE_BYTE_GRAY image stores for every uniform color, as setRGB converts it
+     * @return The bytes, by the uniform colors
+     */
+    private static byte[] getGrayLut(){
+        byte[] lut = new byte[(int) MAX_COLOR_VAL + 1];
+        BufferedImage pixelImg = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for (int uniformVal = 0; uniformVal < lut.length; uniformVal++){
+            pixelImg.setRGB(0, 0, new Color(uniformVal, uniformVal, uniformVal).getRGB());
+            lut[uniformVal] = (byte) pixelImg.getRaster().getSample(0, 0, 0);
+        } return lut;
     }
 
     /**
@@ -51,7 +178,7 @@ public abstract class BuffImgUtils {
      * @throws IOException In case there's a problem reading the provided file
      */
     public static BufferedImage getGrayImgFromFileName(String fileName) throws IOException {
-        float[][] grayMat = MatImgUtils.getGrayMatFromFile(fileName);
+        GrayImage grayMat = MatImgUtils.getGrayMatFromFile(fileName);
         return BuffImgUtils.getGrayImgFromMat(grayMat);
     }
 
@@ -64,6 +191,81 @@ public abstract class BuffImgUtils {
     public static void writeImg(BufferedImage img, String fileName) throws IOException {
         File curDir = new File(System.getProperty("user.dir"));
         File grayImgFile = new File(curDir, fileName);
+        PhaseTrace.EncodeEvent event = new PhaseTrace.EncodeEvent(fileName);
         ImageIO.write(img, DEFAULT_IMG_FORMAT, grayImgFile);
+        event.finish(img.getWidth(), img.getHeight());
+    }
+
+    /**
+     * Writes a gray scale image to a PNG file by the default compression level and row filter, which favor
+     * speed over size
+     * @param grayImg The image to write, of type TYPE_BYTE_GRAY
+     * @param fileName The file name of the new file to create
+     * @throws IOException In case there's a problem writing the file
+     */
+    public static void writeGrayImg(BufferedImage grayImg, String fileName) throws IOException {
+        writeGrayImg(grayImg, fileName, DEFAULT_COMPRESSION_LEVEL, DEFAULT_FILTER);
+    }
+
+    /**
+     * Writes a gray scale image to a PNG file
+     * @param grayImg The image to write, of type TYPE_BYTE_GRAY
+     * @param fileName The file name of the new file to create
+     * @param compressionLevel The deflate level, from Deflater.NO_COMPRESSION to Deflater.BEST_COMPRESSION
+     * @param filter The row filter
+     * @throws IOException In case there's a problem writing the file
+     */
+    public static void writeGrayImg(BufferedImage grayImg, String fileName, int compressionLevel,
+                                    PngWriter.Filter filter) throws IOException {
+        File curDir = new File(System.getProperty("user.dir"));
+        PhaseTrace.EncodeEvent event = new PhaseTrace.EncodeEvent(fileName);
+        PngWriter.writeGrayPng(grayImg, new File(curDir, fileName), compressionLevel, filter);
+        event.finish(grayImg.getWidth(), grayImg.getHeight());
+    }
+
+    /**
+     * Writes a gray scale image in the PNG format to a stream by the default compression level and row
+     * filter. The stream isn't closed.
+     * @param grayImg The image to write, of type TYPE_BYTE_GRAY
+     * @param out The stream to write to
+     * @param streamName The name of the stream, for tracing
+     * @throws IOException In case there's a problem writing to the stream
+     */
+    public static void writeGrayImg(BufferedImage grayImg, OutputStream out, String streamName)
+            throws IOException {
+        PhaseTrace.EncodeEvent event = new PhaseTrace.EncodeEvent(streamName);
+        PngWriter.writeGrayPng(grayImg, out, DEFAULT_COMPRESSION_LEVEL, DEFAULT_FILTER);
+        event.finish(grayImg.getWidth(), grayImg.getHeight());
+    }
+
+    /**
+     * Writes a gray scale matrix to a raw file without encoding it as an image
+     * @param grayMat The gray scale matrix to write
+     * @param fileName The file name of the new file to create
+     * @param type The type of the samples in the file
+     * @throws IOException In case there's a problem writing the file
+     */
+    public static void writeRawMat(GrayImage grayMat, String fileName, RawMatUtils.SampleType type)
+            throws IOException {
+        File curDir = new File(System.getProperty("user.dir"));
+        PhaseTrace.EncodeEvent event = new PhaseTrace.EncodeEvent(fileName);
+        RawMatUtils.writeRawMat(grayMat, new File(curDir, fileName), type);
+        event.finish(grayMat.getWidth(), grayMat.getHeight());
+    }
+
+    /**
+     * Writes a gray scale matrix in the raw format to a stream without encoding it as an image. The stream
+     * isn't closed.
+     * @param grayMat The gray scale matrix to write
+     * @param out The stream to write to
+     * @param type The type of the samples
+     * @param streamName The name of the stream, for tracing
+     * @throws IOException In case there's a problem writing to the stream
+     */
+    public static void writeRawMat(GrayImage grayMat, OutputStream out, RawMatUtils.SampleType type,
+                                   String streamName) throws IOException {
+        PhaseTrace.EncodeEvent event = new PhaseTrace.EncodeEvent(streamName);
+        RawMatUtils.writeRawMat(grayMat, out, type);
+        event.finish(grayMat.getWidth(), grayMat.getHeight());
     }
 }
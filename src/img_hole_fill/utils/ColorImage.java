@@ -0,0 +1,249 @@
+package img_hole_fill.utils;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * An image of up to four channels of the same size, gray, gray and alpha, RGB or RGBA, stored planar: a
+ * gray scale image per channel, every value scaled to [0, 1]. The algorithms filling a multi-channel image
+ * get every weight once and use it for all the channels, and an algorithm filling gray scale images can fill
+ * every channel on its own.
+ */
+public class ColorImage {
+    public static final int MAX_CHANNELS = 4;
+    private static final int RGB_CHANNELS = 3;
+    private static final int RGBA_CHANNELS = 4;
+    private static final int GRAY_ALPHA_CHANNELS = 2;
+    private static final int MAX_COMPONENT_SIZE = 16;
+    private static final int BYTE_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BANDS_PER_THREAD = 4;
+    private static final float HOLE_VAL = -1;
+
+    private final GrayImage[] channels;
+    private final int width;
+    private final int height;
+
+    /**
+     * Creates a new image with all values set to 0
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param channelsAmount The amount of channels, from 1 to MAX_CHANNELS
+     */
+    public ColorImage(int width, int height, int channelsAmount){
+        if (channelsAmount < 1 || channelsAmount > MAX_CHANNELS)
+            throw new IllegalArgumentException("The amount of channels must be between 1 and " +
+                    MAX_CHANNELS);
+        channels = new GrayImage[channelsAmount];
+        for (int c = 0; c < channelsAmount; c++) channels[c] = new GrayImage(width, height);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates an image of existing channels
+     * @param channels The channels, of the same size
+     */
+    private ColorImage(GrayImage[] channels){
+        this.channels = channels;
+        width = channels[0].getWidth();
+        height = channels[0].getHeight();
+    }
+
+    /**
+     * Creates an image from a buffered image, straight from its raster in parallel over bands of rows. An RGB
+     * or gray image of up to 16 bits per sample and without premultiplied alpha keeps its channels, every
+     * sample scaled by the largest value of its size. Any other image (indexed, premultiplied or of another
+     * color space) is converted to RGB(A) through its RGB values.
+     * @param img The buffered image
+     * @return The image
+     */
+    public static ColorImage fromImg(BufferedImage img){
+        int width = img.getWidth();
+        int height = img.getHeight();
+        ColorModel colorModel = img.getColorModel();
+        WritableRaster raster = img.getRaster();
+        if (!isRasterReadable(colorModel, raster)){
+            boolean hasAlpha = colorModel.hasAlpha();
+            ColorImage colorImg = new ColorImage(width, height, hasAlpha ? RGBA_CHANNELS : RGB_CHANNELS);
+            colorImg.forEachBand(() -> new int[width], (y, row) -> {
+                img.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++){
+                    int argb = row[x];
+                    for (int c = 0; c < RGB_CHANNELS; c++){
+                        colorImg.channels[c].set(x, y, ((argb >>> (BYTE_SHIFT * (RGB_CHANNELS - 1 - c))) &
+                                BYTE_MASK) / (float) BYTE_MASK);
+                    }
+                    if (hasAlpha) colorImg.channels[RGB_CHANNELS].set(x, y, (argb >>> (BYTE_SHIFT *
+                            RGB_CHANNELS)) / (float) BYTE_MASK);
+                }
+            });
+            return colorImg;
+        }
+        int bands = raster.getNumBands();
+        float[] maxVals = new float[bands];
+        for (int c = 0; c < bands; c++) maxVals[c] = (1 << colorModel.getComponentSize(c)) - 1;
+        ColorImage colorImg = new ColorImage(width, height, bands);
+        colorImg.forEachBand(() -> new int[width * bands], (y, row) -> {
+            raster.getPixels(0, y, width, 1, row);
+            for (int c = 0; c < bands; c++){
+                GrayImage channel = colorImg.channels[c];
+                float[] data = channel.getData();
+                int index = channel.index(0, y);
+                for (int x = 0; x < width; x++) data[index + x] = row[x * bands + c] / maxVals[c];
+            }
+        });
+        return colorImg;
+    }
+
+    /**
+     * Checks whether the channels of an image can be read from its raster as they are
+     * @param colorModel The color model of the image
+     * @param raster The raster of the image
+     * @return Whether the raster holds a sample per channel of an RGB(A) or gray (and alpha) image
+     */
+    private static boolean isRasterReadable(ColorModel colorModel, WritableRaster raster){
+        int spaceType = colorModel.getColorSpace().getType();
+        if (colorModel instanceof IndexColorModel || colorModel.isAlphaPremultiplied() ||
+                (spaceType != ColorSpace.TYPE_RGB && spaceType != ColorSpace.TYPE_GRAY) ||
+                raster.getNumBands() != colorModel.getNumComponents() || raster.getNumBands() > MAX_CHANNELS)
+            return false;
+        for (int c = 0; c < raster.getNumBands(); c++){
+            if (colorModel.getComponentSize(c) > MAX_COMPONENT_SIZE) return false;
+        } return true;
+    }
+
+    /**
+     * Converts the image to an 8 bit buffered image through its raster, in parallel over bands of rows: gray
+     * to TYPE_BYTE_GRAY, RGB to TYPE_3BYTE_BGR, and gray and alpha or RGBA to TYPE_4BYTE_ABGR. Hole values
+     * (-1) become 0 and the other values are rounded and clamped to the range of a byte. The image isn't
+     * changed.
+     * @return The buffered image
+     */
+    public BufferedImage toImg(){
+        int type = switch (channels.length) {
+            case 1 -> BufferedImage.TYPE_BYTE_GRAY;
+            case RGB_CHANNELS -> BufferedImage.TYPE_3BYTE_BGR;
+            default -> BufferedImage.TYPE_4BYTE_ABGR;
+        };
+        BufferedImage img = new BufferedImage(width, height, type);
+        WritableRaster raster = img.getRaster();
+        int bands = raster.getNumBands();
+        forEachBand(() -> new int[width * bands], (y, row) -> {
+            for (int band = 0; band < bands; band++){
+                GrayImage channel = channels[getChannelOfBand(band)];
+                float[] data = channel.getData();
+                int index = channel.index(0, y);
+                for (int x = 0; x < width; x++) row[x * bands + band] = quantize(data[index + x]);
+            }
+            raster.setPixels(0, y, width, 1, row);
+        });
+        return img;
+    }
+
+    /**
+     * Gets the channel of this image written to a band of the buffered image it's converted to, the gray
+     * channel of a gray and alpha image being written to all of red, green and blue
+     * @param band The band, red, green, blue and alpha in this order
+     * @return The channel
+     */
+    private int getChannelOfBand(int band){
+        if (channels.length != GRAY_ALPHA_CHANNELS) return band;
+        return band < RGB_CHANNELS ? 0 : 1;
+    }
+
+    /**
+     * Scales a value in [0, 1] to a byte
+     * @param val The value, -1 for a hole
+     * @return The byte, rounded and clamped
+     */
+    private static int quantize(float val){
+        if (val == HOLE_VAL) return 0;
+        return Math.max(0, Math.min(Math.round(val * BYTE_MASK), BYTE_MASK));
+    }
+
+    /**
+     * A work on a single row with a buffer of its own band of rows
+     */
+    @FunctionalInterface
+    private interface RowWork {
+
+        /**
+         * Works on a row
+         * @param y The row
+         * @param row The buffer
+         */
+        void apply(int y, int[] row);
+    }
+
+    /**
+     * Goes through the rows in parallel over bands of rows
+     * @param rowBuffer Creates the buffer of a band of rows
+     * @param work The work on every row
+     */
+    private void forEachBand(Supplier<int[]> rowBuffer, RowWork work){
+        int bandsAmount = Math.min(height, Runtime.getRuntime().availableProcessors() * BANDS_PER_THREAD);
+        IntStream.range(0, bandsAmount).parallel().forEach(band -> {
+            int[] row = rowBuffer.get();
+            for (int y = band * height / bandsAmount; y < (band + 1) * height / bandsAmount; y++){
+                work.apply(y, row);
+            }
+        });
+    }
+
+    /**
+     * Gets a channel
+     * @param c The index of the channel, red, green, blue and alpha in this order for an RGBA image
+     * @return The channel, shared with this image
+     */
+    public GrayImage getChannel(int c){
+        return channels[c];
+    }
+
+    /**
+     * Gets all the channels
+     * @return The channels, shared with this image
+     */
+    public GrayImage[] getChannels(){
+        return channels.clone();
+    }
+
+    /**
+     * Gets the amount of channels
+     * @return The amount of channels
+     */
+    public int getChannelsAmount(){
+        return channels.length;
+    }
+
+    /**
+     * Gets the width of the image
+     * @return The width
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Gets the height of the image
+     * @return The height
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Copies this image to a new image
+     * @return The copy
+     */
+    public ColorImage copy(){
+        GrayImage[] copies = new GrayImage[channels.length];
+        for (int c = 0; c < channels.length; c++) copies[c] = channels[c].copy();
+        return new ColorImage(copies);
+    }
+}
@@ -0,0 +1,57 @@
+package img_hole_fill.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Utilities for splitting a hole into its connected components
+ */
+public abstract class ComponentUtils {
+
+    /**
+     * Labels the connected components of a hole by a breadth first search from every pixel not labeled yet
+     * @param holeSet The pixels in the hole
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4), this should match the
+     *                         connectivity the boundary is computed by, so that no boundary pixel of one
+     *                         component is a hole pixel of another
+     * @return The components, the largest first
+     */
+    public static ArrayList<PixSet> getComponents(PixSet holeSet, boolean isEightConnected){
+        ArrayList<PixSet> components = new ArrayList<>();
+        PixSet unlabeled = new PixSet(holeSet);
+        int connectedAmount = PixConnectUtils.getConnectedAmount(isEightConnected);
+        long neighbour;
+        while (!unlabeled.isEmpty()){
+            long seed = unlabeled.get(unlabeled.size() - 1);
+            unlabeled.remove(seed);
+            PixSet component = new PixSet();
+            component.add(seed);
+            for (int i = 0; i < component.size(); i++){
+                for (int j = 0; j < connectedAmount; j++){
+                    neighbour = PixConnectUtils.getConnectedPix(component.get(i), j);
+                    if (unlabeled.remove(neighbour)) component.add(neighbour);
+                }
+            }
+            components.add(component);
+        }
+        components.sort(Comparator.comparingInt(PixSet::size).reversed());
+        return components;
+    }
+
+    /**
+     * Gets the bounding box of a set of pixels
+     * @param pixSet The pixels, not empty
+     * @return The smallest x, the smallest y, the largest x and the largest y, in this order
+     */
+    public static int[] getBoundingBox(PixSet pixSet){
+        int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        long pix;
+        for (int i = 0; i < pixSet.size(); i++){
+            pix = pixSet.get(i);
+            box[0] = Math.min(box[0], PixSet.getX(pix));
+            box[1] = Math.min(box[1], PixSet.getY(pix));
+            box[2] = Math.max(box[2], PixSet.getX(pix));
+            box[3] = Math.max(box[3], PixSet.getY(pix));
+        } return box;
+    }
+}
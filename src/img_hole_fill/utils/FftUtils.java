@@ -0,0 +1,143 @@
+package img_hole_fill.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A pure Java fast Fourier transform, in one dimension and in two dimensions over row-major arrays
+ */
+public abstract class FftUtils {
+
+    /**
+     * Gets the smallest power of 2 that is not smaller than the given number
+     * @param num The number
+     * @return The power of 2
+     */
+    public static int nextPowerOf2(int num){
+        if (num > 1 << (Integer.SIZE - 2)) throw new IllegalArgumentException("Too large for an FFT: " + num);
+        return num <= 1 ? 1 : Integer.highestOneBit(num - 1) << 1;
+    }
+
+    /**
+     * Gets the table of the twiddle factors of a transform, cos(2 pi k / n) and sin(2 pi k / n) for every k
+     * below n / 2. Each one is calculated directly, so no error accumulates along the table.
+     * @param length The length of the transform, a power of 2
+     * @return The table, the cosines in the first half and the sines in the second
+     */
+    public static double[] getTwiddles(int length){
+        int half = length / 2;
+        double[] twiddles = new double[Math.max(2 * half, 1)];
+        for (int k = 0; k < half; k++){
+            double angle = 2 * Math.PI * k / length;
+            twiddles[k] = Math.cos(angle);
+            twiddles[half + k] = Math.sin(angle);
+        } return twiddles;
+    }
+
+    /**
+     * Transforms a complex sequence in place, using the iterative radix-2 algorithm
+     * @param re The real parts
+     * @param im The imaginary parts
+     * @param offset The index of the first element of the sequence
+     * @param step The distance between consecutive elements of the sequence
+     * @param length The length of the sequence, a power of 2
+     * @param twiddles The twiddle factors of the length, as given by getTwiddles
+     * @param isInverse Whether or not to apply the inverse transform, which is also scaled by 1 / length
+     */
+    public static void fft(double[] re, double[] im, int offset, int step, int length, double[] twiddles,
+                           boolean isInverse){
+        int half = length / 2;
+        for (int i = 1, j = 0; i < length; i++){
+            int bit = half;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j |= bit;
+            if (i < j){
+                swap(re, offset + i * step, offset + j * step);
+                swap(im, offset + i * step, offset + j * step);
+            }
+        }
+        double sign = isInverse ? 1 : -1;
+        for (int size = 2; size <= length; size <<= 1){
+            int halfSize = size / 2;
+            int tableStep = length / size;
+            for (int start = 0; start < length; start += size){
+                for (int k = 0; k < halfSize; k++){
+                    double wRe = twiddles[k * tableStep];
+                    double wIm = sign * twiddles[half + k * tableStep];
+                    int a = offset + (start + k) * step;
+                    int b = a + halfSize * step;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+        if (isInverse){
+            for (int i = 0; i < length; i++){
+                re[offset + i * step] /= length;
+                im[offset + i * step] /= length;
+            }
+        }
+    }
+
+    /**
+     * Transforms a complex matrix stored row by row in place, transforming the rows and then the columns,
+     * each in parallel on the given pool, or sequentially without one
+     * @param re The real parts
+     * @param im The imaginary parts
+     * @param width The amount of columns, a power of 2
+     * @param height The amount of rows, a power of 2
+     * @param isInverse Whether or not to apply the inverse transform
+     * @param pool The pool to run the transforms of the rows and the columns on, null to run them on the
+     *             current thread
+     */
+    public static void fft2D(double[] re, double[] im, int width, int height, boolean isInverse,
+                             ForkJoinPool pool){
+        double[] rowTwiddles = getTwiddles(width);
+        double[] colTwiddles = getTwiddles(height);
+        Runnable transform = () -> {
+            getRange(height, pool).forEach(y -> fft(re, im, y * width, 1, width, rowTwiddles, isInverse));
+            getRange(width, pool).forEach(x -> {
+                double[] colRe = new double[height];
+                double[] colIm = new double[height];
+                for (int y = 0; y < height; y++){
+                    colRe[y] = re[y * width + x];
+                    colIm[y] = im[y * width + x];
+                }
+                fft(colRe, colIm, 0, 1, height, colTwiddles, isInverse);
+                for (int y = 0; y < height; y++){
+                    re[y * width + x] = colRe[y];
+                    im[y * width + x] = colIm[y];
+                }
+            });
+        };
+        if (pool == null) transform.run();
+        else pool.submit(transform).join();
+    }
+
+    /**
+     * Gets the range of the indices of the rows or the columns to transform
+     * @param length The amount of rows or columns
+     * @param pool The pool the transforms run on, null if they run on the current thread
+     * @return The range, parallel if there's a pool
+     */
+    private static IntStream getRange(int length, ForkJoinPool pool){
+        IntStream range = IntStream.range(0, length);
+        return pool == null ? range : range.parallel();
+    }
+
+    /**
+     * Swaps two elements of an array
+     * @param arr The array
+     * @param i The index of the first element
+     * @param j The index of the second element
+     */
+    private static void swap(double[] arr, int i, int j){
+        double tmp = arr[i];
+        arr[i] = arr[j];
+        arr[j] = tmp;
+    }
+}
@@ -3,6 +3,7 @@ package img_hole_fill.utils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * General utilities to use throughout the process of filling a hole in an image
@@ -18,6 +19,15 @@ public abstract class GeneralUtils {
         targetSet.removeAll(removeSet);
     }
 
+    /**
+     * Removes one set from the other
+     * @param targetSet The set in interest to remove pixels from it
+     * @param removeSet The set of pixels to remove from the target set
+     */
+    public static void applySetsDiff(PixSet targetSet, PixSet removeSet){
+        targetSet.removeAll(removeSet);
+    }
+
     /**
      * Creates an array list of IntPairs out of a hash set and sorts it
      * @param sourceSet The set to sort
@@ -29,6 +39,31 @@ public abstract class GeneralUtils {
         return lst;
     }
 
+    /**
+     * Creates an array of packed pixels out of a pixel set and sorts it
+     * @param sourceSet The set to sort
+     * @return The sorted array
+     */
+    public static long[] getSortedLst(PixSet sourceSet){
+        return sourceSet.toSortedArray();
+    }
+
+    /**
+     * Shuffles an array of packed pixels in place
+     * @param pixArr The array to shuffle
+     */
+    public static void shuffle(long[] pixArr){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long tmp;
+        int j;
+        for (int i = pixArr.length - 1; i > 0; i--){
+            j = random.nextInt(i + 1);
+            tmp = pixArr[i];
+            pixArr[i] = pixArr[j];
+            pixArr[j] = tmp;
+        }
+    }
+
     /**
      * Gets the log in base 2 of a given number
      * @param num The number to gets its log
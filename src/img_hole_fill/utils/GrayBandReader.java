@@ -0,0 +1,180 @@
+package img_hole_fill.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Reads a gray scale image a band of rows at a time from the top, in a single pass over its file, so that an
+ * image too large to hold in memory is decoded exactly once. A non-interlaced PNG file is inflated row by
+ * row into a band of the same type ImageIO decodes the whole file to, and converted like any decoded image,
+ * so the values are the same as those of getGrayMatFromFile, and only a band is held in memory. A raw gray
+ * scale matrix file is mapped band by band. Any other image file is decoded whole, once, and handed out band
+ * by band.
+ */
+public class GrayBandReader implements Closeable {
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private final PhaseTrace.DecodeEvent event;
+    private final PngRowDecoder pngDecoder;
+    private final ImageTypeSpecifier pngType;
+    private final File rawFile;
+    private final GrayImage grayMat;
+    private int nextRow;
+
+    /**
+     * Opens an image file for reading its bands
+     * @param fileName The file name of the image in the current working directory
+     * @param bandHeight The amount of rows in a band
+     * @throws IOException In case there's a problem reading the image file
+     */
+    public GrayBandReader(String fileName, int bandHeight) throws IOException {
+        if (bandHeight < 1) throw new IllegalArgumentException("The band height must be positive");
+        this.bandHeight = bandHeight;
+        File file = new File(System.getProperty("user.dir"), fileName);
+        event = new PhaseTrace.DecodeEvent(fileName);
+        if (RawMatUtils.isRawFile(fileName)) {
+            Dimension size = RawMatUtils.getRawMatSize(file);
+            width = size.width;
+            height = size.height;
+            pngDecoder = null;
+            pngType = null;
+            rawFile = file;
+            grayMat = null;
+            return;
+        }
+        rawFile = null;
+        PngRowDecoder decoder = PngRowDecoder.open(file);
+        ImageTypeSpecifier type = null;
+        if (decoder != null) {
+            try {
+                type = getImgType(file);
+            } finally {
+                if (!isMatchingType(decoder, type)) {
+                    decoder.close();
+                    decoder = null;
+                }
+            }
+        }
+        pngDecoder = decoder;
+        pngType = type;
+        if (decoder != null) {
+            width = decoder.getWidth();
+            height = decoder.getHeight();
+            grayMat = null;
+        } else {
+            grayMat = MatImgUtils.getGrayMatFromImg(BuffImgUtils.getBufferedImg(fileName));
+            width = grayMat.getWidth();
+            height = grayMat.getHeight();
+        }
+    }
+
+    /**
+     * Gets the type of the image ImageIO decodes an image file to
+     * @param file The image file
+     * @return The type, or null if there's no reader for the file
+     * @throws IOException In case there's a problem reading the image file
+     */
+    private static ImageTypeSpecifier getImgType(File file) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                return types.hasNext() ? types.next() : null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the samples of the rows of a PNG file fit the raster of the type ImageIO decodes it to,
+     * a band and a sample size per channel. Otherwise ImageIO expands the pixels on its own (as it does for
+     * a transparent color), and the file is decoded whole.
+     * @param decoder The decoder of the rows
+     * @param type The type of the image, null if unknown
+     * @return True iff the samples fit the raster
+     */
+    private static boolean isMatchingType(PngRowDecoder decoder, ImageTypeSpecifier type) {
+        if (type == null) return false;
+        SampleModel sampleModel = type.getSampleModel();
+        if (sampleModel.getNumBands() != decoder.getChannels()) return false;
+        for (int band = 0; band < sampleModel.getNumBands(); band++) {
+            if (sampleModel.getSampleSize(band) != decoder.getBitDepth()) return false;
+        } return true;
+    }
+
+    /**
+     * Gets the width of the image
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image
+     * @return The height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the index of the first row of the next band
+     * @return The row, the height of the image once all the bands were read
+     */
+    public int getNextRow() {
+        return nextRow;
+    }
+
+    /**
+     * Reads the next band of rows
+     * @return The gray scale image of the band, as wide as the image and of the band height or less for the
+     * last band, or null once all the bands were read
+     * @throws IOException In case there's a problem reading the image file
+     */
+    public GrayImage nextBand() throws IOException {
+        if (nextRow == height) return null;
+        int rows = Math.min(bandHeight, height - nextRow);
+        GrayImage band;
+        if (rawFile != null) band = RawMatUtils.readRawMat(rawFile, new Rectangle(0, nextRow, width, rows));
+        else if (grayMat != null) band = grayMat.view(0, nextRow, width, rows);
+        else {
+            BufferedImage bandImg = pngType.createBufferedImage(width, rows);
+            WritableRaster raster = bandImg.getRaster();
+            int[] samples = new int[width * pngDecoder.getChannels()];
+            for (int y = 0; y < rows; y++) {
+                pngDecoder.readRow(samples);
+                raster.setPixels(0, y, width, 1, samples);
+            }
+            band = MatImgUtils.getGrayMatFromImg(bandImg);
+        }
+        nextRow += rows;
+        return band;
+    }
+
+    /**
+     * Closes the image file, tracing the decoding of the image
+     * @throws IOException In case there's a problem closing the image file
+     */
+    @Override
+    public void close() throws IOException {
+        if (pngDecoder != null) pngDecoder.close();
+        event.finish(width, height);
+    }
+}
@@ -0,0 +1,191 @@
+package img_hole_fill.utils;
+
+/**
+ * A gray scale image stored in a single contiguous float array, row after row. A pixel (x, y) is found at
+ * offset + y * stride + x, so scanning the image row by row reads the array sequentially. An image may also
+ * be a view of a rectangle inside a larger image, sharing its array.
+ */
+public class GrayImage {
+    private final float[] data;
+    private final int offset;
+    private final int width;
+    private final int height;
+    private final int stride;
+
+    /**
+     * Creates a new image with all pixels set to 0
+     * @param width The width of the image
+     * @param height The height of the image
+     */
+    public GrayImage(int width, int height){
+        this(new float[Math.multiplyExact(width, height)], 0, width, height, width);
+    }
+
+    /**
+     * Creates an image over an existing array
+     * @param data The array holding the pixels
+     * @param offset The index of the pixel (0, 0) in the array
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param stride The distance in the array between two vertically adjacent pixels
+     */
+    public GrayImage(float[] data, int offset, int width, int height, int stride){
+        if (width < 0 || height < 0 || stride < width || offset < 0 ||
+                (height > 0 && offset + (long) (height - 1) * stride + width > data.length))
+            throw new IllegalArgumentException("The image does not fit in the given array");
+        this.data = data;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    /**
+     * Creates an image from a matrix indexed by x and then by y
+     * @param grayMat The matrix
+     * @return The new image
+     */
+    public static GrayImage fromMat(float[][] grayMat){
+        GrayImage img = new GrayImage(grayMat.length, grayMat[0].length);
+        for (int y = 0; y < img.height; y++){
+            int rowStart = y * img.stride;
+            for (int x = 0; x < img.width; x++){
+                img.data[rowStart + x] = grayMat[x][y];
+            }
+        } return img;
+    }
+
+    /**
+     * Copies this image to a matrix indexed by x and then by y
+     * @return The matrix
+     */
+    public float[][] toMat(){
+        float[][] grayMat = new float[width][height];
+        copyToMat(grayMat);
+        return grayMat;
+    }
+
+    /**
+     * Copies this image into an existing matrix indexed by x and then by y
+     * @param grayMat The matrix to copy to, at least as large as this image
+     */
+    public void copyToMat(float[][] grayMat){
+        for (int y = 0; y < height; y++){
+            int rowStart = offset + y * stride;
+            for (int x = 0; x < width; x++){
+                grayMat[x][y] = data[rowStart + x];
+            }
+        }
+    }
+
+    /**
+     * Getter for the width
+     * @return The width of this image
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Getter for the height
+     * @return The height of this image
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Getter for the stride
+     * @return The distance in the array between two vertically adjacent pixels
+     */
+    public int getStride(){
+        return stride;
+    }
+
+    /**
+     * Getter for the offset
+     * @return The index of the pixel (0, 0) in the array
+     */
+    public int getOffset(){
+        return offset;
+    }
+
+    /**
+     * Getter for the underlying array, shared with this image and with any view of it
+     * @return The array holding the pixels
+     */
+    public float[] getData(){
+        return data;
+    }
+
+    /**
+     * Checks whether or not a pixel is inside this image
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return True iff the pixel is inside this image
+     */
+    public boolean contains(int x, int y){
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Gets the index of a pixel in the underlying array
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The index of the pixel
+     * @throws IndexOutOfBoundsException In case the pixel is outside this image
+     */
+    public int index(int x, int y){
+        if (!contains(x, y))
+            throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y + ") is outside a " + width + "x" +
+                    height + " image");
+        return offset + y * stride + x;
+    }
+
+    /**
+     * Gets the value of a pixel
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The value of the pixel
+     */
+    public float get(int x, int y){
+        return data[index(x, y)];
+    }
+
+    /**
+     * Sets the value of a pixel
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param val The new value of the pixel
+     */
+    public void set(int x, int y, float val){
+        data[index(x, y)] = val;
+    }
+
+    /**
+     * Gets a view of a rectangle inside this image. The view shares the array of this image, so writing to
+     * one is seen by the other, and its pixels are indexed relative to the corner of the rectangle.
+     * @param x The x coordinate of the corner of the rectangle
+     * @param y The y coordinate of the corner of the rectangle
+     * @param viewWidth The width of the rectangle
+     * @param viewHeight The height of the rectangle
+     * @return The view
+     */
+    public GrayImage view(int x, int y, int viewWidth, int viewHeight){
+        if (x < 0 || y < 0 || viewWidth < 0 || viewHeight < 0 || x + viewWidth > width ||
+                y + viewHeight > height)
+            throw new IndexOutOfBoundsException("The view is outside the image");
+        return new GrayImage(data, offset + y * stride + x, viewWidth, viewHeight, stride);
+    }
+
+    /**
+     * Copies this image to a new contiguous image
+     * @return The copy
+     */
+    public GrayImage copy(){
+        GrayImage copy = new GrayImage(width, height);
+        for (int y = 0; y < height; y++){
+            System.arraycopy(data, offset + y * stride, copy.data, y * width, width);
+        } return copy;
+    }
+}
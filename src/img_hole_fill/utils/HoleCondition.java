@@ -7,10 +7,34 @@ public interface HoleCondition {
 
     /**
      * Determine if the given pixel is a hole
-     * @param grayMat The matrix of the values of the pixels in a grayscale image
+     * @param grayMat The image of the values of the pixels in grayscale
      * @param x The x value of the pixel to check
      * @param y The y value of the pixel to check
      * @return Whether or not this pixel is considered part of the hole
      */
-    boolean isHole(float[][] grayMat, int x, int y);
+    boolean isHole(GrayImage grayMat, int x, int y);
+
+    /**
+     * Determine the holes of a whole row, a bit per pixel: the bit x % 64 of the word x / 64 of the row is
+     * set iff the pixel x is a hole. Override this with a loop over the underlying array of the image in
+     * order to avoid a call per pixel.
+     * @param grayMat The image of the values of the pixels in grayscale
+     * @param y The y value of the row to check
+     * @param words The words to write the row to, overwriting them
+     * @param wordsOffset The index of the first word of the row
+     * @return The amount of holes in the row
+     */
+    default int getRowHoles(GrayImage grayMat, int y, long[] words, int wordsOffset){
+        int width = grayMat.getWidth();
+        int count = 0;
+        long word;
+        for (int wordX = 0; wordX < width; wordX += Long.SIZE){
+            word = 0;
+            for (int i = 0; i < Math.min(Long.SIZE, width - wordX); i++){
+                if (isHole(grayMat, wordX + i, y)) word |= 1L << i;
+            }
+            words[wordsOffset + wordX / Long.SIZE] = word;
+            count += Long.bitCount(word);
+        } return count;
+    }
 }
@@ -3,21 +3,45 @@ package img_hole_fill.utils;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.stream.IntStream;
 
 /**
  * Various utilities for handling holes
  */
 public abstract class HoleUtils {
     private static final int HOLE_RGB_VAL = 0;
+    private static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * The result of scanning an image for its holes
+     * @param holeMask The holes, a mask of the whole image
+     * @param rowCounts The amount of holes in every row
+     * @param boundingBox The bounding box of the holes, {minX, minY, maxX, maxY}, the same as
+     *                    ComponentUtils.getBoundingBox, so minX > maxX if there are no holes
+     */
+    public record HoleScan(BitMask holeMask, int[] rowCounts, int[] boundingBox) {}
 
     /**
      * Gets a "holed matrix" from a "complete" one by given hole pixels
      * @param grayMat The "complete" matrix
      * @param holeSet The holes to set in the matrix
      */
-    public static void setHolesInMat(float[][] grayMat, HashSet<IntPair> holeSet){
+    public static void setHolesInMat(GrayImage grayMat, HashSet<IntPair> holeSet){
         for (IntPair hole : holeSet){
-            grayMat[hole.getX()][hole.getY()] = StrictHoleCondition.HOLE_MAT_VAL;
+            grayMat.set(hole.getX(), hole.getY(), StrictHoleCondition.HOLE_MAT_VAL);
+        }
+    }
+
+    /**
+     * Gets a "holed matrix" from a "complete" one by given hole pixels
+     * @param grayMat The "complete" matrix
+     * @param holeSet The holes to set in the matrix
+     */
+    public static void setHolesInMat(GrayImage grayMat, PixSet holeSet){
+        long hole;
+        for (int i = 0; i < holeSet.size(); i++){
+            hole = holeSet.get(i);
+            grayMat.set(PixSet.getX(hole), PixSet.getY(hole), StrictHoleCondition.HOLE_MAT_VAL);
         }
     }
 
@@ -32,15 +56,28 @@ public abstract class HoleUtils {
         }
     }
 
+    /**
+     * Merges a subject image with a hole
+     * @param img The subject image
+     * @param holeSet The hole
+     */
+    public static void setHolesInImg(BufferedImage img, PixSet holeSet){
+        long hole;
+        for (int i = 0; i < holeSet.size(); i++){
+            hole = holeSet.get(i);
+            img.setRGB(PixSet.getX(hole), PixSet.getY(hole), HOLE_RGB_VAL);
+        }
+    }
+
     /**
      * Gets a "holed matrix" from a "complete" one using a hole file
      * @param holeFileName The file name of the hole image
      * @param grayImgMat The matrix to set the holes in
      * @throws IOException In case there's a problem reading the hole file
      */
-    public static void setHolesInMatByHoleFile(String holeFileName, float[][] grayImgMat)
+    public static void setHolesInMatByHoleFile(String holeFileName, GrayImage grayImgMat)
             throws IOException {
-        HashSet<IntPair> holeSet = getHoleSetFromFile(holeFileName);
+        PixSet holeSet = getHoleSetFromFile(holeFileName);
         setHolesInMat(grayImgMat, holeSet);
     }
 
@@ -50,29 +87,69 @@ public abstract class HoleUtils {
      * @return The pixels of the hole
      * @throws IOException In case there's a problem reading the hole image
      */
-    public static HashSet<IntPair> getHoleSetFromFile(String holeFileName)
+    public static PixSet getHoleSetFromFile(String holeFileName)
             throws IOException {
-        float[][] grayHoleMat = MatImgUtils.getGrayMatFromFile(holeFileName);
+        GrayImage grayHoleMat = MatImgUtils.getGrayMatFromFile(holeFileName);
         return HoleUtils.getHoleSetFromMat(grayHoleMat, ThresholdHoleCondition.getInstance());
     }
 
     /**
-     * Extracts the set of holes from a given matrix representing an image with a hole in it.
+     * Extracts the set of holes from a given matrix representing an image with a hole in it, row after row
      * @param grayMat The matrix representing the image
      * @param condition The condition for classifying a pixel as a hole
      * @return The set of holes
      */
-    public static HashSet<IntPair> getHoleSetFromMat(float[][] grayMat, HoleCondition condition) {
-        int rowsAmount = grayMat.length;
-        int colsAmount = grayMat[0].length;
-        HashSet<IntPair> holeSet = new HashSet<>();
-        for (int i = 0; i < rowsAmount; i++) {
-            for (int j = 0; j < colsAmount; j++) {
-                if (condition.isHole(grayMat, i, j)){
-                    holeSet.add(new IntPair(i, j));
-                }
+    public static PixSet getHoleSetFromMat(GrayImage grayMat, HoleCondition condition) {
+        PhaseTrace.HoleDetectionEvent event = new PhaseTrace.HoleDetectionEvent();
+        PixSet holeSet = scanHoles(grayMat, condition).holeMask().toPixSet();
+        event.finish(grayMat, holeSet);
+        return holeSet;
+    }
+
+    /**
+     * Scans a matrix representing an image with a hole in it for its holes, in parallel over bands of rows,
+     * a row at a time through HoleCondition.getRowHoles
+     * @param grayMat The matrix representing the image
+     * @param condition The condition for classifying a pixel as a hole
+     * @return The mask of the holes, the amount of holes in every row and the bounding box of the holes
+     */
+    public static HoleScan scanHoles(GrayImage grayMat, HoleCondition condition) {
+        int width = grayMat.getWidth();
+        int height = grayMat.getHeight();
+        BitMask holeMask = new BitMask(width, height);
+        long[] words = holeMask.getWords();
+        int wordsPerRow = holeMask.getWordsPerRow();
+        int[] rowCounts = new int[height];
+        int bandsAmount = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors() *
+                BANDS_PER_THREAD));
+        int[][] bandBoxes = new int[bandsAmount][];
+        IntStream.range(0, bandsAmount).parallel().forEach(band -> {
+            int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            int firstWord;
+            int lastWord;
+            for (int y = band * height / bandsAmount; y < (band + 1) * height / bandsAmount; y++){
+                rowCounts[y] = condition.getRowHoles(grayMat, y, words, y * wordsPerRow);
+                if (rowCounts[y] == 0) continue;
+                firstWord = y * wordsPerRow;
+                while (words[firstWord] == 0) firstWord++;
+                lastWord = (y + 1) * wordsPerRow - 1;
+                while (words[lastWord] == 0) lastWord--;
+                box[0] = Math.min(box[0], (firstWord - y * wordsPerRow) * Long.SIZE +
+                        Long.numberOfTrailingZeros(words[firstWord]));
+                box[1] = Math.min(box[1], y);
+                box[2] = Math.max(box[2], (lastWord - y * wordsPerRow + 1) * Long.SIZE - 1 -
+                        Long.numberOfLeadingZeros(words[lastWord]));
+                box[3] = Math.max(box[3], y);
             }
-        } return holeSet;
+            bandBoxes[band] = box;
+        });
+        int[] boundingBox = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (int[] box : bandBoxes){
+            boundingBox[0] = Math.min(boundingBox[0], box[0]);
+            boundingBox[1] = Math.min(boundingBox[1], box[1]);
+            boundingBox[2] = Math.max(boundingBox[2], box[2]);
+            boundingBox[3] = Math.max(boundingBox[3], box[3]);
+        } return new HoleScan(holeMask, rowCounts, boundingBox);
     }
 
     /**
@@ -82,9 +159,9 @@ public abstract class HoleUtils {
      * @return The gray scale matrix
      * @throws IOException In case there's a problem reading either one of the given files
      */
-    public static float[][] getHoledGrayMatFromFile(String imgFileName, String holeFileName)
+    public static GrayImage getHoledGrayMatFromFile(String imgFileName, String holeFileName)
             throws IOException{
-        float[][] grayImgMat = MatImgUtils.getGrayMatFromFile(imgFileName);
+        GrayImage grayImgMat = MatImgUtils.getGrayMatFromFile(imgFileName);
         HoleUtils.setHolesInMatByHoleFile(holeFileName, grayImgMat);
         return grayImgMat;
     }
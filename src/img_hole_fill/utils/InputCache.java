@@ -0,0 +1,223 @@
+package img_hole_fill.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded images and of the hole sets extracted from hole files, shared by all the runs within
+ * the process. A file is identified by its path, its modification time and its size, so a changed file is
+ * read again. The cache is bounded by an estimate of the memory its entries take, evicting the least
+ * recently used entries first. The algorithms change the images and the sets they are given, so only
+ * copies of the cached entries are ever handed out.
+ */
+public class InputCache {
+    private static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    /**
+     * An estimate of the memory a pixel in a pixel set takes: the packed pixel and its share of the table
+     */
+    private static final int BYTES_PER_PIX = 16;
+    private static final InputCache instance = new InputCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * The entries, from the least recently used to the most recently used
+     */
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long curBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * The pixels of a hole and of its boundary
+     * @param holeSet The pixels in the hole
+     * @param boundarySet The pixels in the boundary
+     */
+    public record HoleSets(PixSet holeSet, PixSet boundarySet) {}
+
+    /**
+     * The key of a decoded image
+     * @param path The absolute path of the file
+     * @param lastModified The modification time of the file
+     * @param size The size of the file
+     */
+    private record ImgKey(String path, long lastModified, long size) {}
+
+    /**
+     * The key of the hole sets of a hole file
+     * @param imgKey The key of the hole file
+     * @param condition The condition for classifying a pixel as a hole
+     * @param isEightConnected Whether the boundary is 8-connected or 4-connected
+     */
+    private record HoleKey(ImgKey imgKey, HoleCondition condition, boolean isEightConnected) {}
+
+    /**
+     * A cached value with the estimate of the memory it takes
+     * @param value The cached value
+     * @param bytes The estimate of the memory the value takes
+     */
+    private record Entry(Object value, long bytes) {}
+
+    /**
+     * Gets the instance shared by all the runs
+     * @return The instance of this class
+     */
+    public static InputCache getInstance(){
+        return instance;
+    }
+
+    /**
+     * Create a cache
+     * @param maxBytes The largest estimate of the memory the entries may take
+     */
+    public InputCache(long maxBytes){
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a copy of the gray scale image of an image file, decoding it only if it isn't cached
+     * @param fileName The file name of the image in the current working directory
+     * @return A copy of the gray scale image
+     * @throws IOException In case there's a problem reading the image file
+     */
+    public GrayImage getGrayMat(String fileName) throws IOException {
+        ImgKey key = getImgKey(fileName);
+        GrayImage grayMat = (GrayImage) get(key);
+        if (grayMat == null){
+            grayMat = MatImgUtils.getGrayMatFromFile(fileName);
+            put(key, grayMat, (long) grayMat.getWidth() * grayMat.getHeight() * Float.BYTES);
+        } return grayMat.copy();
+    }
+
+    /**
+     * Gets copies of the hole set of a hole file and of its boundary, extracting them only if they aren't
+     * cached
+     * @param holeFileName The file name of the hole image in the current working directory
+     * @param condition The condition for classifying a pixel as a hole
+     * @param isEightConnected Whether or not to compute the 8-connected boundary (the default is 4)
+     * @return Copies of the hole set and of the boundary set
+     * @throws IOException In case there's a problem reading the hole file
+     */
+    public HoleSets getHoleSets(String holeFileName, HoleCondition condition, boolean isEightConnected)
+            throws IOException {
+        HoleKey key = new HoleKey(getImgKey(holeFileName), condition, isEightConnected);
+        HoleSets holeSets = (HoleSets) get(key);
+        if (holeSets == null){
+            GrayImage grayHoleMat = MatImgUtils.getGrayMatFromFile(holeFileName);
+            PixSet holeSet = HoleUtils.getHoleSetFromMat(grayHoleMat, condition);
+            holeSets = new HoleSets(holeSet, BoundaryUtils.getBoundarySet(holeSet, isEightConnected));
+            put(key, holeSets, (long) (holeSet.size() + holeSets.boundarySet().size()) * BYTES_PER_PIX);
+        } return new HoleSets(new PixSet(holeSets.holeSet()), new PixSet(holeSets.boundarySet()));
+    }
+
+    /**
+     * Gets the key of a file
+     * @param fileName The file name in the current working directory
+     * @return The key
+     * @throws IOException In case there's a problem reading the attributes of the file
+     */
+    private static ImgKey getImgKey(String fileName) throws IOException {
+        File file = new File(System.getProperty("user.dir"), fileName).getAbsoluteFile();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return new ImgKey(file.getPath(), attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    /**
+     * Gets a cached value, counting a hit or a miss
+     * @param key The key of the value
+     * @return The value, or null if it isn't cached
+     */
+    private synchronized Object get(Object key){
+        Entry entry = entries.get(key);
+        if (entry == null){
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * Caches a value, evicting the least recently used values as long as the cache is too large. A value
+     * larger than the whole cache isn't cached at all.
+     * @param key The key of the value
+     * @param value The value
+     * @param bytes The estimate of the memory the value takes
+     */
+    private synchronized void put(Object key, Object value, long bytes){
+        if (bytes > maxBytes) return;
+        Entry prevEntry = entries.put(key, new Entry(value, bytes));
+        if (prevEntry != null) curBytes -= prevEntry.bytes();
+        curBytes += bytes;
+        evict();
+    }
+
+    /**
+     * Evicts the least recently used values as long as the cache is too large
+     */
+    private void evict(){
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        while (curBytes > maxBytes && iterator.hasNext()){
+            curBytes -= iterator.next().getValue().bytes();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Sets the largest estimate of the memory the entries may take, evicting entries if needed
+     * @param maxBytes The largest estimate of the memory
+     */
+    public synchronized void setMaxBytes(long maxBytes){
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Removes all the entries, keeping the statistics
+     */
+    public synchronized void clear(){
+        entries.clear();
+        curBytes = 0;
+    }
+
+    /**
+     * Gets the amount of lookups that found their value cached
+     * @return The amount of hits
+     */
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    /**
+     * Gets the amount of lookups that didn't find their value cached
+     * @return The amount of misses
+     */
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    /**
+     * Gets the amount of entries evicted to keep the cache within its bound
+     * @return The amount of evictions
+     */
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    /**
+     * Gets a summary of the state of the cache
+     * @return The summary
+     */
+    @Override
+    public synchronized String toString(){
+        return String.format("InputCache: %d entries, %d/%d bytes, %d hits, %d misses, %d evictions",
+                entries.size(), curBytes, maxBytes, hits, misses, evictions);
+    }
+}
@@ -1,7 +1,5 @@
 package img_hole_fill.utils;
 
-import java.util.Objects;
-
 /**
  * Represents a point in the Cartesian plane
  */
@@ -42,7 +40,7 @@ public record IntPair(int x, int y) implements Comparable<IntPair>{
      */
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return 31 * x + y;
     }
 
     /**
@@ -1,11 +1,15 @@
 package img_hole_fill.utils;
 
+import javax.imageio.ImageIO;
 import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.awt.image.*;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.stream.IntStream;
 
 /**
- *
+ * Utilities for converting images to gray scale matrices
  */
 public abstract class MatImgUtils {
 //    private static final float RED_FACTOR = (float) 0.299;
@@ -14,35 +18,52 @@ public abstract class MatImgUtils {
     private static final float RED_FACTOR = (float) 0.3333;
     private static final float GREEN_FACTOR = (float) 0.3333;
     private static final float BLUE_FACTOR = (float) 0.3333;
+    private static final int RGB_CHANNELS = 3;
+    private static final int CHANNEL_BITS = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
 
     /**
-     * Gets the RGB matrix (by color objects) of a given buffered image
+     * The largest amount of bits in a pixel decoded through a table of all the pixel values
+     */
+    private static final int MAX_TABLE_BITS = 16;
+
+    /**
+     * The amount of row bands per available processor the decoding is split into
+     */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * Gets the RGB matrix (by color objects) of a given buffered image, indexed by row (y) and then by
+     * column (x) so that it is filled in the order of the raster
      * @param img The image
      * @return The matrix
      */
     public static Color[][] getColorMatFromImg(BufferedImage img) {
         Color[][] colorMat = new Color[img.getHeight()][img.getWidth()];
-        for (int i=0; i<img.getHeight(); i++){
-            for (int j=0; j<img.getWidth(); j++){
-                colorMat[i][j] = new Color(img.getRGB(i, j));
+        for (int y=0; y<img.getHeight(); y++){
+            for (int x=0; x<img.getWidth(); x++){
+                colorMat[y][x] = new Color(img.getRGB(x, y));
             }
         } return colorMat;
     }
 
     /**
-     * Gets a gray scale matrix from a colored one
-     * @param colorMat The colored matrix
-     * @return The gray scale matrix
+     * Gets a gray scale image from a colored matrix
+     * @param colorMat The colored matrix, indexed by row (y) and then by column (x)
+     * @return The gray scale image
      */
-    public static float[][] getGrayMatFromColorMat(Color[][] colorMat){
+    public static GrayImage getGrayMatFromColorMat(Color[][] colorMat){
         int rowsAmount = colorMat.length;
         int colsAmount = colorMat[0].length;
-        float[][] grayMat = new float[rowsAmount][colsAmount];
+        GrayImage grayMat = new GrayImage(colsAmount, rowsAmount);
+        float[] grayData = grayMat.getData();
         Color curColor;
-        for (int i=0; i<rowsAmount; i++){
-            for (int j=0; j<colsAmount; j++){
-                curColor = colorMat[i][j];
-                grayMat[i][j] = (RED_FACTOR * curColor.getRed() +
+        for (int y=0; y<rowsAmount; y++){
+            for (int x=0; x<colsAmount; x++){
+                curColor = colorMat[y][x];
+                grayData[y * colsAmount + x] = (RED_FACTOR * curColor.getRed() +
                         GREEN_FACTOR * curColor.getGreen() +
                         BLUE_FACTOR * curColor.getBlue()) / BuffImgUtils.MAX_COLOR_VAL;
             }
@@ -50,14 +71,225 @@ public abstract class MatImgUtils {
     }
 
     /**
-     * Gets a gray scale matrix from an image given by its file name
+     * Gets a gray scale image from an image given by its file name, either an image file or a raw gray
+     * scale matrix file (by its extension), which is read without decoding
+     * @param fileName The file name of the image
+     * @return The gray scale image
+     * @throws IOException In case there's a problem reading the image file
+     */
+    public static GrayImage getGrayMatFromFile(String fileName) throws IOException {
+        PhaseTrace.DecodeEvent event = new PhaseTrace.DecodeEvent(fileName);
+        GrayImage grayMat = RawMatUtils.isRawFile(fileName) ? getGrayMatFromRawFile(fileName) :
+                getGrayMatFromImg(BuffImgUtils.getBufferedImg(fileName));
+        event.finish(grayMat);
+        return grayMat;
+    }
+
+    /**
+     * Gets a multi-channel image from an image file, keeping its channels as they are in its raster
+     * @param fileName The file name of the image
+     * @return The multi-channel image
+     * @throws IOException In case there's a problem reading the image file
+     */
+    public static ColorImage getColorImgFromFile(String fileName) throws IOException {
+        PhaseTrace.DecodeEvent event = new PhaseTrace.DecodeEvent(fileName);
+        ColorImage colorImg = ColorImage.fromImg(BuffImgUtils.getBufferedImg(fileName));
+        event.finish(colorImg.getChannel(0));
+        return colorImg;
+    }
+
+    /**
+     * Gets a gray scale image from the bytes of an image file in memory, either an image file or a raw gray
+     * scale matrix file (by its magic number)
+     * @param bytes The bytes of the file
+     * @param sourceName The name of the source of the bytes, for tracing and for the error messages
+     * @return The gray scale image
+     * @throws IOException In case the bytes aren't of a known image format
+     */
+    public static GrayImage getGrayMatFromBytes(byte[] bytes, String sourceName) throws IOException {
+        PhaseTrace.DecodeEvent event = new PhaseTrace.DecodeEvent(sourceName);
+        GrayImage grayMat;
+        if (RawMatUtils.isRawMat(bytes)) grayMat = RawMatUtils.readRawMat(bytes, sourceName);
+        else {
+            BufferedImage img = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (img == null) throw new IOException("Unknown image format of " + sourceName);
+            grayMat = getGrayMatFromImg(img);
+        }
+        event.finish(grayMat);
+        return grayMat;
+    }
+
+    /**
+     * Gets a gray scale image from a raw gray scale matrix file, mapping the file into memory
+     * @param fileName The file name of the raw file in the current working directory
+     * @return The gray scale image
+     * @throws IOException In case there's a problem reading the raw file
+     */
+    public static GrayImage getGrayMatFromRawFile(String fileName) throws IOException {
+        return RawMatUtils.readRawMat(new File(System.getProperty("user.dir"), fileName));
+    }
+
+    /**
+     * Gets a gray scale image of a region of an image given by its file name, decoding only the region
      * @param fileName The file name of the image
-     * @return The gray scale matrix
+     * @param region The region to read, inside the image
+     * @return The gray scale image of the region, its pixel (0, 0) being the corner of the region
      * @throws IOException In case there's a problem reading the image file
      */
-    public static float[][] getGrayMatFromFile(String fileName) throws IOException {
-        BufferedImage img = BuffImgUtils.getBufferedImg(fileName);
-        Color[][] colorMat = getColorMatFromImg(img);
-        return getGrayMatFromColorMat(colorMat);
+    public static GrayImage getGrayMatFromFile(String fileName, Rectangle region) throws IOException {
+        PhaseTrace.DecodeEvent event = new PhaseTrace.DecodeEvent(fileName);
+        GrayImage grayMat = getGrayMatFromImg(BuffImgUtils.getBufferedImgRegion(fileName, region));
+        event.finish(grayMat);
+        return grayMat;
+    }
+
+    /**
+     * Gets a gray scale image from a buffered image straight from its raster, in parallel over bands of
+     * rows. The result is identical to getGrayMatFromColorMat(getColorMatFromImg(img)), only without a color
+     * object per pixel. Interleaved 8 bit RGB(A) samples and packed 8 bit RGB(A) integers are read directly
+     * from the data buffer, pixels of up to 16 bits in a single sample (gray and indexed images) through a
+     * table of all the pixel values when the image has more pixels than the table, and any other layout
+     * through the RGB values of whole rows.
+     * @param img The image
+     * @return The gray scale image
+     */
+    public static GrayImage getGrayMatFromImg(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        GrayImage grayMat = new GrayImage(width, height);
+        RowDecoder decoder = getRowDecoder(img);
+        int bandsAmount = Math.min(height, Runtime.getRuntime().availableProcessors() * BANDS_PER_THREAD);
+        IntStream.range(0, bandsAmount).parallel().forEach(band -> {
+            int[] rowBuffer = new int[width];
+            for (int y = band * height / bandsAmount; y < (band + 1) * height / bandsAmount; y++){
+                decoder.decode(y, grayMat.getData(), y * width, rowBuffer);
+            }
+        });
+        return grayMat;
+    }
+
+    /**
+     * Chooses the fastest way to decode the rows of an image
+     * @param img The image
+     * @return The decoder of the rows
+     */
+    private static RowDecoder getRowDecoder(BufferedImage img) {
+        ColorModel colorModel = img.getColorModel();
+        WritableRaster raster = img.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        boolean isPlainRGB = colorModel.getColorSpace().isCS_sRGB() && !colorModel.isAlphaPremultiplied() &&
+                colorModel.getNumColorComponents() == RGB_CHANNELS;
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+
+        if (isPlainRGB && colorModel instanceof ComponentColorModel &&
+                sampleModel instanceof ComponentSampleModel componentModel &&
+                dataBuffer instanceof DataBufferByte byteBuffer && dataBuffer.getNumBanks() == 1 &&
+                is8BitChannels(colorModel)) {
+            byte[] data = byteBuffer.getData();
+            int[] bandOffsets = componentModel.getBandOffsets();
+            int pixelStride = componentModel.getPixelStride();
+            int width = img.getWidth();
+            return (y, grayData, grayIndex, rowBuffer) -> {
+                int index = dataBuffer.getOffset() + (y - translateY) * componentModel.getScanlineStride() -
+                        translateX * pixelStride;
+                for (int x = 0; x < width; x++, index += pixelStride){
+                    grayData[grayIndex + x] = getGrayVal(data[index + bandOffsets[0]] & CHANNEL_MASK,
+                            data[index + bandOffsets[1]] & CHANNEL_MASK, data[index + bandOffsets[2]] & CHANNEL_MASK);
+                }
+            };
+        }
+
+        if (isPlainRGB && colorModel instanceof DirectColorModel directModel &&
+                sampleModel instanceof SinglePixelPackedSampleModel packedModel &&
+                dataBuffer instanceof DataBufferInt intBuffer && is8BitChannels(colorModel)) {
+            int[] data = intBuffer.getData();
+            int redShift = Integer.numberOfTrailingZeros(directModel.getRedMask());
+            int greenShift = Integer.numberOfTrailingZeros(directModel.getGreenMask());
+            int blueShift = Integer.numberOfTrailingZeros(directModel.getBlueMask());
+            int width = img.getWidth();
+            return (y, grayData, grayIndex, rowBuffer) -> {
+                int index = dataBuffer.getOffset() + packedModel.getOffset(-translateX, y - translateY);
+                int pixel;
+                for (int x = 0; x < width; x++){
+                    pixel = data[index + x];
+                    grayData[grayIndex + x] = getGrayVal(pixel >>> redShift & CHANNEL_MASK,
+                            pixel >>> greenShift & CHANNEL_MASK, pixel >>> blueShift & CHANNEL_MASK);
+                }
+            };
+        }
+
+        if (sampleModel.getNumBands() == 1 && sampleModel.getSampleSize(0) <= MAX_TABLE_BITS &&
+                (long) img.getWidth() * img.getHeight() > 1L << sampleModel.getSampleSize(0)) {
+            float[] table = new float[1 << sampleModel.getSampleSize(0)];
+            WritableRaster pixelRaster = raster.createCompatibleWritableRaster(1, 1);
+            for (int pixel = 0; pixel < table.length; pixel++){
+                pixelRaster.setSample(0, 0, 0, pixel);
+                table[pixel] = getGrayVal(colorModel.getRGB(pixelRaster.getDataElements(0, 0, null)));
+            }
+            int width = img.getWidth();
+            return (y, grayData, grayIndex, rowBuffer) -> {
+                raster.getSamples(0, y, width, 1, 0, rowBuffer);
+                for (int x = 0; x < width; x++){
+                    grayData[grayIndex + x] = table[rowBuffer[x]];
+                }
+            };
+        }
+
+        int width = img.getWidth();
+        return (y, grayData, grayIndex, rowBuffer) -> {
+            img.getRGB(0, y, width, 1, rowBuffer, 0, width);
+            for (int x = 0; x < width; x++){
+                grayData[grayIndex + x] = getGrayVal(rowBuffer[x]);
+            }
+        };
+    }
+
+    /**
+     * Checks whether every color channel of a color model has 8 bits
+     * @param colorModel The color model
+     * @return True iff every color channel has 8 bits
+     */
+    private static boolean is8BitChannels(ColorModel colorModel) {
+        for (int i = 0; i < RGB_CHANNELS; i++){
+            if (colorModel.getComponentSize(i) != CHANNEL_BITS) return false;
+        } return true;
+    }
+
+    /**
+     * Gets the gray scale value of a packed RGB value
+     * @param rgb The packed RGB value, as returned by BufferedImage.getRGB
+     * @return The gray scale value
+     */
+    private static float getGrayVal(int rgb) {
+        return getGrayVal(rgb >>> RED_SHIFT & CHANNEL_MASK, rgb >>> GREEN_SHIFT & CHANNEL_MASK,
+                rgb & CHANNEL_MASK);
+    }
+
+    /**
+     * Gets the gray scale value of the channels of a pixel, exactly as getGrayMatFromColorMat does
+     * @param red The red channel
+     * @param green The green channel
+     * @param blue The blue channel
+     * @return The gray scale value
+     */
+    private static float getGrayVal(int red, int green, int blue) {
+        return (RED_FACTOR * red + GREEN_FACTOR * green + BLUE_FACTOR * blue) / BuffImgUtils.MAX_COLOR_VAL;
+    }
+
+    /**
+     * Decodes a single row of an image into gray scale values
+     */
+    private interface RowDecoder {
+
+        /**
+         * Decodes a row
+         * @param y The index of the row
+         * @param grayData The array of the gray scale values
+         * @param grayIndex The index in the array of the first pixel of the row
+         * @param rowBuffer A buffer as long as the row, owned by the calling thread
+         */
+        void decode(int y, float[] grayData, int grayIndex, int[] rowBuffer);
     }
 }
@@ -0,0 +1,441 @@
+package img_hole_fill.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Tracing the phases of a fill: decoding, hole detection, boundary construction, filling, accuracy checking
+ * and encoding. Every phase is a JDK Flight Recorder event, recorded along with the rest of the JVM events
+ * whenever a recording is on (java -XX:StartFlightRecording, or jcmd JFR.start on a running process), and
+ * every phase is also added to an in-process summary, printed by printSummary. Measuring a phase takes two
+ * clock reads and two reads of the allocation counter of the thread, and counting the weights used by a
+ * fill adds to a striped counter, so tracing is always on. The levels of a pyramid fill are events of their
+ * own, recorded only, not being phases.
+ */
+public abstract class PhaseTrace {
+    private static final String CATEGORY = "Image Hole Fill";
+    private static final long UNSUPPORTED = -1;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double BYTES_PER_MEGA = 1 << 20;
+
+    /**
+     * The phases of a fill
+     */
+    public enum Phase {DECODE, HOLE_DETECTION, BOUNDARY, FILL, ACCURACY, ENCODE}
+
+    /**
+     * The summary of a phase over all of its runs within the process
+     * @param runs The amount of runs
+     * @param nanos The total duration, in nanoseconds
+     * @param allocatedBytes The total bytes allocated by the threads running the phase
+     * @param pixels The total pixels the runs worked on
+     * @param weightEvaluations The total evaluations of the weight function
+     */
+    private record PhaseSummary(LongAdder runs, LongAdder nanos, LongAdder allocatedBytes, LongAdder pixels,
+                                LongAdder weightEvaluations) {
+
+        /**
+         * Create an empty summary
+         */
+        PhaseSummary(){
+            this(new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder());
+        }
+    }
+
+    private static final PhaseSummary[] summaries = new PhaseSummary[Phase.values().length];
+
+    static {
+        for (int i = 0; i < summaries.length; i++) summaries[i] = new PhaseSummary();
+    }
+
+    /**
+     * The fields and the measuring common to the events of all the phases. An event is created when its
+     * phase begins and finished when it ends, on the same thread.
+     */
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class PhaseEvent extends Event {
+        @Label("Pixels")
+        @Description("The amount of pixels the phase works on")
+        long pixels;
+
+        @Label("Allocated")
+        @Description("The bytes allocated by the thread running the phase, or -1 if unsupported")
+        @DataAmount
+        long allocatedBytes;
+
+        private final transient Phase phase;
+        private final transient long startNanos;
+        private final transient long startAllocatedBytes;
+
+        /**
+         * Create an event and begin its phase
+         * @param phase The phase
+         */
+        PhaseEvent(Phase phase){
+            this.phase = phase;
+            startAllocatedBytes = getAllocatedBytes();
+            startNanos = System.nanoTime();
+            begin();
+        }
+
+        /**
+         * Ends the phase, adding it to the summary and committing the event if it's recorded
+         * @param pixels The amount of pixels the phase worked on
+         * @param weightEvaluations The evaluations of the weight function in the phase
+         */
+        void finish(long pixels, long weightEvaluations){
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = startAllocatedBytes == UNSUPPORTED ? UNSUPPORTED :
+                    getAllocatedBytes() - startAllocatedBytes;
+            end();
+            PhaseSummary summary = summaries[phase.ordinal()];
+            summary.runs().increment();
+            summary.nanos().add(nanos);
+            if (allocated != UNSUPPORTED) summary.allocatedBytes().add(allocated);
+            summary.pixels().add(pixels);
+            summary.weightEvaluations().add(weightEvaluations);
+            if (shouldCommit()){
+                this.pixels = pixels;
+                allocatedBytes = allocated;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Decoding an image file into a gray scale image
+     */
+    @Name("img_hole_fill.Decode")
+    @Label("Decode")
+    public static class DecodeEvent extends PhaseEvent {
+        @Label("File")
+        String fileName;
+
+        /**
+         * Begin decoding
+         * @param fileName The file name of the image
+         */
+        public DecodeEvent(String fileName){
+            super(Phase.DECODE);
+            this.fileName = fileName;
+        }
+
+        /**
+         * Ends decoding
+         * @param grayMat The decoded gray scale image
+         */
+        public void finish(GrayImage grayMat){
+            finish(grayMat.getWidth(), grayMat.getHeight());
+        }
+
+        /**
+         * Ends decoding
+         * @param width The width of the decoded image
+         * @param height The height of the decoded image
+         */
+        public void finish(int width, int height){
+            finish((long) width * height, 0);
+        }
+    }
+
+    /**
+     * Detecting the pixels of the hole in a gray scale image
+     */
+    @Name("img_hole_fill.HoleDetection")
+    @Label("Hole Detection")
+    public static class HoleDetectionEvent extends PhaseEvent {
+        @Label("Hole Pixels")
+        int holePixels;
+
+        /**
+         * Begin detecting the hole
+         */
+        public HoleDetectionEvent(){
+            super(Phase.HOLE_DETECTION);
+        }
+
+        /**
+         * Ends detecting the hole
+         * @param grayMat The gray scale image the hole was detected in
+         * @param holeSet The pixels in the hole
+         */
+        public void finish(GrayImage grayMat, PixSet holeSet){
+            holePixels = holeSet.size();
+            finish((long) grayMat.getWidth() * grayMat.getHeight(), 0);
+        }
+    }
+
+    /**
+     * Constructing the boundary of a hole
+     */
+    @Name("img_hole_fill.Boundary")
+    @Label("Boundary")
+    public static class BoundaryEvent extends PhaseEvent {
+        @Label("Hole Pixels")
+        int holePixels;
+
+        @Label("Boundary Pixels")
+        int boundaryPixels;
+
+        @Label("Eight Connected")
+        boolean eightConnected;
+
+        /**
+         * Begin constructing the boundary
+         * @param holeSet The pixels in the hole
+         * @param isEightConnected Whether or not the boundary is 8-connected (the default is 4)
+         */
+        public BoundaryEvent(PixSet holeSet, boolean isEightConnected){
+            super(Phase.BOUNDARY);
+            holePixels = holeSet.size();
+            eightConnected = isEightConnected;
+        }
+
+        /**
+         * Ends constructing the boundary
+         * @param boundarySet The pixels in the boundary
+         */
+        public void finish(PixSet boundarySet){
+            boundaryPixels = boundarySet.size();
+            finish(holePixels, 0);
+        }
+    }
+
+    /**
+     * Filling a hole by an algorithm
+     */
+    @Name("img_hole_fill.Fill")
+    @Label("Fill")
+    public static class FillEvent extends PhaseEvent {
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Weight Function")
+        String weightFunction;
+
+        @Label("Hole Pixels")
+        int holePixels;
+
+        @Label("Boundary Pixels")
+        int boundaryPixels;
+
+        @Label("Eight Connected")
+        boolean eightConnected;
+
+        @Label("Weight Evaluations")
+        @Description("The weights used, whether evaluated or read from a weight table")
+        long weightEvaluations;
+
+        private final transient LongAdder evaluations;
+
+        /**
+         * Begin filling. The sizes of the sets are taken here, since the algorithms change the sets.
+         * @param algorithm The name of the algorithm
+         * @param weightFunction The name of the weight function
+         * @param holeSet The pixels in the hole
+         * @param boundarySet The pixels in the boundary
+         * @param isEightConnected Whether or not the 8-connected approach is applied (the default is 4)
+         */
+        public FillEvent(String algorithm, String weightFunction, PixSet holeSet, PixSet boundarySet,
+                         boolean isEightConnected){
+            super(Phase.FILL);
+            this.algorithm = algorithm;
+            this.weightFunction = weightFunction;
+            holePixels = holeSet.size();
+            boundaryPixels = boundarySet.size();
+            eightConnected = isEightConnected;
+            evaluations = new LongAdder();
+        }
+
+        /**
+         * Gets the counter of the evaluations of the weight function, see CountingWeight
+         * @return The counter
+         */
+        public LongAdder getEvaluations(){
+            return evaluations;
+        }
+
+        /**
+         * Ends filling
+         */
+        public void finish(){
+            weightEvaluations = evaluations.sum();
+            finish(holePixels, weightEvaluations);
+        }
+    }
+
+    /**
+     * Filling a level of a pyramid fill, see PyramidAlgo. The event spans the level and the coarser levels
+     * below it, so the time of the level alone is a field of its own.
+     */
+    @Name("img_hole_fill.PyramidLevel")
+    @Label("Pyramid Level")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class PyramidLevelEvent extends Event {
+        @Label("Level")
+        @Description("The index of the level, 0 is the original image")
+        int level;
+
+        @Label("Width")
+        @Description("The width of the image of the level, cropped around the hole on the coarser levels")
+        int width;
+
+        @Label("Height")
+        @Description("The height of the image of the level, cropped around the hole on the coarser levels")
+        int height;
+
+        @Label("Hole Pixels")
+        int holePixels;
+
+        @Label("Filled Pixels")
+        @Description("The hole pixels filled by the inner algorithm on the level")
+        int filledPixels;
+
+        @Label("Level Time")
+        @Description("The time spent on the level alone, the coarser levels aside")
+        @Timespan
+        long levelNanos;
+
+        /**
+         * Begin filling a level
+         * @param level The index of the level, 0 is the original image
+         */
+        public PyramidLevelEvent(int level){
+            this.level = level;
+            begin();
+        }
+
+        /**
+         * Ends filling the level, committing the event if it's recorded
+         * @param grayMat The image of the level
+         * @param holePixels The amount of pixels in the hole of the level
+         * @param filledPixels The amount of pixels filled by the inner algorithm on the level
+         * @param levelNanos The time spent on the level alone, in nanoseconds
+         */
+        public void finish(GrayImage grayMat, int holePixels, int filledPixels, long levelNanos){
+            end();
+            if (shouldCommit()){
+                width = grayMat.getWidth();
+                height = grayMat.getHeight();
+                this.holePixels = holePixels;
+                this.filledPixels = filledPixels;
+                this.levelNanos = levelNanos;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Checking the accuracy of a fill against the base algorithm
+     */
+    @Name("img_hole_fill.Accuracy")
+    @Label("Accuracy")
+    public static class AccuracyEvent extends PhaseEvent {
+        @Label("Accuracy")
+        @Description("The percentage of hole pixels filled the same as the base algorithm")
+        float accuracy;
+
+        @Label("Error")
+        @Description("The average difference from the base algorithm over the hole pixels, in percents")
+        float error;
+
+        /**
+         * Begin checking the accuracy
+         */
+        public AccuracyEvent(){
+            super(Phase.ACCURACY);
+        }
+
+        /**
+         * Ends checking the accuracy
+         * @param holePixels The amount of hole pixels checked
+         * @param accuracy The percentage of hole pixels filled the same as the base algorithm
+         * @param error The average difference from the base algorithm over the hole pixels, in percents
+         */
+        public void finish(int holePixels, float accuracy, float error){
+            this.accuracy = accuracy;
+            this.error = error;
+            finish(holePixels, 0);
+        }
+    }
+
+    /**
+     * Encoding an image and writing it to a file
+     */
+    @Name("img_hole_fill.Encode")
+    @Label("Encode")
+    public static class EncodeEvent extends PhaseEvent {
+        @Label("File")
+        String fileName;
+
+        /**
+         * Begin encoding
+         * @param fileName The file name of the new file
+         */
+        public EncodeEvent(String fileName){
+            super(Phase.ENCODE);
+            this.fileName = fileName;
+        }
+
+        /**
+         * Ends encoding
+         * @param width The width of the image
+         * @param height The height of the image
+         */
+        public void finish(int width, int height){
+            finish((long) width * height, 0);
+        }
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread so far
+     * @return The allocated bytes, or -1 if unsupported
+     */
+    public static long getAllocatedBytes(){
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean) ||
+                !threadBean.isThreadAllocatedMemorySupported()) return UNSUPPORTED;
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Prints the summary of every phase that ran within the process
+     */
+    public static void printSummary(){
+        String format = "%-15s %8s %12s %12s %12s %14s %16s\n";
+        System.out.printf(format, "Phase", "Runs", "Total (ms)", "Mean (ms)", "Alloc (MB)", "Pixels",
+                "Weight evals");
+        for (Phase phase : Phase.values()){
+            PhaseSummary summary = summaries[phase.ordinal()];
+            long runs = summary.runs().sum();
+            if (runs == 0) continue;
+            double millis = summary.nanos().sum() / NANOS_PER_MILLI;
+            System.out.printf(format, phase, runs, String.format("%.2f", millis),
+                    String.format("%.2f", millis / runs),
+                    String.format("%.2f", summary.allocatedBytes().sum() / BYTES_PER_MEGA),
+                    summary.pixels().sum(), summary.weightEvaluations().sum());
+        }
+    }
+
+    /**
+     * Clears the summary of all the phases
+     */
+    public static void resetSummary(){
+        for (PhaseSummary summary : summaries){
+            summary.runs().reset();
+            summary.nanos().reset();
+            summary.allocatedBytes().reset();
+            summary.pixels().reset();
+            summary.weightEvaluations().reset();
+        }
+    }
+}
@@ -7,6 +7,36 @@ import java.util.HashSet;
  * Utilities for getting connected pixels
  */
 public abstract class PixConnectUtils {
+    private static final int FOUR_CONNECTED_AMOUNT = 4;
+    private static final int EIGHT_CONNECTED_AMOUNT = 8;
+
+    /**
+     * The offsets of the connected pixels, first the 4-connected ones and then their complement to the
+     * 8-connected ones, in the same order as getSingleFourConnected and getSingleFourComplementToEight
+     */
+    private static final int[] CONNECTED_X_OFFSETS = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] CONNECTED_Y_OFFSETS = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    /**
+     * Gets the amount of pixels connected to a single pixel
+     * @param isEightConnected Whether or not to apply 8-connected (the default is 4)
+     * @return The amount of connected pixels
+     */
+    public static int getConnectedAmount(boolean isEightConnected){
+        return isEightConnected ? EIGHT_CONNECTED_AMOUNT : FOUR_CONNECTED_AMOUNT;
+    }
+
+    /**
+     * Gets a single connected pixel of a given packed pixel. Indices below 4 give the 4-connected pixels
+     * and indices 4 to 7 give their complement to the 8-connected ones.
+     * @param pix The packed pixel to get its neighbour
+     * @param neighbourIndex The index of the neighbour, between 0 and 7
+     * @return The packed neighbour
+     */
+    public static long getConnectedPix(long pix, int neighbourIndex){
+        return PixSet.pack(PixSet.getX(pix) + CONNECTED_X_OFFSETS[neighbourIndex],
+                PixSet.getY(pix) + CONNECTED_Y_OFFSETS[neighbourIndex]);
+    }
 
     /**
      * Get the 4-connected pixels to the given pixel
@@ -59,4 +89,42 @@ public abstract class PixConnectUtils {
             fourConnectedSet.addAll(getSingleFourComplementToEight(hole));
         }
     }
+
+    /**
+     * Get the entire 4-connected neighbours of the hole set
+     * @param holeSet The pixels in the hole
+     * @return The neighbours
+     */
+    public static PixSet getEntireFourConnected(PixSet holeSet){
+        PixSet fourConnectedSet = new PixSet(holeSet.size() * 2);
+        addEntireConnected(holeSet, fourConnectedSet, 0, FOUR_CONNECTED_AMOUNT);
+        return fourConnectedSet;
+    }
+
+    /**
+     * Complement the entire 4-connected to the entire 8-connected
+     * @param holeSet The pixels in the hole
+     * @param fourConnectedSet The 4-connected neighbours of the pixels in the hole
+     */
+    public static void completeEntireEightConnected(PixSet holeSet, PixSet fourConnectedSet){
+        addEntireConnected(holeSet, fourConnectedSet, FOUR_CONNECTED_AMOUNT, EIGHT_CONNECTED_AMOUNT);
+    }
+
+    /**
+     * Adds the neighbours of every pixel in the given set by a range of neighbour indices
+     * @param pixSet The pixels to get their neighbours
+     * @param connectedSet The set to add the neighbours to
+     * @param fromNeighbour The first neighbour index (inclusive)
+     * @param toNeighbour The last neighbour index (exclusive)
+     */
+    private static void addEntireConnected(PixSet pixSet, PixSet connectedSet, int fromNeighbour,
+                                           int toNeighbour){
+        long pix;
+        for (int i = 0; i < pixSet.size(); i++){
+            pix = pixSet.get(i);
+            for (int j = fromNeighbour; j < toNeighbour; j++){
+                connectedSet.add(getConnectedPix(pix, j));
+            }
+        }
+    }
 }
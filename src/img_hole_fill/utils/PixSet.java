@@ -0,0 +1,313 @@
+package img_hole_fill.utils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * A set of pixels stored as packed long indices, avoiding a boxed IntPair per pixel. The pixels are kept
+ * in a dense array (so they can be visited by index) and located through an open-addressing table with
+ * linear probing.
+ */
+public class PixSet {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MIN_TABLE_LENGTH = 32;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int EMPTY_SLOT = 0;
+
+    /**
+     * The pixels of this set, densely packed in the first size cells
+     */
+    private long[] pixels;
+
+    /**
+     * The open-addressing table, each slot holds the index of a pixel in the dense array plus one, or
+     * EMPTY_SLOT
+     */
+    private int[] slots;
+
+    /**
+     * The amount of pixels in this set
+     */
+    private int size;
+
+    /**
+     * Creates an empty set
+     */
+    public PixSet(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty set that can hold the given amount of pixels without growing
+     * @param expectedSize The amount of pixels expected to be added
+     */
+    public PixSet(int expectedSize){
+        pixels = new long[Math.max(expectedSize, 1)];
+        slots = new int[getTableLength(expectedSize)];
+    }
+
+    /**
+     * Creates a copy of a given set
+     * @param other The set to copy
+     */
+    public PixSet(PixSet other){
+        pixels = Arrays.copyOf(other.pixels, Math.max(other.size, 1));
+        slots = other.slots.clone();
+        size = other.size;
+    }
+
+    /**
+     * Packs a pixel into a long. Sorting packed pixels orders them lexicographically, the same way
+     * IntPair.compareTo does, also for negative coordinates.
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The packed pixel
+     */
+    public static long pack(int x, int y){
+        return ((long) x << Integer.SIZE) | ((y ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the x coordinate of a packed pixel
+     * @param pix The packed pixel
+     * @return The x coordinate
+     */
+    public static int getX(long pix){
+        return (int) (pix >> Integer.SIZE);
+    }
+
+    /**
+     * Gets the y coordinate of a packed pixel
+     * @param pix The packed pixel
+     * @return The y coordinate
+     */
+    public static int getY(long pix){
+        return (int) pix ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Creates a set out of a hash set of IntPairs
+     * @param sourceSet The hash set to convert
+     * @return The new set
+     */
+    public static PixSet fromHashSet(HashSet<IntPair> sourceSet){
+        PixSet pixSet = new PixSet(sourceSet.size());
+        for (IntPair pix : sourceSet){
+            pixSet.add(pix.getX(), pix.getY());
+        } return pixSet;
+    }
+
+    /**
+     * Creates a set out of an array of packed pixels
+     * @param pixArr The packed pixels
+     * @return The new set
+     */
+    public static PixSet fromArray(long[] pixArr){
+        PixSet pixSet = new PixSet(pixArr.length);
+        for (long pix : pixArr){
+            pixSet.add(pix);
+        } return pixSet;
+    }
+
+    /**
+     * Converts this set to a hash set of IntPairs
+     * @return The hash set
+     */
+    public HashSet<IntPair> toHashSet(){
+        HashSet<IntPair> hashSet = new HashSet<>(size * 2);
+        for (int i = 0; i < size; i++){
+            hashSet.add(new IntPair(getX(pixels[i]), getY(pixels[i])));
+        } return hashSet;
+    }
+
+    /**
+     * Gets the amount of pixels in this set
+     * @return The amount of pixels
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Checks whether or not this set is empty
+     * @return True iff there are no pixels in this set
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Gets a pixel by its index in the dense order of this set. The order is the insertion order as long
+     * as no pixel was removed.
+     * @param index The index of the pixel, between 0 and size() - 1
+     * @return The packed pixel
+     */
+    public long get(int index){
+        if (index >= size) throw new IndexOutOfBoundsException(index);
+        return pixels[index];
+    }
+
+    /**
+     * Copies the pixels of this set to an array, in the dense order of this set
+     * @return The packed pixels
+     */
+    public long[] toArray(){
+        return Arrays.copyOf(pixels, size);
+    }
+
+    /**
+     * Copies the pixels of this set to a sorted array
+     * @return The packed pixels, sorted lexicographically
+     */
+    public long[] toSortedArray(){
+        long[] sorted = toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Checks whether or not a pixel is in this set
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return True iff the pixel is in this set
+     */
+    public boolean contains(int x, int y){
+        return contains(pack(x, y));
+    }
+
+    /**
+     * Checks whether or not a packed pixel is in this set
+     * @param pix The packed pixel
+     * @return True iff the pixel is in this set
+     */
+    public boolean contains(long pix){
+        return slots[findSlot(pix)] != EMPTY_SLOT;
+    }
+
+    /**
+     * Adds a pixel to this set
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return True iff the pixel was not already in this set
+     */
+    public boolean add(int x, int y){
+        return add(pack(x, y));
+    }
+
+    /**
+     * Adds a packed pixel to this set
+     * @param pix The packed pixel
+     * @return True iff the pixel was not already in this set
+     */
+    public boolean add(long pix){
+        int slot = findSlot(pix);
+        if (slots[slot] != EMPTY_SLOT) return false;
+        if (size == pixels.length) pixels = Arrays.copyOf(pixels, size * 2);
+        pixels[size] = pix;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) rehash(slots.length * 2);
+        return true;
+    }
+
+    /**
+     * Adds all the pixels of another set to this one
+     * @param other The set of pixels to add
+     */
+    public void addAll(PixSet other){
+        for (int i = 0; i < other.size; i++){
+            add(other.pixels[i]);
+        }
+    }
+
+    /**
+     * Removes a packed pixel from this set. The last pixel in the dense order takes the place of the
+     * removed one.
+     * @param pix The packed pixel to remove
+     * @return True iff the pixel was in this set
+     */
+    public boolean remove(long pix){
+        int slot = findSlot(pix);
+        if (slots[slot] == EMPTY_SLOT) return false;
+        int index = slots[slot] - 1;
+        deleteSlot(slot);
+        size--;
+        if (index != size){
+            long lastPix = pixels[size];
+            pixels[index] = lastPix;
+            slots[findSlot(lastPix)] = index + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the pixels of another set from this one
+     * @param other The set of pixels to remove
+     */
+    public void removeAll(PixSet other){
+        for (int i = 0; i < other.size; i++){
+            remove(other.pixels[i]);
+        }
+    }
+
+    /**
+     * Gets the length of the table needed for holding a given amount of pixels
+     * @param expectedSize The amount of pixels
+     * @return The length of the table, a power of 2
+     */
+    private static int getTableLength(int expectedSize){
+        int length = MIN_TABLE_LENGTH;
+        while (length < expectedSize * 2) length <<= 1;
+        return length;
+    }
+
+    /**
+     * Gets the home slot of a packed pixel
+     * @param pix The packed pixel
+     * @return The index of the home slot in the table
+     */
+    private int homeSlot(long pix){
+        return (int) ((pix * HASH_MULTIPLIER) >>> (Long.SIZE - Integer.numberOfTrailingZeros(slots.length)));
+    }
+
+    /**
+     * Finds the slot holding the given pixel, or the empty slot where it should be inserted
+     * @param pix The packed pixel
+     * @return The index of the slot
+     */
+    private int findSlot(long pix){
+        int mask = slots.length - 1;
+        int slot = homeSlot(pix);
+        while (slots[slot] != EMPTY_SLOT && pixels[slots[slot] - 1] != pix){
+            slot = (slot + 1) & mask;
+        } return slot;
+    }
+
+    /**
+     * Empties a slot, shifting back the following slots of its probing cluster so that no lookup breaks
+     * @param slot The slot to empty
+     */
+    private void deleteSlot(int slot){
+        int mask = slots.length - 1;
+        int next = (slot + 1) & mask;
+        while (slots[next] != EMPTY_SLOT){
+            int home = homeSlot(pixels[slots[next] - 1]);
+            if (((next - home) & mask) >= ((next - slot) & mask)){
+                slots[slot] = slots[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[slot] = EMPTY_SLOT;
+    }
+
+    /**
+     * Rebuilds the table with a new length
+     * @param tableLength The new length of the table, a power of 2
+     */
+    private void rehash(int tableLength){
+        slots = new int[tableLength];
+        for (int i = 0; i < size; i++){
+            slots[findSlot(pixels[i])] = i + 1;
+        }
+    }
+}
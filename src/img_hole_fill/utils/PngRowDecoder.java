@@ -0,0 +1,277 @@
+package img_hole_fill.utils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A decoder of the rows of a non-interlaced PNG file one after the other, in a single pass over the file, so
+ * that only a couple of rows are held in memory. The rows are inflated and unfiltered, and given as the
+ * samples of their pixels, channel after channel, as ImageIO puts them in the raster of the image.
+ */
+class PngRowDecoder implements Closeable {
+    private static final int IHDR = chunkType("IHDR");
+    private static final int IDAT = chunkType("IDAT");
+    private static final int IHDR_LENGTH = 13;
+    private static final int CRC_LENGTH = Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int NO_INTERLACE = 0;
+    private static final int[] CHANNELS_BY_COLOR_TYPE = {1, 0, 3, 1, 2, 0, 4};
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private final ImageDataStream imageData = new ImageDataStream();
+    private final DataInputStream rows;
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int channels;
+    private final int bytesPerPixel;
+    private byte[] prevRow;
+    private byte[] curRow;
+    private int nextRow;
+
+    /**
+     * Creates a decoder of a PNG file read up to the end of its header
+     * @param in The stream of the file, after its signature
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param bitDepth The bits in a sample
+     * @param channels The samples in a pixel
+     */
+    private PngRowDecoder(DataInputStream in, int width, int height, int bitDepth, int channels) {
+        this.in = in;
+        this.width = width;
+        this.height = height;
+        this.bitDepth = bitDepth;
+        this.channels = channels;
+        bytesPerPixel = Math.max(1, bitDepth * channels / Byte.SIZE);
+        int rowBytes = (int) (((long) width * bitDepth * channels + Byte.SIZE - 1) / Byte.SIZE);
+        prevRow = new byte[rowBytes];
+        curRow = new byte[rowBytes];
+        rows = new DataInputStream(new InflaterInputStream(imageData, inflater, BUFFER_SIZE));
+    }
+
+    /**
+     * Opens a PNG file for decoding its rows
+     * @param file The file
+     * @return The decoder, or null if the file isn't a non-interlaced PNG file
+     * @throws IOException In case there's a problem reading the file
+     */
+    static PngRowDecoder open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                BUFFER_SIZE));
+        try {
+            byte[] signature = new byte[PngWriter.SIGNATURE.length];
+            if (in.read(signature) != signature.length || !Arrays.equals(signature, PngWriter.SIGNATURE) ||
+                    in.readInt() != IHDR_LENGTH || in.readInt() != IHDR) {
+                in.close();
+                return null;
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            int bitDepth = in.readUnsignedByte();
+            int colorType = in.readUnsignedByte();
+            in.skipNBytes(2);
+            int interlace = in.readUnsignedByte();
+            in.skipNBytes(CRC_LENGTH);
+            if (width <= 0 || height <= 0 || interlace != NO_INTERLACE ||
+                    colorType >= CHANNELS_BY_COLOR_TYPE.length || CHANNELS_BY_COLOR_TYPE[colorType] == 0) {
+                in.close();
+                return null;
+            }
+            PngRowDecoder decoder = new PngRowDecoder(in, width, height, bitDepth,
+                    CHANNELS_BY_COLOR_TYPE[colorType]);
+            decoder.imageData.findFirstChunk();
+            return decoder;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the width of the image
+     * @return The width
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image
+     * @return The height
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the bits in a sample
+     * @return The bit depth
+     */
+    int getBitDepth() {
+        return bitDepth;
+    }
+
+    /**
+     * Gets the samples in a pixel
+     * @return The amount of channels, the palette index counting as a single channel
+     */
+    int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Decodes the next row
+     * @param samples The array to put the samples of the row in, channel after channel, at least as long as
+     *                the width times the amount of channels
+     * @throws IOException In case there's a problem reading the file or it's corrupt
+     * @throws IllegalStateException In case all the rows were decoded
+     */
+    void readRow(int[] samples) throws IOException {
+        if (nextRow == height) throw new IllegalStateException("All the rows were decoded");
+        try {
+            int filterType = rows.readUnsignedByte();
+            rows.readFully(curRow);
+            unfilter(filterType);
+        } catch (EOFException e) {
+            throw new IOException("Truncated image data in row " + nextRow, e);
+        }
+        int samplesAmount = width * channels;
+        if (bitDepth == Byte.SIZE) {
+            for (int i = 0; i < samplesAmount; i++) samples[i] = curRow[i] & BYTE_MASK;
+        } else if (bitDepth == Short.SIZE) {
+            for (int i = 0; i < samplesAmount; i++) {
+                samples[i] = (curRow[2 * i] & BYTE_MASK) << Byte.SIZE | curRow[2 * i + 1] & BYTE_MASK;
+            }
+        } else {
+            int samplesPerByte = Byte.SIZE / bitDepth;
+            int mask = (1 << bitDepth) - 1;
+            for (int i = 0; i < samplesAmount; i++) {
+                int shift = Byte.SIZE - bitDepth * (i % samplesPerByte + 1);
+                samples[i] = curRow[i / samplesPerByte] >>> shift & mask;
+            }
+        }
+        byte[] tmp = prevRow;
+        prevRow = curRow;
+        curRow = tmp;
+        nextRow++;
+    }
+
+    /**
+     * Reverses the filter of the current row, by the previous row
+     * @param filterType The type of the filter of the row
+     * @throws IOException In case the type of the filter is unknown
+     */
+    private void unfilter(int filterType) throws IOException {
+        int left;
+        int up;
+        int upLeft;
+        for (int i = 0; i < curRow.length; i++) {
+            left = i >= bytesPerPixel ? curRow[i - bytesPerPixel] & BYTE_MASK : 0;
+            up = prevRow[i] & BYTE_MASK;
+            upLeft = i >= bytesPerPixel ? prevRow[i - bytesPerPixel] & BYTE_MASK : 0;
+            curRow[i] += switch (filterType) {
+                case 0 -> 0;
+                case 1 -> left;
+                case 2 -> up;
+                case 3 -> (left + up) >>> 1;
+                case 4 -> PngWriter.getPaethPredictor(left, up, upLeft);
+                default -> throw new IOException("Unknown filter type " + filterType + " in row " + nextRow);
+            };
+        }
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException In case there's a problem closing the file
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    /**
+     * Gets the type of a chunk as an integer, as it's read from the file
+     * @param name The name of the type
+     * @return The type
+     */
+    private static int chunkType(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        return (bytes[0] & BYTE_MASK) << 24 | (bytes[1] & BYTE_MASK) << 16 | (bytes[2] & BYTE_MASK) << 8 |
+                bytes[3] & BYTE_MASK;
+    }
+
+    /**
+     * The data of the consecutive image data chunks of the file as a single stream, skipping the CRCs
+     */
+    private class ImageDataStream extends InputStream {
+        private long remaining;
+        private boolean isEnded;
+
+        /**
+         * Skips the chunks before the first image data chunk
+         * @throws IOException In case there's a problem reading the file or it has no image data
+         */
+        void findFirstChunk() throws IOException {
+            while (true) {
+                int length = in.readInt();
+                int type = in.readInt();
+                if (type == IDAT) {
+                    remaining = Integer.toUnsignedLong(length);
+                    return;
+                }
+                in.skipNBytes(Integer.toUnsignedLong(length) + CRC_LENGTH);
+            }
+        }
+
+        /**
+         * Reads the next byte of the image data
+         * @return The byte, or -1 at the end of the image data
+         * @throws IOException In case there's a problem reading the file
+         */
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & BYTE_MASK;
+        }
+
+        /**
+         * Reads the next bytes of the image data, moving on to the next image data chunk as needed
+         * @param b The array to put the bytes in
+         * @param off The index in the array of the first byte
+         * @param len The maximal amount of bytes to read
+         * @return The amount of bytes read, or -1 at the end of the image data
+         * @throws IOException In case there's a problem reading the file or it's truncated
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (isEnded) return -1;
+                in.skipNBytes(CRC_LENGTH);
+                int length = in.readInt();
+                if (in.readInt() != IDAT) {
+                    isEnded = true;
+                    return -1;
+                }
+                remaining = Integer.toUnsignedLong(length);
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) throw new EOFException("Truncated image data chunk");
+            remaining -= read;
+            return read;
+        }
+    }
+}
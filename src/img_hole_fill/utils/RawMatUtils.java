@@ -0,0 +1,434 @@
+package img_hole_fill.utils;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Utilities for a raw binary format of gray scale matrices, read and written through memory mapping. A file
+ * is a header of HEADER_SIZE bytes followed by the samples row by row, all little-endian. The header holds
+ * the magic number, the version, the width, the height and the type of the samples. The samples are either
+ * the floats themselves, or unsigned 8 or 16 bit integers scaled to the range of the type.
+ */
+public abstract class RawMatUtils {
+    public static final String RAW_EXTENSION = ".gmat";
+    private static final int MAGIC = 0x54414D47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int MAX_UINT8 = 0xFF;
+    private static final int MAX_UINT16 = 0xFFFF;
+
+    /**
+     * The largest amount of bytes mapped at once, a single mapping can't exceed Integer.MAX_VALUE
+     */
+    private static final long MAX_MAP_SIZE = 1 << 30;
+
+    /**
+     * The largest buffer for writing to a stream
+     */
+    private static final long STREAM_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The types of the samples
+     */
+    public enum SampleType {
+        FLOAT32(Float.BYTES), UINT8(Byte.BYTES), UINT16(Short.BYTES);
+
+        /**
+         * The size of a sample in bytes
+         */
+        private final int bytes;
+
+        /**
+         * Create a type of samples
+         * @param bytes The size of a sample in bytes
+         */
+        SampleType(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Checks whether a file name is of the raw format
+     * @param fileName The file name
+     * @return True iff the file name has the extension of the raw format
+     */
+    public static boolean isRawFile(String fileName){
+        return fileName.endsWith(RAW_EXTENSION);
+    }
+
+    /**
+     * Reads a gray scale matrix from a raw file. The float samples are copied into the matrix in bulk
+     * straight from the mapped file, a hole value (-1) included.
+     * @param file The raw file
+     * @return The gray scale matrix
+     * @throws IOException In case there's a problem reading the file or it isn't a valid raw file
+     */
+    public static GrayImage readRawMat(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) throw new IOException("Not a raw gray matrix file: " + file);
+            Header header = readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE),
+                    channel.size(), file.toString());
+            int width = header.width();
+            SampleType type = header.type();
+            GrayImage grayMat = new GrayImage(width, header.height());
+            int rowsPerMap = getRowsPerMap(width, type);
+            for (int firstRow = 0; firstRow < header.height(); firstRow += rowsPerMap){
+                int rows = Math.min(rowsPerMap, header.height() - firstRow);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) firstRow * width * type.bytes, (long) rows * width * type.bytes);
+                readSamples(buffer, type, grayMat.getData(), firstRow * width, rows, width);
+            } return grayMat;
+        }
+    }
+
+    /**
+     * Gets the size of the matrix in a raw file by its header
+     * @param file The raw file
+     * @return The size of the matrix
+     * @throws IOException In case there's a problem reading the file or it isn't a valid raw file
+     */
+    public static Dimension getRawMatSize(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) throw new IOException("Not a raw gray matrix file: " + file);
+            Header header = readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE),
+                    channel.size(), file.toString());
+            return new Dimension(header.width(), header.height());
+        }
+    }
+
+    /**
+     * Reads a region of a gray scale matrix from a raw file, mapping only the rows of the region, so a tile
+     * of a huge matrix is read without decoding anything else
+     * @param file The raw file
+     * @param region The region to read, inside the matrix
+     * @return The gray scale matrix of the region, its pixel (0, 0) being the corner of the region
+     * @throws IOException In case there's a problem reading the file or it isn't a valid raw file
+     * @throws IllegalArgumentException In case the region isn't inside the matrix
+     */
+    public static GrayImage readRawMat(File file, Rectangle region) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) throw new IOException("Not a raw gray matrix file: " + file);
+            Header header = readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE),
+                    channel.size(), file.toString());
+            if (!new Rectangle(header.width(), header.height()).contains(region))
+                throw new IllegalArgumentException("The region " + region + " isn't inside " + file);
+            int width = header.width();
+            SampleType type = header.type();
+            GrayImage grayMat = new GrayImage(region.width, region.height);
+            int rowsPerMap = getRowsPerMap(width, type);
+            for (int firstRow = 0; firstRow < region.height; firstRow += rowsPerMap){
+                int rows = Math.min(rowsPerMap, region.height - firstRow);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) (region.y + firstRow) * width * type.bytes,
+                        (long) rows * width * type.bytes);
+                for (int y = 0; y < rows; y++){
+                    readSamples(buffer.slice((y * width + region.x) * type.bytes, region.width * type.bytes),
+                            type, grayMat.getData(), (firstRow + y) * region.width, 1, region.width);
+                }
+            } return grayMat;
+        }
+    }
+
+    /**
+     * Checks whether bytes in memory start with the magic number of the raw format
+     * @param bytes The bytes
+     * @return True iff the bytes may be a raw gray matrix
+     */
+    public static boolean isRawMat(byte[] bytes){
+        return bytes.length >= HEADER_SIZE &&
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(0) == MAGIC;
+    }
+
+    /**
+     * Reads a gray scale matrix from the bytes of a raw file in memory
+     * @param bytes The bytes of the raw file
+     * @param source The name of the source of the bytes, for the error messages
+     * @return The gray scale matrix
+     * @throws IOException In case the bytes aren't a valid raw file
+     */
+    public static GrayImage readRawMat(byte[] bytes, String source) throws IOException {
+        if (bytes.length < HEADER_SIZE) throw new IOException("Not a raw gray matrix: " + source);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Header header = readHeader(buffer.slice(0, HEADER_SIZE), bytes.length, source);
+        GrayImage grayMat = new GrayImage(header.width(), header.height());
+        readSamples(buffer.slice(HEADER_SIZE, bytes.length - HEADER_SIZE), header.type(), grayMat.getData(),
+                0, header.height(), header.width());
+        return grayMat;
+    }
+
+    /**
+     * Gets the size of the matrix in the bytes of a raw file in memory by its header
+     * @param bytes The bytes of the raw file
+     * @param source The name of the source of the bytes, for the error messages
+     * @return The size of the matrix
+     * @throws IOException In case the bytes aren't a valid raw file
+     */
+    public static Dimension getRawMatSize(byte[] bytes, String source) throws IOException {
+        if (bytes.length < HEADER_SIZE) throw new IOException("Not a raw gray matrix: " + source);
+        Header header = readHeader(ByteBuffer.wrap(bytes, 0, HEADER_SIZE).slice(), bytes.length, source);
+        return new Dimension(header.width(), header.height());
+    }
+
+    /**
+     * The header of a raw file
+     * @param width The width of the matrix
+     * @param height The height of the matrix
+     * @param type The type of the samples
+     */
+    private record Header(int width, int height, SampleType type) {}
+
+    /**
+     * Reads and validates the header of a raw file
+     * @param buffer The header
+     * @param size The size of the entire raw file
+     * @param source The name of the raw file, for the error messages
+     * @return The header
+     * @throws IOException In case it isn't a valid raw file
+     */
+    private static Header readHeader(ByteBuffer buffer, long size, String source) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException("Not a raw gray matrix file of version " + VERSION + ": " + source);
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int typeIndex = buffer.getInt();
+        if (width < 0 || height < 0 || typeIndex < 0 || typeIndex >= SampleType.values().length)
+            throw new IOException("Corrupt header in " + source);
+        SampleType type = SampleType.values()[typeIndex];
+        if (size < HEADER_SIZE + (long) width * height * type.bytes)
+            throw new IOException("Truncated raw gray matrix file: " + source);
+        return new Header(width, height, type);
+    }
+
+    /**
+     * Reads whole rows of samples into the data of a matrix
+     * @param buffer The samples of the rows, from its start
+     * @param type The type of the samples
+     * @param data The data of the matrix
+     * @param offset The index in the data of the first sample
+     * @param rows The amount of rows
+     * @param width The width of the matrix
+     */
+    private static void readSamples(ByteBuffer buffer, SampleType type, float[] data, int offset, int rows,
+                                    int width){
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        switch (type) {
+            case FLOAT32 -> buffer.asFloatBuffer().get(data, offset, rows * width);
+            case UINT8 -> {
+                byte[] row = new byte[width];
+                for (int y = 0; y < rows; y++, offset += width){
+                    buffer.get(row);
+                    for (int x = 0; x < width; x++) data[offset + x] = (row[x] & MAX_UINT8) /
+                            (float) MAX_UINT8;
+                }
+            }
+            case UINT16 -> {
+                ShortBuffer shorts = buffer.asShortBuffer();
+                short[] row = new short[width];
+                for (int y = 0; y < rows; y++, offset += width){
+                    shorts.get(row);
+                    for (int x = 0; x < width; x++) data[offset + x] = (row[x] & MAX_UINT16) /
+                            (float) MAX_UINT16;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a gray scale matrix to a raw file. Integer samples are scaled to the range of the type and
+     * clamped, a hole value (-1) becoming 0.
+     * @param grayMat The gray scale matrix
+     * @param file The raw file to create
+     * @param type The type of the samples
+     * @throws IOException In case there's a problem writing the file
+     */
+    public static void writeRawMat(GrayImage grayMat, File file, SampleType type) throws IOException {
+        int width = grayMat.getWidth();
+        int height = grayMat.getHeight();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE), grayMat, type);
+            int rowsPerMap = getRowsPerMap(width, type);
+            for (int firstRow = 0; firstRow < height; firstRow += rowsPerMap){
+                int rows = Math.min(rowsPerMap, height - firstRow);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) firstRow * width * type.bytes, (long) rows * width * type.bytes);
+                writeSamples(buffer, grayMat, firstRow, rows, type);
+            }
+        }
+    }
+
+    /**
+     * Writes a gray scale matrix in the raw format to a stream, a band of rows at a time through a buffer of
+     * up to STREAM_BUFFER_SIZE bytes. The stream isn't closed.
+     * @param grayMat The gray scale matrix
+     * @param out The stream
+     * @param type The type of the samples
+     * @throws IOException In case there's a problem writing to the stream
+     */
+    public static void writeRawMat(GrayImage grayMat, OutputStream out, SampleType type) throws IOException {
+        int width = grayMat.getWidth();
+        int height = grayMat.getHeight();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(header, grayMat, type);
+        out.write(header.array());
+        int rowsPerBand = (int) Math.max(1, STREAM_BUFFER_SIZE / Math.max(1, (long) width * type.bytes));
+        ByteBuffer buffer = ByteBuffer.allocate(Math.multiplyExact(Math.min(rowsPerBand, height),
+                width * type.bytes));
+        for (int firstRow = 0; firstRow < height; firstRow += rowsPerBand){
+            int rows = Math.min(rowsPerBand, height - firstRow);
+            writeSamples(buffer, grayMat, firstRow, rows, type);
+            out.write(buffer.array(), 0, rows * width * type.bytes);
+        }
+    }
+
+    /**
+     * Writes the header of a raw file
+     * @param buffer The buffer of the header
+     * @param grayMat The gray scale matrix
+     * @param type The type of the samples
+     */
+    private static void writeHeader(ByteBuffer buffer, GrayImage grayMat, SampleType type){
+        writeHeader(buffer, grayMat.getWidth(), grayMat.getHeight(), type);
+    }
+
+    /**
+     * Writes the header of a raw file
+     * @param buffer The buffer of the header
+     * @param width The width of the matrix
+     * @param height The height of the matrix
+     * @param type The type of the samples
+     */
+    private static void writeHeader(ByteBuffer buffer, int width, int height, SampleType type){
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(type.ordinal());
+    }
+
+    /**
+     * A writer of a raw file a band of rows at a time, for a matrix too large to hold in memory. The bands
+     * are written one after the other from the top, and the file is complete once all the rows are written.
+     */
+    public static class BandWriter implements Closeable {
+        private final FileChannel channel;
+        private final File file;
+        private final int width;
+        private final int height;
+        private final SampleType type;
+        private int nextRow;
+
+        /**
+         * Creates the raw file and writes its header
+         * @param file The raw file to create
+         * @param width The width of the matrix
+         * @param height The height of the matrix
+         * @param type The type of the samples
+         * @throws IOException In case there's a problem creating the file
+         */
+        public BandWriter(File file, int width, int height, SampleType type) throws IOException {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            writeHeader(header, width, height, type);
+            writeFully(header.rewind());
+        }
+
+        /**
+         * Writes the next band of rows
+         * @param band The band, as wide as the matrix
+         * @throws IOException In case there's a problem writing the file
+         * @throws IllegalArgumentException In case the band isn't as wide as the matrix or goes past its end
+         */
+        public void write(GrayImage band) throws IOException {
+            if (band.getWidth() != width || nextRow + band.getHeight() > height)
+                throw new IllegalArgumentException("The band doesn't fit the rest of " + file);
+            ByteBuffer buffer = ByteBuffer.allocate(Math.multiplyExact(band.getHeight(), width * type.bytes));
+            writeSamples(buffer, band, 0, band.getHeight(), type);
+            writeFully(buffer);
+            nextRow += band.getHeight();
+        }
+
+        /**
+         * Writes the entire buffer to the file
+         * @param buffer The buffer, from its start
+         * @throws IOException In case there's a problem writing the file
+         */
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+
+        /**
+         * Closes the file
+         * @throws IOException In case there's a problem closing the file, or not all the rows were written
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (nextRow != height)
+                throw new IOException("Only " + nextRow + " of " + height + " rows written to " + file);
+        }
+    }
+
+    /**
+     * Writes whole rows of a matrix as samples
+     * @param buffer The buffer to write the samples to, from its start
+     * @param grayMat The gray scale matrix
+     * @param firstRow The first row to write
+     * @param rows The amount of rows
+     * @param type The type of the samples
+     */
+    private static void writeSamples(ByteBuffer buffer, GrayImage grayMat, int firstRow, int rows,
+                                     SampleType type){
+        int width = grayMat.getWidth();
+        float[] data = grayMat.getData();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = firstRow; y < firstRow + rows; y++){
+            int index = grayMat.getOffset() + y * grayMat.getStride();
+            switch (type) {
+                case FLOAT32 -> buffer.asFloatBuffer().put((y - firstRow) * width, data, index, width);
+                case UINT8 -> {
+                    for (int x = 0; x < width; x++) buffer.put((y - firstRow) * width + x,
+                            (byte) quantize(data[index + x], MAX_UINT8));
+                }
+                case UINT16 -> {
+                    for (int x = 0; x < width; x++) buffer.putShort(((y - firstRow) * width + x) *
+                            Short.BYTES, (short) quantize(data[index + x], MAX_UINT16));
+                }
+            }
+        }
+    }
+
+    /**
+     * Scales a gray scale value to the range of an integer type
+     * @param val The value, -1 for a hole
+     * @param maxVal The largest value of the type
+     * @return The scaled value, clamped to the range of the type
+     */
+    private static int quantize(float val, int maxVal){
+        if (val == -1) return 0;
+        return Math.max(0, Math.min(Math.round(val * maxVal), maxVal));
+    }
+
+    /**
+     * Gets the amount of whole rows mapped at once
+     * @param width The width of the matrix
+     * @param type The type of the samples
+     * @return The amount of rows, at least 1
+     */
+    private static int getRowsPerMap(int width, SampleType type){
+        return (int) Math.max(1, MAX_MAP_SIZE / Math.max(1, (long) width * type.bytes));
+    }
+}
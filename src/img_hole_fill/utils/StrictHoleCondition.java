@@ -3,7 +3,7 @@ package img_hole_fill.utils;
 /**
  * Classifying a hole strictly by a certain value
  */
-public class StrictHoleCondition implements HoleCondition{
+public class StrictHoleCondition extends ValueHoleCondition {
     static final float HOLE_MAT_VAL = -1;
 
     /**
@@ -25,14 +25,12 @@ public class StrictHoleCondition implements HoleCondition{
     private StrictHoleCondition(){}
 
     /**
-     * The condition
-     * @param grayMat The gray scale matrix representing the pixels of the image
-     * @param x The x coordinate of the point to check
-     * @param y The y coordinate of the point to check
-     * @return True iif the given point is classified as hole pixel
+     * The condition over the value of a pixel
+     * @param val The value of the pixel
+     * @return True iff the value is the hole value
      */
     @Override
-    public boolean isHole(float[][] grayMat, int x, int y) {
-        return grayMat[x][y] == HOLE_MAT_VAL;
+    boolean isHoleVal(float val) {
+        return val == HOLE_MAT_VAL;
     }
 }
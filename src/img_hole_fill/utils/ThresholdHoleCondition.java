@@ -3,7 +3,7 @@ package img_hole_fill.utils;
 /**
  * Classifying a pixel as a hole using a threshold
  */
-public class ThresholdHoleCondition implements HoleCondition{
+public class ThresholdHoleCondition extends ValueHoleCondition {
     private static final float HOLE_THRESHOLD = (float) 0.5;
 
     /**
@@ -24,14 +24,12 @@ public class ThresholdHoleCondition implements HoleCondition{
     private ThresholdHoleCondition(){}
 
     /**
-     * The condition to classify by
-     * @param grayMat The gray scale matrix representing the pixels of the image
-     * @param x The x coordinate of the point to classify
-     * @param y The y coordinate of the point to classify
-     * @return True iff the point is classified as a hole pixel
+     * The condition over the value of a pixel
+     * @param val The value of the pixel
+     * @return True iff the value is below the threshold
      */
     @Override
-    public boolean isHole(float[][] grayMat, int x, int y) {
-        return grayMat[x][y] < HOLE_THRESHOLD;
+    boolean isHoleVal(float val) {
+        return val < HOLE_THRESHOLD;
     }
 }
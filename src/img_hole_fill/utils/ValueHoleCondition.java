@@ -0,0 +1,56 @@
+package img_hole_fill.utils;
+
+/**
+ * A condition classifying a pixel as a hole by its value alone, so that a whole row is classified straight
+ * over the underlying array of the image
+ */
+abstract class ValueHoleCondition implements HoleCondition {
+
+    /**
+     * The condition over the value of a pixel
+     * @param val The value of the pixel
+     * @return True iff a pixel of the given value is classified as a hole pixel
+     */
+    abstract boolean isHoleVal(float val);
+
+    /**
+     * The condition
+     * @param grayMat The gray scale image holding the pixels
+     * @param x The x coordinate of the point to classify
+     * @param y The y coordinate of the point to classify
+     * @return True iff the point is classified as a hole pixel
+     */
+    @Override
+    public boolean isHole(GrayImage grayMat, int x, int y) {
+        return isHoleVal(grayMat.get(x, y));
+    }
+
+    /**
+     * The condition over a whole row, straight over the underlying array of the image, a word at a time
+     * @param grayMat The gray scale image holding the pixels
+     * @param y The y coordinate of the row to classify
+     * @param words The words to write the row to, overwriting them
+     * @param wordsOffset The index of the first word of the row
+     * @return The amount of hole pixels in the row
+     */
+    @Override
+    public int getRowHoles(GrayImage grayMat, int y, long[] words, int wordsOffset) {
+        if (y < 0 || y >= grayMat.getHeight()){
+            throw new IndexOutOfBoundsException("Row " + y + " is outside the image");
+        }
+        float[] data = grayMat.getData();
+        int width = grayMat.getWidth();
+        int count = 0;
+        int wordStart;
+        long word;
+        for (int wordX = 0; wordX < width; wordX += Long.SIZE){
+            wordStart = grayMat.getOffset() + y * grayMat.getStride() + wordX;
+            word = 0;
+            for (int i = 0; i < Math.min(Long.SIZE, width - wordX); i++){
+                word |= (isHoleVal(data[wordStart + i]) ? 1L : 0L) << i;
+            }
+            words[wordsOffset + wordX / Long.SIZE] = word;
+            count += Long.bitCount(word);
+        } return count;
+    }
+}